@@ -0,0 +1,49 @@
+package org.nustaq.kontraktor.vthreads;
+
+import org.nustaq.kontraktor.impl.ForkJoinScheduler;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A scheduler running actors and blocking calls on virtual threads (requires jdk 21).
+ *
+ * Actor turns are scheduled exactly like with ForkJoinScheduler (Actor.__ready avoids concurrent turns, so
+ * an actor is still executed by a single thread at a time and messages are processed in order), but each turn
+ * is run by a virtual thread. Blocking calls (Actor.exec, runBlockingCall, runOutside) get a virtual thread each
+ * instead of a thread of a cached pool, so a blocked call costs a parked virtual thread, not an os thread.
+ *
+ * A sender blocked by a full mailbox parks its virtual thread, the carrier thread is free to run other actors.
+ */
+public class VirtualThreadScheduler extends ForkJoinScheduler {
+
+    static AtomicInteger schedulerCount = new AtomicInteger(0);
+
+    protected final ThreadFactory turnThreads;
+
+    public VirtualThreadScheduler() {
+        this(DEFQSIZE);
+    }
+
+    public VirtualThreadScheduler(int defQSize) {
+        super(1, defQSize); // pool of ForkJoinScheduler stays unused (no threads are created)
+        final int id = schedulerCount.incrementAndGet();
+        turnThreads = Thread.ofVirtual().name("VirtualThreadScheduler " + id + " turn ", 0).factory();
+        ExecutorService cachedPool = exec;
+        exec = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("VirtualThreadScheduler " + id + " blocking ", 0).factory());
+        cachedPool.shutdown();
+    }
+
+    @Override
+    protected void schedule(ActorTask task) {
+        turnThreads.newThread(task).start();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return 0; // carrier threads are owned by the jdk
+    }
+
+}
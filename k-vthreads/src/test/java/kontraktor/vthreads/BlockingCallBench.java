@@ -0,0 +1,61 @@
+package kontraktor.vthreads;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.util.Log;
+import org.nustaq.kontraktor.vthreads.VirtualThreadScheduler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * many concurrent blocking calls (Actor.exec) issued by one actor, cached thread pool of ElasticScheduler
+ * compared to virtual threads.
+ */
+public class BlockingCallBench {
+
+    static CountDownLatch done;
+
+    public static class Client extends Actor<Client> {
+
+        public void $query(int count, int millis) {
+            for (int i = 0; i < count; i++) {
+                exec( () -> {
+                    Thread.sleep(millis); // e.g. jdbc
+                    return millis;
+                }).then( (r,e) -> done.countDown() );
+            }
+        }
+    }
+
+    static void run(String name, ElasticScheduler scheduler, int calls, int millis) throws InterruptedException {
+        Client client = Actors.AsActor(Client.class, scheduler);
+        done = new CountDownLatch(calls);
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        mx.resetPeakThreadCount();
+        int threadsBefore = mx.getThreadCount();
+        long tim = System.nanoTime();
+        client.$query(calls, millis);
+        done.await();
+        long dur = System.nanoTime() - tim;
+        client.$stop();
+        System.out.println(name + " " + calls + " blocking calls of " + millis + " ms: " + dur / 1000 / 1000 + " ms," +
+                               " additional os threads: " + (mx.getPeakThreadCount() - threadsBefore));
+    }
+
+    public static void main(String arg[]) throws InterruptedException {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int calls = 10 * 1000;
+        final int millis = 500;
+        for (int i = 0; i < 3; i++) {
+            run("cached pool    ", new ElasticScheduler(1), calls, millis);
+            run("virtual threads", new VirtualThreadScheduler(), calls, millis);
+        }
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,102 @@
+package kontraktor.vthreads;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.vthreads.VirtualThreadScheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadTest {
+
+    static AtomicInteger errors = new AtomicInteger(0);
+
+    public static class Session extends Actor<Session> {
+
+        volatile boolean threadIn = false;
+        int lastSequence = -1;
+        int received;
+
+        public void $msg(int sequence) {
+            if ( threadIn )
+                errors.incrementAndGet();
+            threadIn = true;
+            if ( sequence != lastSequence + 1 || ! Thread.currentThread().isVirtual() )
+                errors.incrementAndGet();
+            lastSequence = sequence;
+            received++;
+            threadIn = false;
+        }
+
+        public Future<Integer> $getReceived() {
+            return new Promise<>(received);
+        }
+
+        public Future<Integer> $sleepOutside(int millis) {
+            Promise<Integer> res = new Promise<>();
+            exec( () -> {
+                Thread.sleep(millis);
+                return Thread.currentThread().isVirtual() ? 1 : 0;
+            }).then( (r,e) -> {
+                $msg(lastSequence + 1); // back on actor thread
+                res.receive(r, e);
+            });
+            return res;
+        }
+    }
+
+    @Test
+    public void testOrdering() throws InterruptedException {
+        errors.set(0);
+        VirtualThreadScheduler scheduler = new VirtualThreadScheduler();
+        final int numSessions = 1000;
+        final int numMsg = 100;
+        Session sessions[] = new Session[numSessions];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = Actors.AsActor(Session.class, scheduler, 256);
+        }
+        for ( int i = 0; i < numMsg; i++ ) {
+            for (int j = 0; j < sessions.length; j++) {
+                sessions[j].$msg(i);
+            }
+        }
+        CountDownLatch counted = new CountDownLatch(numSessions);
+        AtomicInteger sum = new AtomicInteger(0);
+        for (int j = 0; j < sessions.length; j++) {
+            sessions[j].$getReceived().then( (r,e) -> {
+                sum.addAndGet(r);
+                counted.countDown();
+            });
+        }
+        assertTrue(counted.await(30, TimeUnit.SECONDS));
+        for (int j = 0; j < sessions.length; j++) {
+            sessions[j].$stop();
+        }
+        assertEquals(numSessions * numMsg, sum.get());
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testBlockingCalls() throws InterruptedException {
+        errors.set(0);
+        Session session = Actors.AsActor(Session.class, new VirtualThreadScheduler());
+        final int calls = 5000;
+        CountDownLatch latch = new CountDownLatch(calls);
+        AtomicInteger virtual = new AtomicInteger(0);
+        for (int i = 0; i < calls; i++) {
+            session.$sleepOutside(200).then( (r,e) -> {
+                virtual.addAndGet(r);
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(calls, virtual.get());
+        assertEquals(0, errors.get());
+        session.$stop();
+    }
+
+}
@@ -0,0 +1,402 @@
+package io.jaq.mpsc;
+
+import io.jaq.util.Pow2;
+import io.jaq.util.UnsafeAccess;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+abstract class MpscChunkedQueueL0Pad {
+	public long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MpscChunkedQueueProducerFields<E> extends MpscChunkedQueueL0Pad {
+	protected final int capacity;
+	protected final int maxChunkSize;
+	protected volatile long tail;
+	protected volatile MpscChunk tailChunk;
+
+	public MpscChunkedQueueProducerFields(int capacity, int maxChunkSize, MpscChunk initial) {
+		this.capacity = Pow2.isPowerOf2(capacity) ? capacity : Pow2.findNextPositivePowerOfTwo(capacity);
+		this.maxChunkSize = Math.min(this.capacity, maxChunkSize);
+		tailChunk = initial;
+	}
+}
+
+abstract class MpscChunkedQueueL1Pad<E> extends MpscChunkedQueueProducerFields<E> {
+	public long p10, p11, p12, p13, p14, p15, p16, p17;
+
+	public MpscChunkedQueueL1Pad(int capacity, int maxChunkSize, MpscChunk initial) {
+		super(capacity, maxChunkSize, initial);
+	}
+}
+
+abstract class MpscChunkedQueueConsumerFields<E> extends MpscChunkedQueueL1Pad<E> {
+	protected long head;
+	protected MpscChunk headChunk;
+	protected volatile Object spare[]; // consumed buffer of max size, reused by next append
+
+	public MpscChunkedQueueConsumerFields(int capacity, int maxChunkSize, MpscChunk initial) {
+		super(capacity, maxChunkSize, initial);
+		headChunk = initial;
+	}
+}
+
+/**
+ * element range [base,end[ of a queue. buffer is dropped once all elements have been consumed.
+ */
+final class MpscChunk {
+	final long base;
+	final long end;
+	Object buffer[];
+	volatile MpscChunk next;
+
+	MpscChunk(long base, int size, Object recycled[]) {
+		this.base = base;
+		this.end = base + size;
+		buffer = recycled != null ? recycled : size > 0 ? new Object[size] : null;
+	}
+
+	int size() {
+		return (int) (end - base);
+	}
+}
+
+/**
+ * Bounded multi producer single consumer queue made of linked array chunks. In contrast to MpscConcurrentQueue
+ * memory is allocated on demand: no chunk is allocated until the first offer, chunks start small and double in size
+ * (up to maxChunkSize) while the queue fills up. Consumed chunks are released, so memory shrinks once the backlog
+ * is processed. If the consumer finds the queue empty, a large chunk is closed (producers continue with a small
+ * one), so an idle queue does not hold on to a large buffer.
+ *
+ * capacity is the max number of elements (rounded up to 2^x as with MpscConcurrentQueue).
+ */
+public final class MpscChunkedQueue<E> extends MpscChunkedQueueConsumerFields<E> implements Queue<E> {
+
+	public static int INITIAL_CHUNK_SIZE = 16;
+	public static int MAX_CHUNK_SIZE = 1024;
+
+	private final static long TAIL_OFFSET;
+	private final static long HEAD_OFFSET;
+	private final static long SPARE_OFFSET;
+	private static final long ARRAY_BASE;
+	private static final int ELEMENT_SHIFT;
+	static {
+		try {
+			TAIL_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MpscChunkedQueueProducerFields.class
+			        .getDeclaredField("tail"));
+			HEAD_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MpscChunkedQueueConsumerFields.class
+			        .getDeclaredField("head"));
+			SPARE_OFFSET = UnsafeAccess.UNSAFE.objectFieldOffset(MpscChunkedQueueConsumerFields.class
+			        .getDeclaredField("spare"));
+			final int scale = UnsafeAccess.UNSAFE.arrayIndexScale(Object[].class);
+			if (4 == scale) {
+				ELEMENT_SHIFT = 2;
+			} else if (8 == scale) {
+				ELEMENT_SHIFT = 3;
+			} else {
+				throw new IllegalStateException("Unknown pointer size");
+			}
+			ARRAY_BASE = UnsafeAccess.UNSAFE.arrayBaseOffset(Object[].class);
+		} catch (NoSuchFieldException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public MpscChunkedQueue(final int capacity) {
+		this(capacity, MAX_CHUNK_SIZE);
+	}
+
+	public MpscChunkedQueue(final int capacity, final int maxChunkSize) {
+		super(capacity, maxChunkSize, new MpscChunk(0, 0, null)); // empty chunk, first producer allocates
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of slots currently allocated (approximation if called by producers)
+	 */
+	public int getAllocated() {
+		final Object recycled[] = spare;
+		int res = recycled != null ? recycled.length : 0;
+		for (MpscChunk c = headChunk; c != null; c = c.next) {
+			if (c.buffer != null)
+				res += c.size();
+		}
+		return res;
+	}
+
+	private long getHeadV() {
+		return UnsafeAccess.UNSAFE.getLongVolatile(this, HEAD_OFFSET);
+	}
+
+	private void lazySetHead(long l) {
+		UnsafeAccess.UNSAFE.putOrderedLong(this, HEAD_OFFSET, l);
+	}
+
+	private boolean casTail(long expect, long newValue) {
+		return UnsafeAccess.UNSAFE.compareAndSwapLong(this, TAIL_OFFSET, expect, newValue);
+	}
+
+	private static long elementOffset(MpscChunk chunk, long index) {
+		return ARRAY_BASE + ((index - chunk.base) << ELEMENT_SHIFT);
+	}
+
+	public boolean add(final E e) {
+		if (offer(e)) {
+			return true;
+		}
+		throw new IllegalStateException("Channel is full");
+	}
+
+	public boolean offer(final E e) {
+		if (null == e) {
+			throw new NullPointerException("Null is not a valid element");
+		}
+		MpscChunk chunk;
+		long currentTail;
+		do {
+			// read before claiming an index, so chunk.base <= currentTail
+			chunk = tailChunk;
+			currentTail = tail;
+			if (currentTail - getHeadV() >= capacity) { // volatile read of head
+				return false;
+			}
+		} while (!casTail(currentTail, currentTail + 1));
+		chunk = chunkOf(chunk, currentTail);
+		UnsafeAccess.UNSAFE.putOrderedObject(chunk.buffer, elementOffset(chunk, currentTail), e);
+		return true;
+	}
+
+	/**
+	 * Adds batch[from..from+len[ as a contiguous range claimed with a single CAS. Either all or none of the
+	 * elements are added. The range might span several chunks.
+	 *
+	 * @return false if there is not enough space for all elements
+	 */
+	public boolean offer(final E[] batch, final int from, final int len) {
+		for (int i = 0; i < len; i++) {
+			if (null == batch[from + i]) {
+				throw new NullPointerException("Null is not a valid element");
+			}
+		}
+		MpscChunk chunk;
+		long currentTail;
+		do {
+			chunk = tailChunk;
+			currentTail = tail;
+			if (currentTail + len - getHeadV() > capacity) { // volatile read of head
+				return false;
+			}
+		} while (!casTail(currentTail, currentTail + len));
+		// consumer stops at the first null slot, so publishing in order keeps the range consistent
+		for (int i = 0; i < len; i++) {
+			chunk = chunkOf(chunk, currentTail + i);
+			UnsafeAccess.UNSAFE.putOrderedObject(chunk.buffer, elementOffset(chunk, currentTail + i), batch[from + i]);
+		}
+		return true;
+	}
+
+	/**
+	 * @return chunk containing the claimed index, search starts at chunk (chunk.base <= index). The producer
+	 * having claimed the first index behind the last chunk appends the next one.
+	 */
+	private MpscChunk chunkOf(MpscChunk chunk, long index) {
+		while (index >= chunk.end) {
+			MpscChunk next = chunk.next;
+			if (next == null) {
+				if (index == chunk.end) {
+					// claimed first index behind last chunk => append
+					final int size = nextChunkSize(chunk, index);
+					final Object recycled[] = size == maxChunkSize ? (Object[]) UnsafeAccess.UNSAFE.getAndSetObject(this, SPARE_OFFSET, null) : null;
+					next = new MpscChunk(index, size, recycled);
+					chunk.next = next;
+					tailChunk = next;
+				} else {
+					// producer of chunk.end is appending
+					Thread.yield();
+					continue;
+				}
+			}
+			chunk = next;
+		}
+		return chunk;
+	}
+
+	private int nextChunkSize(MpscChunk last, long currentTail) {
+		int size = last.size();
+		final long queued = currentTail - getHeadV();
+		if (queued * 2 >= size) {
+			size <<= 1;
+		} else if (queued * 4 < size) { // shrink to fit
+			size = queued > 0 ? Pow2.findNextPositivePowerOfTwo((int) queued * 2) : 0;
+		}
+		return Math.max(Math.min(INITIAL_CHUNK_SIZE, maxChunkSize), Math.min(size, maxChunkSize));
+	}
+
+	public E poll() {
+		final E e = take();
+		if (null != e) {
+			lazySetHead(head);
+		}
+		return e;
+	}
+
+	/**
+	 * Removes up to limit elements and passes them to consumer (consumer thread only). Head is published to
+	 * producers once per batch.
+	 *
+	 * @return number of elements removed
+	 */
+	public int drain(final Consumer<E> consumer, final int limit) {
+		int count = 0;
+		while (count < limit) {
+			final E e = take();
+			if (null == e) {
+				break;
+			}
+			count++;
+			consumer.accept(e);
+		}
+		if (count > 0) {
+			lazySetHead(head);
+		}
+		return count;
+	}
+
+	/**
+	 * remove next element, head is written plain (consumer thread view)
+	 */
+	@SuppressWarnings("unchecked")
+	private E take() {
+		final long currentHead = head;
+		MpscChunk chunk = headChunk;
+		if (currentHead == chunk.end) {
+			final MpscChunk next = chunk.next;
+			if (null == next) {
+				return null;
+			}
+			headChunk = chunk = next;
+		}
+		final Object buffer[] = chunk.buffer;
+		final long offset = elementOffset(chunk, currentHead);
+		final E e = (E) UnsafeAccess.UNSAFE.getObjectVolatile(buffer, offset);
+		if (null == e) {
+			closeIfIdle(chunk, currentHead);
+			return null;
+		}
+		UnsafeAccess.UNSAFE.putObject(buffer, offset, null);
+		if (currentHead + 1 == chunk.end) {
+			// all elements consumed. Under load keep one max size buffer to avoid allocation
+			if (chunk.size() == maxChunkSize) {
+				UnsafeAccess.UNSAFE.putOrderedObject(this, SPARE_OFFSET, buffer);
+			}
+			chunk.buffer = null;
+		}
+		head = currentHead + 1;
+		return e;
+	}
+
+	/**
+	 * queue is empty. Skip the unused rest of a large chunk, so producers continue with a small one.
+	 */
+	private void closeIfIdle(MpscChunk chunk, long currentHead) {
+		if (chunk.size() > INITIAL_CHUNK_SIZE && tail == currentHead && casTail(currentHead, chunk.end)) {
+			chunk.buffer = null;
+			spare = null;
+			head = chunk.end;
+			lazySetHead(chunk.end);
+		}
+	}
+
+	public E remove() {
+		final E e = poll();
+		if (null == e) {
+			throw new NoSuchElementException("Channel is empty");
+		}
+		return e;
+	}
+
+	public E element() {
+		final E e = peek();
+		if (null == e) {
+			throw new NoSuchElementException("Channel is empty");
+		}
+		return e;
+	}
+
+	/**
+	 * consumer thread only
+	 */
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		final long currentHead = head;
+		MpscChunk chunk = headChunk;
+		if (currentHead == chunk.end) {
+			chunk = chunk.next;
+			if (null == chunk) {
+				return null;
+			}
+		}
+		return (E) UnsafeAccess.UNSAFE.getObjectVolatile(chunk.buffer, elementOffset(chunk, currentHead));
+	}
+
+	public int size() {
+		return (int) (tail - getHeadV());
+	}
+
+	public boolean isEmpty() {
+		return tail == getHeadV();
+	}
+
+	public boolean contains(final Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	public Iterator<E> iterator() {
+		throw new UnsupportedOperationException();
+	}
+
+	public Object[] toArray() {
+		throw new UnsupportedOperationException();
+	}
+
+	public <T> T[] toArray(final T[] a) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean remove(final Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean containsAll(final Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean addAll(final Collection<? extends E> c) {
+		for (final E e : c) {
+			add(e);
+		}
+		return true;
+	}
+
+	public boolean removeAll(final Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean retainAll(final Collection<?> c) {
+		throw new UnsupportedOperationException();
+	}
+
+	public void clear() {
+		Object value;
+		do {
+			value = poll();
+		} while (null != value);
+	}
+}
@@ -22,6 +22,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.function.Consumer;
 
 abstract class MpscConcurrentArrayQueueL0Pad {
 	public long p00, p01, p02, p03, p04, p05, p06, p07;
@@ -79,7 +80,8 @@ abstract class MpscConcurrentArrayQueueL2Pad<E> extends MpscConcurrentArrayQueue
 }
 
 abstract class MpscConcurrentArrayQueueHeadField<E> extends MpscConcurrentArrayQueueL2Pad<E> {
-	protected long head;
+	protected long head; // published to producers
+	protected long consumerHead; // consumer thread view, head lags behind while draining
 
 	public MpscConcurrentArrayQueueHeadField(int capacity) {
 		super(capacity);
@@ -169,6 +171,33 @@ public final class MpscConcurrentQueue<E> extends MpscConcurrentArrayQueueL3Pad<
 		UnsafeAccess.UNSAFE.putOrderedObject(buffer, elementOffsetInBuffer(currentTail), e);
 		return true;
 	}
+	/**
+	 * Adds batch[from..from+len[ as a contiguous range claimed with a single CAS. Either all or none of the
+	 * elements are added.
+	 *
+	 * @return false if there is not enough space for all elements
+	 */
+	public boolean offer(final E[] batch, final int from, final int len) {
+		for (int i = 0; i < len; i++) {
+			if (null == batch[from + i]) {
+				throw new NullPointerException("Null is not a valid element");
+			}
+		}
+		long currentTail;
+		do {
+			currentTail = getTail();
+			final long wrapPoint = currentTail + len - capacity;
+			if (getHeadV() < wrapPoint) { // volatile read of head
+				return false;
+			}
+		} while (!casTail(currentTail, currentTail + len));
+		// consumer stops at the first null slot, so publishing in order keeps the range consistent
+		for (int i = 0; i < len; i++) {
+			UnsafeAccess.UNSAFE.putOrderedObject(buffer, elementOffsetInBuffer(currentTail + i), batch[from + i]);
+		}
+		return true;
+	}
+
 	public int offerStatus(final E e) {
 		if (null == e) {
 			throw new NullPointerException("Null is not a valid element");
@@ -187,17 +216,46 @@ public final class MpscConcurrentQueue<E> extends MpscConcurrentArrayQueueL3Pad<
 		return 0;
 	}
 	public E poll() {
-		final long offset = elementOffsetInBuffer(head);
+		final long offset = elementOffsetInBuffer(consumerHead);
 		@SuppressWarnings("unchecked")
 		final E e = (E) UnsafeAccess.UNSAFE.getObjectVolatile(buffer, offset);
 		if (null == e) {
 			return null;
 		}
 		UnsafeAccess.UNSAFE.putObject(buffer, offset, null);
-		lazySetHead(head + 1);
+		lazySetHead(++consumerHead);
 		return e;
 	}
 
+	/**
+	 * Removes up to limit elements and passes them to consumer (consumer thread only). Head is published to
+	 * producers once per batch, by an ordered store after the consumed slots have been cleared: a producer
+	 * wrapping around must not see an advanced head before the clearing store of the slot. The consumer may
+	 * poll this queue itself (e.g. a blocked send), it continues at consumerHead.
+	 *
+	 * @return number of elements removed
+	 */
+	public int drain(final Consumer<E> consumer, final int limit) {
+		int count = 0;
+		while (count < limit) {
+			final long currentHead = consumerHead;
+			final long offset = elementOffsetInBuffer(currentHead);
+			@SuppressWarnings("unchecked")
+			final E e = (E) UnsafeAccess.UNSAFE.getObjectVolatile(buffer, offset);
+			if (null == e) {
+				break;
+			}
+			UnsafeAccess.UNSAFE.putObject(buffer, offset, null);
+			consumerHead = currentHead + 1;
+			count++;
+			consumer.accept(e);
+		}
+		if (count > 0) {
+			lazySetHead(consumerHead);
+		}
+		return count;
+	}
+
 	public E remove() {
 		final E e = poll();
 		if (null == e) {
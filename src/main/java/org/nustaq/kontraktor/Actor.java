@@ -105,7 +105,17 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
     public Queue __cbQueue;
     public Thread __currentDispatcher;
     public Scheduler __scheduler;
+    public ActorInvoker __invoker; // generated direct dispatch, null => use reflection
     public volatile boolean __stopped = false;
+    public volatile int __ready; // 1 => ref is queued in the ready queue of its dispatcher (see DispatcherThread)
+    public volatile Thread __runner; // thread executing a turn of or moving the actor (ref), stealing dispatchers only
+    public int __throughput; // max messages processed per turn, 0 => scheduler default
+    public CostMeter __cost; // sampled message handling time, created by the dispatcher (real actor)
+    public TrafficStats __traffic; // sampled receivers of messages sent by this actor (real actor)
+    public OverflowPolicy __overflowPolicy; // applied if the mailbox is full and the method has no policy, null => BLOCK
+    public volatile Queue __overflow; // spilled messages (OverflowPolicy.SPILL, DROP_OLDEST), processed after the mailbox
+    public volatile OverflowStats __overflowStats; // real actor only, see OverflowStats.get
+    public Runnable __task; // per actor task of executor based schedulers (ForkJoinScheduler)
     public Actor __self; // the proxy
     public int __remoteId;
     public boolean __throwExAtBlock = false;
@@ -165,15 +175,7 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
      * @return
      */
     protected <T> Future<T[]> yield2Result(Future<T>... futures) {
-        Promise p = new Promise();
-        __scheduler.yield(futures).then( (futs,err) -> {
-            Object res[] = new Object[futures.length];
-            for (int i = 0; i < futs.length; i++) {
-                res[i] = futs[i].getResult();
-            }
-            p.receive(res,err);
-        });
-        return p;
+        return Actors.allResults((T[]) new Object[futures.length], futures);
     }
 
     /**
@@ -230,7 +232,7 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
      *
      */
     protected void delayed( long millis, final Runnable toRun ) {
-        __scheduler.delayedCall( millis, inThread(self(),toRun) );
+        __scheduler.delayedCall( millis, self(), toRun );
     }
 
     /**
@@ -240,6 +242,33 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
         return __mailbox.size() * 2 > __mbCapacity;
     }
 
+    /**
+     * overrides the throughput setting of the scheduler for this actor: the max number of messages processed
+     * in one turn before the dispatcher moves on to the next actor. 0 => use scheduler setting.
+     */
+    @CallerSideMethod public void setThroughput(int messagesPerTurn) {
+        getActorRef().__throughput = messagesPerTurn;
+        getActor().__throughput = messagesPerTurn;
+    }
+
+    /**
+     * sets what happens if a message is sent while the mailbox is full. Methods annotated with @Overflow keep
+     * their policy. see OverflowPolicy
+     */
+    @CallerSideMethod public void setOverflowPolicy(OverflowPolicy policy) {
+        if ( policy != null && policy.isQueueing() && __overflow == null ) {
+            ConcurrentLinkedQueue overflow = new ConcurrentLinkedQueue();
+            getActorRef().__overflow = overflow;
+            getActor().__overflow = overflow;
+        }
+        getActorRef().__overflowPolicy = policy;
+        getActor().__overflowPolicy = policy;
+    }
+
+    @CallerSideMethod public OverflowPolicy getOverflowPolicy() {
+        return __overflowPolicy == null ? OverflowPolicy.BLOCK : __overflowPolicy;
+    }
+
     @CallerSideMethod public Scheduler getScheduler() {
         return __scheduler;
     }
@@ -370,14 +399,15 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
     }
 
     // dispatch an outgoing call to the target actor queue. Runs in Caller Thread
-    @CallerSideMethod public Object __enqueueCall( Actor receiver, String methodName, Object args[], boolean isCB ) {
+    @CallerSideMethod public Object __enqueueCall( Actor receiver, int methodId, Object args[], boolean isCB ) {
         if ( __stopped ) {
+            String methodName = __invoker.getMethod(methodId).getName();
             if ( methodName.equals("$stop") ) // ignore double stop
                 return null;
             __addDeadLetter(receiver, methodName);
 //            throw new RuntimeException("Actor " + this + " received message after being stopped " + methodName);
         }
-        return __scheduler.enqueueCall(sender.get(), receiver, methodName, args, isCB);
+        return __scheduler.enqueueCall(sender.get(), receiver, methodId, args, isCB);
     }
 
     @CallerSideMethod public void __addDeadLetter(Actor receiver, String methodName) {
@@ -426,7 +456,18 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
 
     @Override
     public Future $getReport() {
-        return new Promise( new ActorReport(getActor().getClass().getSimpleName(), getMailboxSize(), getCallbackSize() ) );
+        ActorReport report = new ActorReport(getActor().getClass().getSimpleName(), getMailboxSize(), getCallbackSize());
+        Queue overflow = __overflow;
+        if ( overflow != null )
+            report.overflowSize = overflow.size();
+        OverflowStats stats = getActor().__overflowStats;
+        if ( stats != null ) {
+            report.blocked = stats.getBlocked();
+            report.dropped = stats.getDropped();
+            report.failed = stats.getFailed();
+            report.spilled = stats.getSpilled();
+        }
+        return new Promise( report );
     }
 
     @Override
@@ -438,6 +479,11 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
         String clz;
         int mailboxSize;
         int cbqSize;
+        int overflowSize;
+        long blocked;
+        long dropped;
+        long failed;
+        long spilled;
 
         public ActorReport() {
         }
@@ -460,6 +506,26 @@ public class Actor<SELF extends Actor> implements Serializable, Monitorable {
             return cbqSize;
         }
 
+        public int getOverflowSize() {
+            return overflowSize;
+        }
+
+        public long getBlocked() {
+            return blocked;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getSpilled() {
+            return spilled;
+        }
+
     }
 
 }
@@ -1,13 +1,15 @@
 package org.nustaq.kontraktor;
 
+import org.nustaq.kontraktor.annotations.Overflow;
 import org.nustaq.kontraktor.impl.*;
-import io.jaq.mpsc.MpscConcurrentQueue;
+import io.jaq.mpsc.MpscChunkedQueue;
 import org.nustaq.kontraktor.util.Log;
 
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Copyright (c) 2012, Ruediger Moeller. All rights reserved.
@@ -99,15 +101,131 @@ public class Actors {
         return (T) instance.newProxy(actorClazz,scheduler,qsize);
     }
 
+    /**
+     * create an new actor dispatched in the given DispatcherThread applying given policy if its mailbox is full.
+     * Methods annotated with @Overflow keep their policy.
+     *
+     * @param actorClazz
+     * @param <T>
+     * @return
+     */
+    public static <T extends Actor> T AsActor(Class<? extends Actor> actorClazz, Scheduler scheduler, int qsize, OverflowPolicy policy) {
+        T actor = (T) instance.newProxy(actorClazz, scheduler, qsize);
+        actor.setOverflowPolicy(policy);
+        return actor;
+    }
+
+    /**
+     * same as allSettled
+     */
     public static Future<Future[]> yield(Future... futures) {
+        return allSettled(futures);
+    }
+
+    /**
+     * same as allSettled
+     */
+    public static Future<List<Future>> yield(List<Future> futures) {
+        return allSettled(futures);
+    }
+
+    /**
+     * The combinators below count completions instead of chaining futures, so they complete in O(n) with constant
+     * stack depth even if many futures are completed already.
+     *
+     * @return a future completed with the given futures once all of them are completed (successfully or not)
+     */
+    public static Future<Future[]> allSettled(Future... futures) {
         Promise res = new Promise();
-        yield(futures, 0, res);
+        if ( futures.length == 0 ) {
+            res.receive(futures, null);
+            return res;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.length);
+        final Callback done = (r,e) -> {
+            if ( remaining.decrementAndGet() == 0 )
+                res.receive(futures, null);
+        };
+        for (int i = 0; i < futures.length; i++) {
+            futures[i].then(done);
+        }
         return res;
     }
 
-    public static Future<List<Future>> yield(List<Future> futures) {
+    /**
+     * see allSettled(Future...)
+     */
+    public static Future<List<Future>> allSettled(List<Future> futures) {
         Promise res = new Promise();
-        yield(futures, 0, res);
+        if ( futures.isEmpty() ) {
+            res.receive(futures, null);
+            return res;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        final Callback done = (r,e) -> {
+            if ( remaining.decrementAndGet() == 0 )
+                res.receive(futures, null);
+        };
+        for (int i = 0; i < futures.size(); i++) {
+            futures.get(i).then(done);
+        }
+        return res;
+    }
+
+    /**
+     * @return a future completed with the results of all given futures (in order) or with the first error
+     * received (without waiting for the remaining futures)
+     */
+    public static Future<Object[]> all(Future... futures) {
+        return collect(new Object[futures.length], futures, true);
+    }
+
+    /**
+     * once all futures are completed, complete with results filled with their results (in order). Unlike 'all'
+     * errors are not reported, results of failed futures are left untouched.
+     *
+     * @param results - receives the results, length must be >= futures.length
+     */
+    public static <T> Future<T[]> allResults(T results[], Future<T>... futures) {
+        return collect(results, futures, false);
+    }
+
+    /**
+     * @return a future completed with the first successful result of the given futures. Completes with the error
+     * of the last failing one if all of them fail.
+     */
+    public static <T> Future<T> any(Future<T>... futures) {
+        Promise res = new Promise();
+        if ( futures.length == 0 ) {
+            res.receive(null, null);
+            return res;
+        }
+        final AtomicInteger failed = new AtomicInteger(futures.length);
+        final Callback first = (r,e) -> {
+            if ( e == null )
+                res.complete(r, null);
+            else if ( failed.decrementAndGet() == 0 )
+                res.complete(null, e);
+        };
+        for (int i = 0; i < futures.length; i++) {
+            futures[i].then(first);
+        }
+        return res;
+    }
+
+    /**
+     * @return a future completed with result or error of the first of the given futures completing
+     */
+    public static <T> Future<T> race(Future<T>... futures) {
+        Promise res = new Promise();
+        if ( futures.length == 0 ) {
+            res.receive(null, null);
+            return res;
+        }
+        final Callback first = (r,e) -> res.complete(r, e);
+        for (int i = 0; i < futures.length; i++) {
+            futures[i].then(first);
+        }
         return res;
     }
 
@@ -149,20 +267,27 @@ public class Actors {
         }
     }
 
-    private static void yield(final Future futures[], final int index, final Future result) {
-        if ( index < futures.length ) {
-            futures[index].then( (r,e) -> yield(futures, index + 1, result) );
-        } else {
-            result.receive(futures, null);
+    private static Future collect(final Object results[], final Future futures[], final boolean failFast) {
+        Promise res = new Promise();
+        if ( futures.length == 0 ) {
+            res.receive(results, null);
+            return res;
         }
-    }
-
-    private static void yield(final List<Future> futures, final int index, final Future result) {
-        if ( index < futures.size() ) {
-            futures.get(index).then( (r,e) -> yield(futures, index + 1, result) );
-        } else {
-            result.receive(futures, null);
+        final AtomicInteger remaining = new AtomicInteger(futures.length);
+        for (int i = 0; i < futures.length; i++) {
+            final int index = i;
+            futures[i].then( (r,e) -> {
+                if ( e == null ) {
+                    results[index] = r; // published by the decrement
+                } else if ( failFast ) {
+                    res.complete(null, e);
+                    return;
+                }
+                if ( remaining.decrementAndGet() == 0 )
+                    res.complete(results, null);
+            });
         }
+        return res;
     }
 
     //// instance
@@ -186,7 +311,7 @@ public class Actors {
 
             Actor realActor = clz.newInstance();
             realActor.__mailbox =  createQueue(qs);
-            realActor.__mbCapacity = ((MpscConcurrentQueue) realActor.__mailbox).getCapacity();
+            realActor.__mbCapacity = ((MpscChunkedQueue) realActor.__mailbox).getCapacity();
             realActor.__cbQueue =  createQueue(qs);
 
             Actor selfproxy = getFactory().instantiateProxy(realActor);
@@ -200,6 +325,17 @@ public class Actors {
             realActor.__scheduler = disp.getScheduler();
             selfproxy.__scheduler = disp.getScheduler();
 
+            realActor.__invoker = getFactory().getInvoker(clz);
+            selfproxy.__invoker = realActor.__invoker;
+
+            Overflow overflow = clz.getAnnotation(Overflow.class);
+            if ( overflow != null )
+                selfproxy.setOverflowPolicy(overflow.value());
+            if ( realActor.__invoker != null && realActor.__invoker.hasQueueingOverflowPolicy() && realActor.__overflow == null ) {
+                realActor.__overflow = new ConcurrentLinkedQueue();
+                selfproxy.__overflow = realActor.__overflow;
+            }
+
             realActor.__currentDispatcher = disp;
             selfproxy.__currentDispatcher = disp;
 
@@ -212,8 +348,12 @@ public class Actors {
         }
     }
 
+    /**
+     * mailbox and callback queue. Chunks are allocated on demand, an actor which did not receive any
+     * message yet holds no buffer.
+     */
     protected Queue createQueue(int qSize) {
-        return new MpscConcurrentQueue(qSize);
+        return new MpscChunkedQueue(qSize);
     }
 
     protected Actor newProxy(Class<? extends Actor> clz, Scheduler sched, int qsize) {
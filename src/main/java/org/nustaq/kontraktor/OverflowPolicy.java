@@ -0,0 +1,43 @@
+package org.nustaq.kontraktor;
+
+/**
+ * Determines what happens to a message sent to an actor whose mailbox is full. Can be set per actor class or
+ * method (annotations.Overflow), at creation time (Actors.AsActor) or later on (Actor.setOverflowPolicy).
+ * A policy given for a method overrides the policy of the actor. Callbacks are never subject to an overflow
+ * policy, they always block.
+ *
+ * The number of blocked, dropped, failed and spilled messages is reported by Actor.$getReport.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * default. The sender spins/yields until there is space in the mailbox (see ElasticScheduler.put2QueuePolling)
+     */
+    BLOCK,
+    /**
+     * the message sent is discarded. A future result of the call is never fulfilled.
+     */
+    DROP_NEWEST,
+    /**
+     * the message sent is queued, the oldest message pending in the mailbox is discarded instead. Queued messages
+     * are bounded to twice the mailbox capacity.
+     */
+    DROP_OLDEST,
+    /**
+     * the message sent is discarded. A future result of the call receives a MailboxFullException as error.
+     */
+    FAIL,
+    /**
+     * the message is put onto an unbounded overflow queue processed once the mailbox has been emptied.
+     * Order of messages is preserved. Use with care, the overflow queue might exhaust memory.
+     */
+    SPILL;
+
+    /**
+     * @return true if messages are put onto the overflow queue of an actor
+     */
+    public boolean isQueueing() {
+        return this == SPILL || this == DROP_OLDEST;
+    }
+
+}
@@ -1,34 +1,42 @@
 package org.nustaq.kontraktor;
 
-import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.impl.TimingWheel;
+import org.nustaq.kontraktor.util.Log;
 
-import java.util.TimerTask;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Consumer;
 
 /**
  * Created by ruedi on 20.05.14.
+ *
+ * Lock free: a promise is completed once (claimed by a CAS on 'completion'), listeners are pushed onto a stack
+ * held by 'state' until the result is published by swapping the stack for COMPLETED. Listeners are fired in
+ * order of registration. Registering a listener on a completed promise fires it immediately and allocates nothing.
  */
 public class Promise<T> implements Future<T> {
-    // fixme: volatile ? (assumption: lock ensures order of Publish. unsure, no errors until now)
-    protected Object result = null;
+
+    static final Object COMPLETED = new Object();
+    static final int PENDING = 0;
+    static final int RESULT = 1;
+    static final int TIMED_OUT = 2;
+
+    static final AtomicReferenceFieldUpdater<Promise,Object> stateUpdater = AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
+    static final AtomicIntegerFieldUpdater<Promise> completionUpdater = AtomicIntegerFieldUpdater.newUpdater(Promise.class, "completion");
+    static final AtomicReferenceFieldUpdater<Promise,TimingWheel.Entry> timeoutUpdater = AtomicReferenceFieldUpdater.newUpdater(Promise.class, TimingWheel.Entry.class, "timeoutEntry");
+
+    protected Object result = null; // published by the volatile write of state
     protected Object error;
-    protected Callback resultReceiver;
-    // fixme: use bits
-    protected boolean hadResult;
-    protected boolean hasFired;
-    // probably unnecessary, increases cost
-    // of allocation. However for now stay safe and optimize
-    // from a proven-working implementation
-    // note: if removed some field must set to volatile
-    final AtomicBoolean lock = new AtomicBoolean(false); // (AtomicFieldUpdater is slower!)
+    volatile Object state; // null, stack of listeners (Listener) or COMPLETED
+    volatile int completion = PENDING; // RESULT or TIMED_OUT once receive has been claimed
     String id;
-    Future nextFuture;
+    volatile TimingWheel.Entry timeoutEntry; // pending timeout, cancelled once a result is received
 
     public Promise(T result, Object error) {
         this.result = result;
         this.error = error;
-        hadResult = true;
+        completion = error instanceof Timeout ? TIMED_OUT : RESULT;
+        state = COMPLETED;
     }
 
     public Promise(T result) {
@@ -92,141 +100,112 @@ public class Promise<T> implements Future<T> {
     }
 
     public void timedOut( Timeout to ) {
-        if (!hadResult ) {
-            receive(null, to);
-        }
+        complete(null, to); // a result has been received in time otherwise
     }
 
+    /**
+     * register a listener. Any number of listeners can be registered, they are called in order of registration.
+     * If the promise is completed already, the listener is called immediately.
+     *
+     * @return resultCB if it is a Future (so chained futures continue with it), else this
+     */
     @Override
     public Future then(Callback resultCB) {
-        // FIXME: this can be implemented more efficient
-        while( !lock.compareAndSet(false,true) ) {}
-        try {
-            if (resultReceiver != null)
-                throw new RuntimeException("Double register of future listener");
-            resultReceiver = resultCB;
-            if (hadResult) {
-                hasFired = true;
-                if (nextFuture == null) {
-                    nextFuture = new Promise(result, error);
-                    lock.set(false);
-                    resultCB.receive(result, error);
-                } else {
-                    lock.set(false);
-                    resultCB.receive(result, error);
-                    nextFuture.receive(result, error);
-                    return nextFuture;
-                }
-            }
-            if (resultCB instanceof Future) {
-                return (Future) resultCB;
-            }
-            lock.set(false);
-            while( !lock.compareAndSet(false,true) ) {}
-            if (nextFuture == null) {
-                return nextFuture = new Promise();
-            } else {
-                return nextFuture;
-            }
-        } finally {
-            lock.set(false);
+        finishWith(resultCB);
+        if (resultCB instanceof Future) {
+            return (Future) resultCB;
         }
+        return this;
     }
 
     /**
-     * special method for tricky things. Creates a nextFuture or returns it. Not threadsafe !
-     * current
-     * @return
+     * @return a promise completed with the result of this once all listeners registered until now have been called
      */
     public Promise getNext() {
-        while( !lock.compareAndSet(false,true) ) {}
-        try {
-            if (nextFuture == null)
-                return new Promise();
-            else
-                return (Promise) nextFuture;
-        } finally {
-            lock.set(false);
-        }
+        if ( state == COMPLETED )
+            return new Promise(result, error);
+        Promise next = new Promise();
+        finishWith(next);
+        return next;
     }
 
+    /**
+     * listeners are registered on this, there is no chain of promises anymore
+     */
     public Promise getLast() {
-        while( !lock.compareAndSet(false,true) ) {}
-        try {
-            if (nextFuture == null)
-                return this;
-            else
-                return ((Promise)nextFuture).getLast();
-        } finally {
-            lock.set(false);
-        }
+        return this;
     }
 
     /**
-     * same as then, but avoid creation of new future
+     * same as then, but without a return value
      * @param resultCB
      */
     public void finishWith(Callback resultCB) {
-        // FIXME: this can be implemented more efficient
-        while( !lock.compareAndSet(false,true) ) {}
-        try {
-            if (resultReceiver != null)
-                throw new RuntimeException("Double register of future listener");
-            resultReceiver = resultCB;
-            if (hadResult) {
-                hasFired = true;
-                lock.set(false);
+        Listener node = null;
+        while ( true ) {
+            Object current = state;
+            if ( current == COMPLETED ) {
                 resultCB.receive(result, error);
+                return;
             }
-        } finally {
-            lock.set(false);
+            if ( node == null )
+                node = new Listener(resultCB, (Listener) current);
+            else
+                node.next = (Listener) current;
+            if ( stateUpdater.compareAndSet(this, current, node) )
+                return;
         }
     }
 
     @Override
     public final void receive(Object res, Object error) {
-        // ensure correct thread in case actor cascades futures
-//        if ( Thread.currentThread() != currentThread && currentThread instanceof DispatcherThread) {
-//            new CallbackWrapper((DispatcherThread) currentThread, this).receive(res, error);
-//        }
-//        else
-        {
-            this.result = res;
-            Object prevErr = this.error;
-            this.error = error;
-            while( !lock.compareAndSet(false,true) ) {}
+        if ( ! complete(res, error) ) {
+            if ( completion == TIMED_OUT ) // late result
+                return;
+            throw new RuntimeException("Double result received on future " + this.error );
+        }
+    }
+
+    /**
+     * publish result and error and call all listeners registered until now.
+     * @return false if the promise has been completed before
+     */
+    protected boolean complete(Object res, Object error) {
+        if ( ! completionUpdater.compareAndSet(this, PENDING, error instanceof Timeout ? TIMED_OUT : RESULT) )
+            return false;
+        this.result = res;
+        this.error = error;
+        final TimingWheel.Entry timeout = timeoutUpdater.getAndSet(this, null);
+        if (timeout != null) { // result in time
+            timeout.cancel();
+        }
+        Listener stack = (Listener) stateUpdater.getAndSet(this, COMPLETED);
+        if ( stack == null )
+            return true;
+        // stack is LIFO, restore order of registration
+        Listener ordered = null;
+        while ( stack != null ) {
+            Listener next = stack.next;
+            stack.next = ordered;
+            ordered = stack;
+            stack = next;
+        }
+        Throwable firstEx = null;
+        for ( Listener l = ordered; l != null; l = l.next ) {
             try {
-                if (hadResult) {
-                    if ( prevErr instanceof Timeout ) {
-                        this.error = prevErr;
-                        lock.set(false);
-                        return;
-                    }
-                    lock.set(false);
-                    throw new RuntimeException("Double result received on future " + prevErr );
-                }
-                hadResult = true;
-                if (resultReceiver != null) {
-                    if (hasFired) {
-                        lock.set(false);
-                        throw new RuntimeException("Double fire on callback");
-                    }
-                    hasFired = true;
-                    lock.set(false);
-                    resultReceiver.receive(result, error);
-                    resultReceiver = null;
-                    while (!lock.compareAndSet(false, true)) {
-                    }
-                    if (nextFuture != null) {
-                        lock.set(false);
-                        nextFuture.receive(result, error);
-                    }
-                    return;
-                }
-            } finally {
-                lock.set(false);
+                l.callback.receive(res, error);
+            } catch (Throwable th) {
+                if ( firstEx == null )
+                    firstEx = th;
+                else
+                    Log.Warn(this, th, "");
             }
         }
+        if ( firstEx instanceof RuntimeException )
+            throw (RuntimeException) firstEx;
+        if ( firstEx instanceof Error )
+            throw (Error) firstEx;
+        return true;
     }
 
     public T getResult() {
@@ -241,16 +220,18 @@ public class Promise<T> implements Future<T> {
     @Override
     public Future timeoutIn(long millis) {
         final Actor actor = Actor.sender.get();
+        final Runnable onTimeout = () -> timedOut(Timeout.INSTANCE);
+        final TimingWheel.Entry entry;
         if ( actor != null )
-            actor.delayed(millis, ()-> timedOut(Timeout.INSTANCE));
-        else {
-            ElasticScheduler.delayedCalls.schedule( new TimerTask() {
-                @Override
-                public void run() {
-                    timedOut(Timeout.INSTANCE);
-                }
-            },millis);
-        }
+            entry = actor.__scheduler.delayedCall(millis, actor, onTimeout);
+        else
+            entry = TimingWheel.Default.schedule(millis, onTimeout);
+        final TimingWheel.Entry previous = timeoutUpdater.getAndSet(this, entry);
+        if ( previous != null ) // latest timeout applies
+            previous.cancel();
+        // complete() might have missed the entry
+        if ( completion != PENDING )
+            entry.cancel();
         return this;
     }
 
@@ -260,12 +241,22 @@ public class Promise<T> implements Future<T> {
 
     // debug
     public boolean _isHadResult() {
-        return hadResult;
+        return completion != PENDING;
     }
 
     // debug
     public boolean _isHasFired() {
-        return hasFired;
+        return state == COMPLETED;
+    }
+
+    static final class Listener {
+        final Callback callback;
+        Listener next;
+
+        Listener(Callback callback, Listener next) {
+            this.callback = callback;
+            this.next = next;
+        }
     }
 
     @Override
@@ -3,6 +3,7 @@ package org.nustaq.kontraktor;
 import org.nustaq.kontraktor.impl.BackOffStrategy;
 import org.nustaq.kontraktor.impl.CallEntry;
 import org.nustaq.kontraktor.impl.DispatcherThread;
+import org.nustaq.kontraktor.impl.TimingWheel;
 import org.nustaq.kontraktor.monitoring.Monitorable;
 
 import java.lang.reflect.InvocationHandler;
@@ -19,10 +20,23 @@ public interface Scheduler extends Monitorable{
 
     int getDefaultQSize();
 
+    /**
+     * @return max number of messages a dispatcher processes per actor turn (can be overridden per actor)
+     */
+    int getThroughput();
+
     void yield(int count);
 
     void put2QueuePolling(Queue q, boolean isCBQ, Object o, Object sender);
 
+    /**
+     * enqueue a call by method id (see ActorInvoker). Used by generated proxies.
+     */
+    Object enqueueCall(Actor sendingActor, Actor receiver, int methodId, Object args[], boolean isCB);
+
+    /**
+     * enqueue a call by method name (remoting)
+     */
     Object enqueueCall(Actor sendingActor, Actor receiver, String methodName, Object args[], boolean isCB);
 
     void threadStopped(DispatcherThread th);
@@ -39,8 +53,17 @@ public interface Scheduler extends Monitorable{
      */
     <T> T inThread(Actor actor, T callback);
 
+    /**
+     * run toRun after millis on the timer thread. toRun must not block.
+     */
     void delayedCall(long millis, Runnable toRun);
 
+    /**
+     * put toRun onto the callback queue of the given actor after millis.
+     * @return entry to cancel the call
+     */
+    TimingWheel.Entry delayedCall(long millis, Actor receiver, Runnable toRun);
+
     <T> void runBlockingCall(Actor emitter, Callable<T> toCall, Callback<T> resultHandler);
 
     /**
@@ -61,6 +84,18 @@ public interface Scheduler extends Monitorable{
      */
     void rebalance(DispatcherThread dispatcherThread);
 
+    /** called periodically from inside a dispatcher thread. Moves actors of the calling thread to the thread of
+     * the actors they communicate with most.
+     * @param dispatcherThread
+     */
+    void colocate(DispatcherThread dispatcherThread);
+
+    /** called from inside an idle dispatcher thread (stealing enabled only). Takes over an actor having pending
+     * messages from a busy thread.
+     * @return true if an actor has been moved to the calling thread
+     */
+    boolean steal(DispatcherThread thief);
+
     BackOffStrategy getBackoffStrategy();
 
     void tryStopThread(DispatcherThread dispatcherThread);
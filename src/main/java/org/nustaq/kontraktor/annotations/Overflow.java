@@ -0,0 +1,27 @@
+package org.nustaq.kontraktor.annotations;
+
+import org.nustaq.kontraktor.OverflowPolicy;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+
+/**
+ * Specifies what happens if a message is sent to a full mailbox. e.g.
+ *
+ * @Overflow(OverflowPolicy.SPILL)
+ * class Logger extends Actor<Logger> {
+ *     public void $log( String line ) {..}
+ *
+ *     @Overflow(OverflowPolicy.DROP_NEWEST) public void $tick( long time ) {..}
+ * }
+ *
+ * A method annotation overrides the class annotation. see OverflowPolicy
+ */
+public @interface Overflow {
+    OverflowPolicy value();
+}
@@ -0,0 +1,107 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.OverflowPolicy;
+import org.nustaq.kontraktor.annotations.Overflow;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+
+/**
+ * Base class of the per-actor-class invokers generated by ActorProxyFactory. A generated invoker
+ * switches on the index of an actor method and calls the target method directly (args are cast/unboxed),
+ * so dispatching a message does not go through Method.invoke.
+ *
+ * Additionally an invoker holds the method table of its actor class (index => Method). The index of a method
+ * is its method id, generated proxies pass it when enqueuing a call, so no lookup by name is required at runtime.
+ * Lookup by name is used by remoting only. The call metadata of each method (CallDescriptor) is kept along.
+ */
+public abstract class ActorInvoker {
+
+    protected Method methods[];
+    protected CallDescriptor descriptors[]; // by method index
+    protected HashMap<String,Integer> indexByName;
+    protected OverflowPolicy overflowPolicies[]; // by method index, null if no method is annotated with @Overflow
+
+    protected void init(Method methods[], CallDescriptor descriptors[]) {
+        this.methods = methods;
+        this.descriptors = descriptors;
+        indexByName = new HashMap<>();
+        for (int i = 0; i < methods.length; i++) {
+            indexByName.put(methods[i].getName(), i);
+            Overflow overflow = methods[i].getAnnotation(Overflow.class);
+            if ( overflow != null ) {
+                if ( overflowPolicies == null )
+                    overflowPolicies = new OverflowPolicy[methods.length];
+                overflowPolicies[i] = overflow.value();
+            }
+        }
+    }
+
+    /**
+     * call method with given index directly on target.
+     * Note: exceptions are thrown as is, they are not wrapped into InvocationTargetException
+     */
+    public abstract Object invoke(Object target, int methodIndex, Object args[]) throws Throwable;
+
+    /**
+     * @return index of the given method or -1 if the method is not dispatched by this invoker
+     */
+    public int getIndex(String methodName) {
+        Integer index = indexByName.get(methodName);
+        if ( index == null )
+            return -1;
+        return index;
+    }
+
+    /**
+     * @return method for given method id
+     */
+    public Method getMethod(int index) {
+        return methods[index];
+    }
+
+    /**
+     * @return call metadata for given method id
+     */
+    public CallDescriptor getDescriptor(int index) {
+        return descriptors[index];
+    }
+
+    /**
+     * @return policy of the method with given index as specified by @Overflow, null if not annotated
+     */
+    public OverflowPolicy getOverflowPolicy(int index) {
+        return overflowPolicies == null ? null : overflowPolicies[index];
+    }
+
+    /**
+     * @return true if any method uses an overflow queue (OverflowPolicy.SPILL, DROP_OLDEST)
+     */
+    public boolean hasQueueingOverflowPolicy() {
+        if ( overflowPolicies != null ) {
+            for (int i = 0; i < overflowPolicies.length; i++) {
+                if ( overflowPolicies[i] != null && overflowPolicies[i].isQueueing() )
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    public int getNumMethods() {
+        return methods.length;
+    }
+
+    // used by generated code. minbin transmits booleans as byte
+    public static boolean toBoolean(Object o) {
+        if ( o instanceof Byte ) {
+            return ((Byte) o).intValue() != 0;
+        }
+        return ((Boolean) o).booleanValue();
+    }
+
+    // used by generated code for Boolean parameters
+    public static Boolean toBooleanObject(Object o) {
+        return o == null ? null : Boolean.valueOf(toBoolean(o));
+    }
+
+}
@@ -3,18 +3,23 @@ package org.nustaq.kontraktor.impl;
 import org.nustaq.kontraktor.*;
 import org.nustaq.kontraktor.annotations.AsCallback;
 import org.nustaq.kontraktor.annotations.CallerSideMethod;
+import org.nustaq.kontraktor.annotations.InThread;
+import org.nustaq.kontraktor.remoting.RemoteArgCodec;
 import javassist.*;
 import javassist.bytecode.AccessFlag;
 import org.nustaq.kontraktor.util.Log;
 
 import java.io.Externalizable;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Copyright (c) 2012, Ruediger Moeller. All rights reserved.
@@ -44,7 +49,16 @@ import java.util.HashSet;
  */
 public class ActorProxyFactory {
 
+    /**
+     * if false, no invokers are generated and messages are dispatched using reflection (ReflectiveInvoker)
+     */
+    public static boolean USE_GENERATED_INVOKERS = true;
+
     HashMap<String,Class> generatedProxyClasses = new HashMap<String, Class>();
+    HashMap<String,ActorInvoker> generatedInvokers = new HashMap<String, ActorInvoker>();
+    ConcurrentHashMap<Class,InThreadClass> inThreadClasses = new ConcurrentHashMap<>();
+    ConcurrentHashMap<Class,RemoteArgCodec> argCodecs = new ConcurrentHashMap<>();
+    HashSet<ClassLoader> classPathLoaders = new HashSet<>(); // class loaders added to the class pool
 
     public ActorProxyFactory() {
     }
@@ -81,13 +95,27 @@ public class ActorProxyFactory {
         }
     }
 
+    /**
+     * @return the class pool, able to see the classes of clazz's class loader. Called holding the
+     * generatedProxyClasses lock.
+     */
+    protected ClassPool getClassPool(Class clazz) {
+        ClassPool pool = ClassPool.getDefault();
+        // default system path can't see application classes on jdk 9+. Each added path is searched on lookups,
+        // so add one per class loader only
+        if ( classPathLoaders.add(clazz.getClassLoader()) )
+            pool.insertClassPath(new ClassClassPath(clazz));
+        return pool;
+    }
+
     protected <T> Class<T> createProxyClass(Class<T> clazz) throws Exception {
         synchronized (generatedProxyClasses) {
             String proxyName = clazz.getName() + "_ActorProxy";
             String key = clazz.getName();
             Class ccClz = generatedProxyClasses.get(key);
             if (ccClz == null) {
-                ClassPool pool = ClassPool.getDefault();
+                ClassPool pool = getClassPool(clazz);
+                ActorInvoker invoker = createInvoker(clazz, pool);
                 CtClass cc = null;
                 try {
                     cc = pool.getCtClass(proxyName);
@@ -101,16 +129,464 @@ public class ActorProxyFactory {
                     cc.setInterfaces(new CtClass[]{pool.get(Externalizable.class.getName()), pool.get(ActorProxy.class.getName())});
 
                     defineProxyFields(pool, cc);
-                    defineProxyMethods(cc, orig);
+                    defineProxyMethods(cc, orig, invoker);
                 }
 
                 ccClz = loadProxyClass(clazz, pool, cc);
                 generatedProxyClasses.put(key, ccClz);
+                generatedInvokers.put(key, invoker);
             }
             return ccClz;
         }
     }
 
+    /**
+     * @return the invoker (=method table) of the given actor class. The method id's baked into the generated
+     * proxy methods index this table.
+     */
+    public ActorInvoker getInvoker(Class<? extends Actor> clazz) {
+        synchronized (generatedProxyClasses) {
+            return generatedInvokers.get(clazz.getName());
+        }
+    }
+
+    protected ActorInvoker createInvoker(Class clazz, ClassPool pool) throws Exception {
+        CtClass orig = pool.get(clazz.getName());
+        CtMethod[] methods = getAsyncMethods(orig);
+        Method reflectMethods[] = new Method[methods.length];
+        Method[] clzMethods = clazz.getMethods();
+        for (int i = 0; i < methods.length; i++) {
+            for (int j = 0; j < clzMethods.length; j++) {
+                Method m = clzMethods[j];
+                if ( ! m.isBridge() && m.getName().equals(methods[i].getName()) ) {
+                    reflectMethods[i] = m;
+                    break;
+                }
+            }
+            if ( reflectMethods[i] == null )
+                throw new RuntimeException("unable to find method "+methods[i].getName()+" on "+clazz.getName());
+        }
+        CallDescriptor descriptors[] = new CallDescriptor[reflectMethods.length];
+        for (int i = 0; i < reflectMethods.length; i++) {
+            descriptors[i] = createCallDescriptor(reflectMethods[i]);
+        }
+        if ( USE_GENERATED_INVOKERS ) {
+            try {
+                ActorInvoker invoker = generateInvoker(clazz, pool, methods);
+                invoker.init(reflectMethods, descriptors);
+                return invoker;
+            } catch (Throwable th) {
+                // e.g. non public actor class, fall back to reflection
+                Log.Info(this, "could not generate invoker for " + clazz.getName() + ", using reflection. " + th);
+            }
+        }
+        return new ReflectiveInvoker(reflectMethods, descriptors);
+    }
+
+    /**
+     * record the argument slots of an async method which need treatment on each call (see CallDescriptor)
+     */
+    protected CallDescriptor createCallDescriptor(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        ArrayList<Integer> callbacks = new ArrayList<>();
+        ArrayList<Integer> inThread = new ArrayList<>();
+        ArrayList<Integer> actors = new ArrayList<>();
+        for (int j = 0; j < parameterTypes.length; j++) {
+            Class<?> type = parameterTypes[j];
+            if ( CallDescriptor.mightBeCallback(type) )
+                callbacks.add(j);
+            if ( CallDescriptor.isActor(type) )
+                actors.add(j);
+            for (int k = 0; k < parameterAnnotations[j].length; k++) {
+                if ( parameterAnnotations[j][k] instanceof InThread ) {
+                    if ( type == Callback.class ) {
+                        Log.Info(this,"InThread unnecessary when using built in Callback class. method:"+method);
+                    } else if ( ! type.isInterface() ) {
+                        throw new RuntimeException("@InThread can be used on interfaces only");
+                    } else {
+                        inThread.add(j);
+                    }
+                    break;
+                }
+            }
+        }
+        return new CallDescriptor(method, toSlots(callbacks), toSlots(inThread), toSlots(actors));
+    }
+
+    static int[] toSlots(ArrayList<Integer> list) {
+        if ( list.isEmpty() )
+            return CallDescriptor.NONE;
+        int res[] = new int[list.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = list.get(i);
+        }
+        return res;
+    }
+
+    /**
+     * generate a class switching on method index calling the actor method directly
+     */
+    protected ActorInvoker generateInvoker(Class clazz, ClassPool pool, CtMethod methods[]) throws Exception {
+        String invokerName = clazz.getName() + "_ActorInvoker";
+        CtClass cc = null;
+        try {
+            cc = pool.getCtClass(invokerName);
+        } catch (NotFoundException ex) {
+            //ignore
+        }
+        if ( cc == null ) {
+            cc = pool.makeClass(invokerName);
+            cc.setSuperclass(pool.get(ActorInvoker.class.getName()));
+            String clzName = clazz.getName();
+            StringBuilder body = new StringBuilder();
+            body.append("public Object invoke(Object target, int methodIndex, Object[] args) throws Throwable {");
+            body.append(clzName+" t = ("+clzName+")target;");
+            body.append("switch (methodIndex) {");
+            for (int i = 0; i < methods.length; i++) {
+                CtMethod method = methods[i];
+                CtClass[] parameterTypes = method.getParameterTypes();
+                StringBuilder call = new StringBuilder("t."+method.getName()+"(");
+                for (int j = 0; j < parameterTypes.length; j++) {
+                    if ( j > 0 )
+                        call.append(",");
+                    call.append(getArgConversion(parameterTypes[j],"args["+j+"]"));
+                }
+                call.append(")");
+                body.append("case "+i+": ");
+                if ( method.getReturnType() == CtPrimitiveType.voidType ) {
+                    body.append(call+"; return null;");
+                } else {
+                    body.append("return "+call+";");
+                }
+            }
+            body.append("}");
+            body.append("throw new IllegalArgumentException(\"unknown method index \"+methodIndex);");
+            body.append("}");
+            cc.addMethod(CtMethod.make(body.toString(), cc));
+        }
+        Class invokerClass = loadProxyClass(clazz, pool, cc);
+        return (ActorInvoker) invokerClass.newInstance();
+    }
+
+    /**
+     * @return an instance of the class generated for callback interface iface (see InThreadProxy), queuing calls
+     * to target onto the callback queue of actor. null if no class can be generated for iface (e.g. not public).
+     */
+    public <T> T instantiateInThreadProxy(Class iface, Object target, Actor actor) {
+        InThreadClass inThreadClass = inThreadClasses.get(iface);
+        if ( inThreadClass == null ) {
+            synchronized (generatedProxyClasses) {
+                inThreadClass = inThreadClasses.get(iface);
+                if ( inThreadClass == null ) {
+                    inThreadClass = createInThreadClass(iface);
+                    inThreadClasses.put(iface, inThreadClass);
+                }
+            }
+        }
+        if ( inThreadClass.constructor == null )
+            return null;
+        try {
+            return (T) inThreadClass.constructor.newInstance(target, actor, inThreadClass.invoker);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected InThreadClass createInThreadClass(Class iface) {
+        try {
+            ClassPool pool = getClassPool(iface);
+            Method methods[] = getInThreadMethods(iface);
+            CallDescriptor descriptors[] = new CallDescriptor[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                descriptors[i] = createCallDescriptor(methods[i]);
+            }
+            ActorInvoker invoker = generateInThreadInvoker(iface, pool, methods);
+            invoker.init(methods, descriptors);
+            Class proxyClass = generateInThreadClass(iface, pool, methods);
+            return new InThreadClass(proxyClass.getConstructor(Object.class, Actor.class, ActorInvoker.class), invoker);
+        } catch (Throwable th) {
+            Log.Info(this, "could not generate inThread proxy for " + iface.getName() + ", using dynamic proxy. " + th);
+            return new InThreadClass(null, null);
+        }
+    }
+
+    /**
+     * @return the methods of a callback interface forwarded by its InThreadProxy. Index = method index.
+     */
+    protected Method[] getInThreadMethods(Class iface) {
+        ArrayList<Method> res = new ArrayList<>();
+        Method[] methods = iface.getMethods();
+        for (int i = 0; i < methods.length; i++) {
+            if ( ! java.lang.reflect.Modifier.isStatic(methods[i].getModifiers()) )
+                res.add(methods[i]);
+        }
+        res.sort(Comparator.comparing(Method::toString));
+        return res.toArray(new Method[res.size()]);
+    }
+
+    /**
+     * generate an invoker calling the methods of callback interface iface directly
+     */
+    protected ActorInvoker generateInThreadInvoker(Class iface, ClassPool pool, Method methods[]) throws Exception {
+        String invokerName = iface.getName() + "_InThreadInvoker";
+        CtClass cc = null;
+        try {
+            cc = pool.getCtClass(invokerName);
+        } catch (NotFoundException ex) {
+            //ignore
+        }
+        if ( cc == null ) {
+            cc = pool.makeClass(invokerName);
+            cc.setSuperclass(pool.get(ActorInvoker.class.getName()));
+            String ifName = iface.getName();
+            StringBuilder body = new StringBuilder();
+            body.append("public Object invoke(Object target, int methodIndex, Object[] args) throws Throwable {");
+            body.append(ifName+" t = ("+ifName+")target;");
+            body.append("switch (methodIndex) {");
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                StringBuilder call = new StringBuilder("t."+method.getName()+"(");
+                for (int j = 0; j < parameterTypes.length; j++) {
+                    if ( j > 0 )
+                        call.append(",");
+                    call.append(getArgConversion(parameterTypes[j],"args["+j+"]"));
+                }
+                call.append(")");
+                body.append("case "+i+": ");
+                if ( method.getReturnType() == void.class ) {
+                    body.append(call+"; return null;");
+                } else {
+                    body.append("return ($w)"+call+";");
+                }
+            }
+            body.append("}");
+            body.append("throw new IllegalArgumentException(\"unknown method index \"+methodIndex);");
+            body.append("}");
+            cc.addMethod(CtMethod.make(body.toString(), cc));
+        }
+        Class invokerClass = loadProxyClass(iface, pool, cc);
+        return (ActorInvoker) invokerClass.newInstance();
+    }
+
+    /**
+     * generate a class implementing callback interface iface, each method queues a call entry (see InThreadProxy)
+     */
+    protected Class generateInThreadClass(Class iface, ClassPool pool, Method methods[]) throws Exception {
+        String proxyName = iface.getName() + "_InThreadProxy";
+        CtClass cc = null;
+        try {
+            cc = pool.getCtClass(proxyName);
+        } catch (NotFoundException ex) {
+            //ignore
+        }
+        if ( cc == null ) {
+            cc = pool.makeClass(proxyName);
+            cc.setSuperclass(pool.get(InThreadProxy.class.getName()));
+            cc.addInterface(pool.get(iface.getName()));
+            CtClass constructorArgs[] = { pool.get(Object.class.getName()), pool.get(Actor.class.getName()), pool.get(ActorInvoker.class.getName()) };
+            cc.addConstructor(CtNewConstructor.make(constructorArgs, new CtClass[0], "{ super($1,$2,$3); }", cc));
+            for (int i = 0; i < methods.length; i++) {
+                Method method = methods[i];
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                Class<?> returnType = method.getReturnType();
+                StringBuilder src = new StringBuilder("public "+returnType.getTypeName()+" "+method.getName()+"(");
+                for (int j = 0; j < parameterTypes.length; j++) {
+                    if ( j > 0 )
+                        src.append(",");
+                    src.append(parameterTypes[j].getTypeName()+" a"+j);
+                }
+                src.append(") { __enqueue("+i+", $args);");
+                if ( returnType == boolean.class )
+                    src.append("return false;");
+                else if ( returnType.isPrimitive() && returnType != void.class )
+                    src.append("return ("+returnType.getName()+")0;");
+                else if ( returnType != void.class )
+                    src.append("return null;");
+                src.append("}");
+                cc.addMethod(CtMethod.make(src.toString(), cc));
+            }
+        }
+        return loadProxyClass(iface, pool, cc);
+    }
+
+    /**
+     * @return the codec writing the arguments of remote calls to actor class clazz (see RemoteArgCodec).
+     * RemoteArgCodec.NONE if no codec can be generated.
+     */
+    public RemoteArgCodec getArgCodec(Class<? extends Actor> clazz) {
+        RemoteArgCodec codec = argCodecs.get(clazz);
+        if ( codec == null ) {
+            synchronized (generatedProxyClasses) {
+                codec = argCodecs.get(clazz);
+                if ( codec == null ) {
+                    codec = createArgCodec(clazz);
+                    argCodecs.put(clazz, codec);
+                }
+            }
+        }
+        return codec;
+    }
+
+    protected RemoteArgCodec createArgCodec(Class<? extends Actor> clazz) {
+        try {
+            createProxyClass(clazz);
+            ActorInvoker invoker = generatedInvokers.get(clazz.getName());
+            ClassPool pool = getClassPool(clazz);
+            RemoteArgCodec codec = generateArgCodec(clazz, pool, invoker);
+            codec.init(invoker);
+            return codec;
+        } catch (Throwable th) {
+            Log.Info(this, "could not generate argument codec for " + clazz.getName() + ", using serialization. " + th);
+            return RemoteArgCodec.NONE;
+        }
+    }
+
+    /**
+     * generate a class switching on method index writing/reading the arguments of encodable methods
+     * positionally (see RemoteArgCodec)
+     */
+    protected RemoteArgCodec generateArgCodec(Class clazz, ClassPool pool, ActorInvoker invoker) throws Exception {
+        String codecName = clazz.getName() + "_ArgCodec";
+        CtClass cc = null;
+        try {
+            cc = pool.getCtClass(codecName);
+        } catch (NotFoundException ex) {
+            //ignore
+        }
+        if ( cc == null ) {
+            cc = pool.makeClass(codecName);
+            cc.setSuperclass(pool.get(RemoteArgCodec.class.getName()));
+            String codec = RemoteArgCodec.class.getName();
+            StringBuilder encode = new StringBuilder();
+            StringBuilder decode = new StringBuilder();
+            encode.append("public void encode(int methodIndex, org.nustaq.serialization.FSTObjectOutput out, Object[] args) throws java.io.IOException {");
+            encode.append("switch (methodIndex) {");
+            decode.append("public Object[] decode(int methodIndex, org.nustaq.serialization.FSTObjectInput in) throws Exception {");
+            decode.append("switch (methodIndex) {");
+            for (int i = 0; i < invoker.getNumMethods(); i++) {
+                Method method = invoker.getMethod(i);
+                if ( ! RemoteArgCodec.isEncodable(method) )
+                    continue;
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                encode.append("case "+i+": ");
+                decode.append("case "+i+": { Object[] args = new Object["+parameterTypes.length+"];");
+                for (int j = 0; j < parameterTypes.length; j++) {
+                    Class<?> type = parameterTypes[j];
+                    String arg = "args["+j+"]";
+                    if ( type.isPrimitive() ) {
+                        String name = Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+                        String boxed = type == int.class ? "Integer" : type == char.class ? "Character" : name;
+                        encode.append("out.write"+name+"("+getArgConversion(type, arg)+");");
+                        decode.append(arg+" = "+boxed+".valueOf(in.read"+name+"());");
+                    } else if ( type == String.class ) {
+                        encode.append(codec+".writeString(out,(String)"+arg+");");
+                        decode.append(arg+" = "+codec+".readString(in);");
+                    } else if ( type.isArray() ) {
+                        encode.append(codec+".writeArray(out,"+arg+");");
+                        decode.append(arg+" = "+codec+".readArray(in,"+type.getComponentType().getName()+".class);");
+                    } else {
+                        encode.append(codec+".writeFlat(out,"+arg+");");
+                        decode.append(arg+" = "+codec+".readFlat(in,flatTypes["+i+"]["+j+"]);");
+                    }
+                }
+                encode.append("return;");
+                decode.append("return args; }");
+            }
+            encode.append("}");
+            encode.append("throw new IllegalArgumentException(\"no codec for method index \"+methodIndex);");
+            encode.append("}");
+            decode.append("}");
+            decode.append("throw new java.io.IOException(\"no codec for method index \"+methodIndex);");
+            decode.append("}");
+            cc.addMethod(CtMethod.make(encode.toString(), cc));
+            cc.addMethod(CtMethod.make(decode.toString(), cc));
+        }
+        Class codecClass = loadProxyClass(clazz, pool, cc);
+        return (RemoteArgCodec) codecClass.newInstance();
+    }
+
+    protected String getArgConversion(Class type, String arg) {
+        if ( type.isPrimitive() ) {
+            if ( type == boolean.class ) {
+                return ActorInvoker.class.getName()+".toBoolean("+arg+")";
+            }
+            if ( type == char.class ) {
+                return "((Character)"+arg+").charValue()";
+            }
+            return "((Number)"+arg+")."+type.getName()+"Value()";
+        }
+        if ( type == Boolean.class ) {
+            return ActorInvoker.class.getName()+".toBooleanObject("+arg+")";
+        }
+        return "("+type.getTypeName()+")"+arg;
+    }
+
+    protected String getArgConversion(CtClass type, String arg) {
+        if ( type.isPrimitive() ) {
+            if ( type == CtPrimitiveType.booleanType ) {
+                return ActorInvoker.class.getName()+".toBoolean("+arg+")";
+            }
+            if ( type == CtPrimitiveType.charType ) {
+                return "((Character)"+arg+").charValue()";
+            }
+            return "((Number)"+arg+")."+type.getName()+"Value()";
+        }
+        if ( type.getName().equals(Boolean.class.getName()) ) {
+            return ActorInvoker.class.getName()+".toBooleanObject("+arg+")";
+        }
+        return "("+type.getName()+")"+arg;
+    }
+
+    /**
+     * @return the methods of an actor class which are dispatched async via the mailbox. The index of a method in
+     * the returned array is used as its method index.
+     */
+    protected CtMethod[] getAsyncMethods(CtClass orig) throws Exception {
+        CtMethod[] methods = getSortedPublicCtMethods(orig,false);
+        ArrayList<CtMethod> res = new ArrayList<>();
+        for (int i = 0; i < methods.length; i++) {
+            CtMethod method = methods[i];
+            if ( isAsyncMethod(method) ) {
+                res.add(method);
+            }
+        }
+        return res.toArray(new CtMethod[res.size()]);
+    }
+
+    protected boolean isCallerSide(CtMethod originalMethod) throws ClassNotFoundException {
+        return originalMethod.getAnnotation(CallerSideMethod.class) != null ||
+               (originalMethod.getName().equals("self"));// || originalMethod.getName().equals("future")); ??
+    }
+
+    /**
+     * @return true if calls to this method are put to the mailbox of the actor
+     */
+    protected boolean isAsyncMethod(CtMethod originalMethod) throws ClassNotFoundException {
+        boolean allowed = ((originalMethod.getModifiers() & AccessFlag.ABSTRACT) == 0 ) &&
+                (originalMethod.getModifiers() & (AccessFlag.NATIVE|AccessFlag.FINAL|AccessFlag.STATIC)) == 0 &&
+                (originalMethod.getModifiers() & AccessFlag.PUBLIC) != 0 &&
+                !isCallerSide(originalMethod);
+        // by default lock all method of object and actor
+        allowed &= !originalMethod.getDeclaringClass().getName().equals(Object.class.getName()) &&
+                   !originalMethod.getDeclaringClass().getName().equals(Actor.class.getName());
+
+        // exceptions: async built-in actor methods that can be called
+        if ( //originalMethod.getName().equals("executeInActorThread") || // needed again ! see spore
+            // async methods at actor class. FIXME: add annotation
+             originalMethod.getName().equals("$getSubMonitorables") ||
+             originalMethod.getName().equals("$getReport") ||
+             originalMethod.getName().equals("$sync") ||
+             originalMethod.getName().equals("$stop") ||
+             originalMethod.getName().equals("$close")
+        )
+        {
+            allowed = true;
+        }
+        return allowed;
+    }
+
     protected <T> Class loadProxyClass(Class clazz, ClassPool pool, final CtClass cc) throws ClassNotFoundException {
         Class ccClz;
         Loader cl = new Loader(clazz.getClassLoader(), pool) {
@@ -133,9 +609,10 @@ public class ActorProxyFactory {
     }
 
     //FIXME: needs cleanup ...
-    protected void defineProxyMethods(CtClass cc, CtClass orig) throws Exception {
+    protected void defineProxyMethods(CtClass cc, CtClass orig, ActorInvoker invoker) throws Exception {
 //        cc.addMethod( CtMethod.make( "public void __setDispatcher( "+ DispatcherThread.class.getName()+" d ) { __target.__dispatcher(d); }", cc ) );
         CtMethod[] methods = getSortedPublicCtMethods(orig,false);
+        int methodId = 0; // index into method table, see getAsyncMethods
 
         for (int i = 0; i < methods.length; i++) {
             CtMethod method = methods[i];
@@ -151,10 +628,7 @@ public class ActorProxyFactory {
             }
 
             CtClass returnType = method.getReturnType();
-            boolean isCallerSide = // don't touch
-                    originalMethod.getAnnotation(CallerSideMethod.class) != null ||
-                    (originalMethod.getName().equals("self"));// || originalMethod.getName().equals("future")); ??
-
+            boolean isCallerSide = isCallerSide(originalMethod); // don't touch
 
             if ( isCallerSide ) {
                 // verify callerside and inthread are not used
@@ -173,26 +647,7 @@ public class ActorProxyFactory {
                 }
             }
 
-            boolean allowed = ((method.getModifiers() & AccessFlag.ABSTRACT) == 0 ) &&
-                    (method.getModifiers() & (AccessFlag.NATIVE|AccessFlag.FINAL|AccessFlag.STATIC)) == 0 &&
-                    (method.getModifiers() & AccessFlag.PUBLIC) != 0 &&
-                    !isCallerSide;
-            // by default lock all method of object and actor
-            allowed &= !originalMethod.getDeclaringClass().getName().equals(Object.class.getName()) &&
-                       !originalMethod.getDeclaringClass().getName().equals(Actor.class.getName());
-
-            // exceptions: async built-in actor methods that can be called
-            if ( //originalMethod.getName().equals("executeInActorThread") || // needed again ! see spore
-                // async methods at actor class. FIXME: add annotation
-                 originalMethod.getName().equals("$getSubMonitorables") ||
-                 originalMethod.getName().equals("$getReport") ||
-                 originalMethod.getName().equals("$sync") ||
-                 originalMethod.getName().equals("$stop") ||
-                 originalMethod.getName().equals("$close")
-            )
-            {
-                allowed = true;
-            }
+            boolean allowed = isAsyncMethod(originalMethod);
 
             if (allowed) {
                 boolean isVoid = returnType == CtPrimitiveType.voidType;
@@ -201,29 +656,19 @@ public class ActorProxyFactory {
                     throw new RuntimeException("only void methods or methods returning Future allowed problematic method:"+originalMethod );
                 }
                 String conversion = "";
-                Object[][] availableParameterAnnotations = originalMethod.getAvailableParameterAnnotations();
-                CtClass[] parameterTypes = originalMethod.getParameterTypes();
-                for (int j = 0; j < availableParameterAnnotations.length; j++) {
-                    Object[] availableParameterAnnotation = availableParameterAnnotations[j];
-                    if ( availableParameterAnnotation.length > 0 ) {
-                        for (int k = 0; k < availableParameterAnnotation.length; k++) {
-                            Object annot = availableParameterAnnotation[k];
-                            if ( annot.toString().indexOf("kontraktor.annotations.InThread") > 0 ) {
-                                if ( parameterTypes[j].getName().equals(Callback.class.getName()) ) {
-                                    Log.Info(this,"InThread unnecessary when using built in Callback class. method:"+originalMethod+" clz:"+orig);
-                                    continue;
-                                }
-                                if ( ! parameterTypes[j].isInterface() )
-                                    throw new RuntimeException("@InThread can be used on interfaces only");
-                                String an = Actor.class.getName();
-                                conversion += an+" sender=("+an+")sender.get();";
-                                conversion += "if ( sender != null ) { args[" + j + "] = sender.__scheduler.inThread(sender.__self, args[" + j + "]); }";
-                                break;
-                            }
-                        }
+                int inThreadSlots[] = invoker.getDescriptor(methodId).getInThreadSlots();
+                if ( inThreadSlots.length > 0 ) {
+                    String an = Actor.class.getName();
+                    conversion += an+" sender=("+an+")sender.get();";
+                    conversion += "if ( sender != null ) {";
+                    for (int j = 0; j < inThreadSlots.length; j++) {
+                        int slot = inThreadSlots[j];
+                        conversion += "args[" + slot + "] = sender.__scheduler.inThread(sender.__self, args[" + slot + "]);";
                     }
+                    conversion += "}";
                 }
-                String call = "__target.__enqueueCall( this, \""+method.getName()+"\", args, "+isCallbackCall+" );";
+                String call = "__target.__enqueueCall( this, "+methodId+", args, "+isCallbackCall+" );";
+                methodId++;
                 if ( ! isVoid ) {
                     call = "return ("+originalMethod.getReturnType().getName()+") (Object)"+call;
                 }
@@ -453,5 +898,16 @@ public class ActorProxyFactory {
         });
         return methods;
     }
-}
 
+    static class InThreadClass {
+
+        final Constructor constructor; // null if generation failed
+        final ActorInvoker invoker;
+
+        InThreadClass(Constructor constructor, ActorInvoker invoker) {
+            this.constructor = constructor;
+            this.invoker = invoker;
+        }
+    }
+
+}
@@ -10,6 +10,9 @@ import java.util.concurrent.locks.*;
  *
  * if a message queue is empty, first busy spin is used for N iterations, then Thread.yield, then LockSupport.park, then sleep(nanosToPark)
  *
+ * With wakeOnEnqueue set, an idle dispatcher finally parks until a sender queues a message to one of its actors
+ * (at most nanosToParkSignaled) instead of polling each nanosToPark.
+ *
  */
 public class BackOffStrategy {
 
@@ -17,6 +20,8 @@ public class BackOffStrategy {
     int parkCount;
     int sleepCount;
     int nanosToPark  = 1000*300; // 1/3 milli (=latency peak on burst ..)
+    boolean wakeOnEnqueue = false;
+    long nanosToParkSignaled = 1000*1000*50; // upper bound, senders unpark
 
     public BackOffStrategy() {
         setCounters(5000,1000,10);
@@ -45,6 +50,26 @@ public class BackOffStrategy {
         this.nanosToPark = nanosToPark;
     }
 
+    public boolean isWakeOnEnqueue() {
+        return wakeOnEnqueue;
+    }
+
+    /**
+     * if true, idle dispatchers are unparked by senders (see DispatcherThread.wakeUp). Gives low idle CPU and low
+     * latency on the first message after a pause at the cost of a volatile read per message sent.
+     */
+    public void setWakeOnEnqueue(boolean wakeOnEnqueue) {
+        this.wakeOnEnqueue = wakeOnEnqueue;
+    }
+
+    public long getNanosToParkSignaled() {
+        return nanosToParkSignaled;
+    }
+
+    public void setNanosToParkSignaled(long nanosToParkSignaled) {
+        this.nanosToParkSignaled = nanosToParkSignaled;
+    }
+
     public void yield(int count) {
         if ( count > sleepCount || count < 0 ) {
             LockSupport.parkNanos(nanosToPark);
@@ -0,0 +1,73 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Callback;
+import org.nustaq.kontraktor.Future;
+
+import java.lang.reflect.Method;
+
+/**
+ * Call metadata of an async actor method, built once by ActorProxyFactory when the proxy class is generated
+ * (see ActorInvoker.getDescriptor). Records which argument slots need treatment on each call, so only those
+ * slots are touched instead of checking all args of each message.
+ */
+public class CallDescriptor {
+
+    static final int NONE[] = new int[0];
+
+    final Method method;
+    final int callbackSlots[];
+    final int inThreadSlots[];
+    final int actorSlots[];
+    final boolean futureResult;
+
+    public CallDescriptor(Method method, int callbackSlots[], int inThreadSlots[], int actorSlots[]) {
+        this.method = method;
+        this.callbackSlots = callbackSlots;
+        this.inThreadSlots = inThreadSlots;
+        this.actorSlots = actorSlots;
+        this.futureResult = method.getReturnType() == Future.class;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return indices of arguments which might be a Callback (declared as Callback, Future or a supertype of
+     * Callback like Object). The scheduler wraps Callbacks passed there, so they are executed in the sender's thread.
+     */
+    public int[] getCallbackSlots() {
+        return callbackSlots;
+    }
+
+    /**
+     * @return indices of interface arguments annotated with @InThread. They are wrapped by the generated proxy.
+     */
+    public int[] getInThreadSlots() {
+        return inThreadSlots;
+    }
+
+    /**
+     * @return indices of arguments declared as an Actor (subclass)
+     */
+    public int[] getActorSlots() {
+        return actorSlots;
+    }
+
+    public boolean hasFutureResult() {
+        return futureResult;
+    }
+
+    /**
+     * @return true if an argument of given type might be a Callback
+     */
+    public static boolean mightBeCallback(Class type) {
+        return Callback.class.isAssignableFrom(type) || type.isAssignableFrom(Callback.class);
+    }
+
+    public static boolean isActor(Class type) {
+        return Actor.class.isAssignableFrom(type);
+    }
+
+}
@@ -17,6 +17,8 @@ public class CallEntry<T> implements Message<T> {
     transient private Actor sendingActor; // defines the sender of this message. null in case of outside call
     transient private Actor targetActor;  // defines actor assignment in case target is callback
     transient private boolean onCBQueue;  // determines queue used
+    transient private ActorInvoker invoker; // if != null, used instead of method.invoke
+    transient private int methodIndex = -1;
 
     public CallEntry(T target, Method method, Object[] args, Actor sender, Actor targetActor, boolean isCB) {
         this.target = target;
@@ -27,6 +29,12 @@ public class CallEntry<T> implements Message<T> {
         this.onCBQueue = isCB;
     }
 
+    public CallEntry(T target, Method method, Object[] args, Actor sender, Actor targetActor, boolean isCB, ActorInvoker invoker, int methodIndex) {
+        this(target, method, args, sender, targetActor, isCB);
+        this.invoker = invoker;
+        this.methodIndex = methodIndex;
+    }
+
     public Actor getTargetActor() {
         return targetActor;
     }
@@ -37,6 +45,8 @@ public class CallEntry<T> implements Message<T> {
         return method;
     }
     public Object[] getArgs() { return args; }
+    public ActorInvoker getInvoker() { return invoker; }
+    public int getMethodIndex() { return methodIndex; }
 
     @Override
     public Actor getSendingActor() {
@@ -68,6 +78,8 @@ public class CallEntry<T> implements Message<T> {
 //    }
 
     public boolean hasFutureResult() {
+        if ( invoker != null )
+            return invoker.getDescriptor(methodIndex).hasFutureResult();
         return method.getReturnType() == Future.class;
     }
 
@@ -0,0 +1,34 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Callback;
+
+/**
+ * callback queue entry passing a result to a Callback (see CallbackWrapper). Recognized by the dispatcher and
+ * executed as a direct Callback.receive(result, error), so delivering a result does not go through reflection
+ * and needs no args array.
+ */
+public class CallbackEntry<T> extends CallEntry<Callback<T>> {
+
+    final T result;
+    final Object error;
+
+    public CallbackEntry(Callback<T> callback, T result, Object error, Actor sender, Actor targetActor) {
+        super(callback, CallbackWrapper.receiveRes, null, sender, targetActor, true);
+        this.result = result;
+        this.error = error;
+    }
+
+    public void deliver() {
+        getTarget().receive(result, error);
+    }
+
+    /**
+     * not used for dispatch, created on each call
+     */
+    @Override
+    public Object[] getArgs() {
+        return new Object[] { result, error };
+    }
+
+}
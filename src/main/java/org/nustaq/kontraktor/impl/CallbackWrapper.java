@@ -60,12 +60,12 @@ public class CallbackWrapper<T> implements Future<T>, Serializable {
         if ( targetActor == null ) {
             // call came from outside the actor world => use current thread => blocking the callback blocks actor, dont't !
             try {
-                receiveRes.invoke(realCallback, result, error);
+                realCallback.receive(result, error);
             } catch (Exception e) {
                 Log.Warn( this, e, "" );
             }
         } else {
-            CallEntry ce = new CallEntry( realCallback, receiveRes, new Object[]{result,error}, Actor.sender.get(), targetActor, true);
+            CallEntry ce = new CallbackEntry<>( realCallback, result, error, Actor.sender.get(), targetActor);
             targetActor.__scheduler.put2QueuePolling(targetActor.__cbQueue, true, ce, targetActor);
         }
     }
@@ -0,0 +1,49 @@
+package org.nustaq.kontraktor.impl;
+
+/**
+ * Time spent handling messages over a sliding window of two periods (current + previous), so the share of
+ * thread time used can be read any time without periodic resets. Written by a single thread (the dispatcher
+ * currently executing the actor), reads from other threads are approximations.
+ */
+public class CostMeter {
+
+    public static int PERIOD_MILLIS = 50;
+
+    static final long BASE_NANOS = System.nanoTime();
+
+    long period; // index of current period
+    long nanos;
+    long prevNanos;
+
+    public void add(long nanos, long now) {
+        long p = period(now);
+        if ( p != period ) {
+            prevNanos = p == period + 1 ? this.nanos : 0;
+            this.nanos = 0;
+            period = p;
+        }
+        this.nanos += nanos;
+    }
+
+    /**
+     * @return share of thread time spent in 1/1000 during the current and previous period
+     */
+    public int getPerMille(long now) {
+        long p = period(now);
+        long spent;
+        if ( p == period )
+            spent = nanos + prevNanos;
+        else if ( p == period + 1 )
+            spent = nanos;
+        else
+            return 0;
+        long periodNanos = PERIOD_MILLIS * 1000l * 1000;
+        long elapsed = periodNanos + (now - BASE_NANOS) % periodNanos;
+        return (int) Math.min(1000, spent * 1000 / elapsed);
+    }
+
+    static long period(long now) {
+        return (now - BASE_NANOS) / (PERIOD_MILLIS * 1000l * 1000);
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.nustaq.kontraktor.impl;
 
 import org.nustaq.kontraktor.*;
+import io.jaq.mpsc.MpscChunkedQueue;
 import io.jaq.mpsc.MpscConcurrentQueue;
 import org.nustaq.kontraktor.monitoring.Monitorable;
 import org.nustaq.kontraktor.util.Log;
@@ -9,7 +10,10 @@ import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * Copyright (c) 2012, Ruediger Moeller. All rights reserved.
@@ -50,12 +54,29 @@ import java.util.concurrent.locks.LockSupport;
  * The Actors.Channel method allows to specifiy a dedicated dispatcher on which to run the actor. This way it is possible
  * to exactly balance and control the number of threads created and which thread operates a set of actors.
  *
+ * By default all actors of a dispatcher are polled round robin. With ready queue scheduling, a sender queues the
+ * receiving actor ref to the ready queue of its dispatcher once it has pending messages (Actor.__ready avoids
+ * duplicates), so the dispatcher only runs actors having work. Scheduling cost per message then does not depend on
+ * the number of (mostly idle) actors on a thread.
+ *
+ * With stealing enabled, an idle dispatcher takes over actors having pending messages from a dispatcher which is busy
+ * executing another actor (see ElasticScheduler.setStealing). A turn is only run after acquiring Actor.__runner, a
+ * thief moves an actor only while holding it, so an actor is never executed by two threads at a time and the
+ * (single consumer) queues of an actor are handed over in order.
+ *
+ * With direct calls enabled (see ElasticScheduler.setDirectCalls), a message sent from within a turn to another actor
+ * of the same dispatcher is invoked inline instead of being queued, if the receiver has no pending messages, is not
+ * executing already further up the stack and the nesting limit (MAX_DIRECT_CALL_DEPTH) has not been reached.
+ * Otherwise the message is queued as usual.
  */
 public class DispatcherThread extends Thread implements Monitorable {
 
     public static int SCHEDULE_TICK_NANOS = 1000*500; // how often balancing/profiling is done
     public static int QUEUE_PERCENTAGE_TRIGGERING_REBALANCE = 50;      // if queue is X % full, consider rebalance
     public static int MILLIS_AFTER_CREATION_BEFORE_REBALANCING = 2; // give caches a chance to get things going before rebalancing
+    public static int COST_PERMILLE_TRIGGERING_REBALANCE = 800;      // if X/1000 of the thread's time is spent in actors, consider rebalance
+    public static int COST_SAMPLE_INTERVAL = 8; // every Nth message is timed (2^x)
+    public static int COST_TIME_ALL_NANOS = 20 * 1000; // if a timed message took longer, each message is timed
 
     private Scheduler scheduler;
 
@@ -70,8 +91,55 @@ public class DispatcherThread extends Thread implements Monitorable {
     int stackDepth = 0;
     volatile boolean isIsolated = false;
 
+    static final AtomicIntegerFieldUpdater<Actor> readyUpdater = AtomicIntegerFieldUpdater.newUpdater(Actor.class, "__ready");
+    final boolean useReadyQueue;
+    final ConcurrentLinkedQueue<Actor> readyQueue; // actor refs having pending messages, null if round robin
+    volatile boolean sleeping; // parked until woken up by a sender (BackOffStrategy.wakeOnEnqueue)
+
+    public static int STEAL_SCAN_ACTORS = 32; // max actors of a busy thread checked per steal attempt (round robin)
+    static final AtomicReferenceFieldUpdater<Actor,Thread> runnerUpdater = AtomicReferenceFieldUpdater.newUpdater(Actor.class, Thread.class, "__runner");
+    final boolean stealing;
+    boolean inTurn; // written by this thread only, read racy by thieves
+    volatile boolean actorsStolen; // set by a thief, actors[] contains actors dispatched by another thread
+    final SendBatch sendBatch; // null if sends are not batched
+    int turnDepth;
+    int stealScanIndex; // written racy by thieves
+    int victimIndex;
+
+    public static int MAX_DIRECT_CALL_DEPTH = 8; // max nesting of inline calls (see ElasticScheduler.setDirectCalls)
+    final Actor directCallers[] = new Actor[MAX_DIRECT_CALL_DEPTH]; // actors waiting for an inline call to return
+    int directDepth;
+
     public DispatcherThread(Scheduler scheduler) {
+        this(scheduler,false);
+    }
+
+    /**
+     * @param useReadyQueue - if true, only actors with pending messages are polled (see class doc)
+     */
+    public DispatcherThread(Scheduler scheduler, boolean useReadyQueue) {
+        this(scheduler, useReadyQueue, false);
+    }
+
+    /**
+     * @param useReadyQueue - if true, only actors with pending messages are polled (see class doc)
+     * @param stealing - if true, take over actors of busy threads when idle (see class doc)
+     */
+    public DispatcherThread(Scheduler scheduler, boolean useReadyQueue, boolean stealing) {
+        this(scheduler, useReadyQueue, stealing, false);
+    }
+
+    /**
+     * @param useReadyQueue - if true, only actors with pending messages are polled (see class doc)
+     * @param stealing - if true, take over actors of busy threads when idle (see class doc)
+     * @param batchSends - if true, messages to actors of other threads are sent once a turn is done (see SendBatch)
+     */
+    public DispatcherThread(Scheduler scheduler, boolean useReadyQueue, boolean stealing, boolean batchSends) {
         this.scheduler = scheduler;
+        this.useReadyQueue = useReadyQueue;
+        this.stealing = stealing;
+        sendBatch = batchSends ? new SendBatch() : null;
+        readyQueue = useReadyQueue ? new ConcurrentLinkedQueue<>() : null;
         setName("DispatcherThread "+dtcount.incrementAndGet());
     }
 
@@ -93,6 +161,7 @@ public class DispatcherThread extends Thread implements Monitorable {
     public void addActor(Actor act) {
         act.getActorRef().__currentDispatcher = act.getActor().__currentDispatcher = this;
         toAdd.offer(act.getActorRef());
+        wakeUp(); // moved actors might have pending messages
     }
 
     // removes immediate must be called from this thread
@@ -121,20 +190,29 @@ public class DispatcherThread extends Thread implements Monitorable {
             try {
                 if ( pollQs() ) {
                     emptyCount = 0;
-                    if ( System.nanoTime() - scheduleTickTime > SCHEDULE_TICK_NANOS) {
-                        if ( emptySinceLastCheck == 0 ) // no idle during last interval
-                        {
-                            checkForSplit();
+                    long now = System.nanoTime();
+                    if ( now - scheduleTickTime > SCHEDULE_TICK_NANOS) {
+                        checkForSplit(emptySinceLastCheck == 0, now); // no idle during last interval
+                        if ( now - nextColocate > 0 ) {
+                            nextColocate = now + CostMeter.PERIOD_MILLIS * 1000l * 1000;
+                            scheduler.colocate(this);
                         }
                         emptySinceLastCheck = 0;
                         scheduleTickTime = System.nanoTime();
                         schedulePendingAdds();
                     }
                 }
+                else if ( stealing && isIdle(emptyCount) && scheduler.steal(this) ) {
+                    emptyCount = 0;
+                }
                 else {
                     emptyCount++;
                     emptySinceLastCheck++;
-                    scheduler.yield(emptyCount);
+                    BackOffStrategy backOff = scheduler.getBackoffStrategy();
+                    if ( backOff.isWakeOnEnqueue() && backOff.isSleeping(emptyCount) )
+                        parkUntilWoken(backOff.getNanosToParkSignaled());
+                    else
+                        scheduler.yield(emptyCount);
                     if (shutDown) // access volatile only when idle
                         isShutDown = true;
                     if ( scheduler.getBackoffStrategy().isSleeping(emptyCount) ) {
@@ -156,6 +234,8 @@ public class DispatcherThread extends Thread implements Monitorable {
         scheduler.threadStopped(this);
         for ( int i = 0; i < 100; i++ ) { // FIXME: umh .. works in practice
             LockSupport.parkNanos(1000*1000*5);
+            if ( useReadyQueue )
+                forwardReadyQueue();
             while ( actors.length > 0 || toAdd.peek() != null ) {
 //                if ( ElasticScheduler.DEBUG_SCHEDULING)
                     Log.Lg.warn(this, "Severe: zombie dispatcher thread detected");
@@ -167,6 +247,33 @@ public class DispatcherThread extends Thread implements Monitorable {
             Log.Info(this,"dispatcher thread terminated "+getName());
     }
 
+    // park until a sender calls wakeUp
+    void parkUntilWoken(long maxNanos) {
+        sleeping = true;
+        // re-check after publishing the flag, a sender might have queued before seeing it
+        if ( ! hasWork() )
+            LockSupport.parkNanos(this, maxNanos);
+        sleeping = false;
+    }
+
+    boolean hasWork() {
+        if ( toAdd.peek() != null )
+            return true;
+        if ( useReadyQueue )
+            return ! readyQueue.isEmpty();
+        return ! isEmpty();
+    }
+
+    /**
+     * unpark this dispatcher in case it sleeps. Called after a message has been queued to one of its actors.
+     */
+    public void wakeUp() {
+        if ( sleeping ) {
+            sleeping = false;
+            LockSupport.unpark(this);
+        }
+    }
+
     /**
      * add actors which have been marked to be scheduled on this
      */
@@ -176,7 +283,10 @@ public class DispatcherThread extends Thread implements Monitorable {
         while ( (a=toAdd.poll()) != null ) {
             newOnes.add(a);
         }
-        if ( newOnes.size() > 0 ) {
+        if ( stealing ) {
+            if ( newOnes.size() > 0 || actorsStolen )
+                purgeActors(newOnes);
+        } else if ( newOnes.size() > 0 ) {
             Actor newQueue[] = new Actor[newOnes.size()+actors.length];
             System.arraycopy(actors,0,newQueue,0,actors.length);
             for (int i = 0; i < newOnes.size(); i++) {
@@ -188,9 +298,96 @@ public class DispatcherThread extends Thread implements Monitorable {
 
     }
 
+    /**
+     * stealing only. An actor moved away might have been stolen back meanwhile (then it is contained twice), and
+     * actors queued to toAdd might have been stolen before being added. Rebuild actors[] from all actors currently
+     * dispatched by this thread.
+     */
+    private void purgeActors(List<Actor> newOnes) {
+        actorsStolen = false;
+        Set<Actor> res = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < actors.length; i++) {
+            if ( actors[i].__currentDispatcher == this )
+                res.add(actors[i]);
+        }
+        for (int i = 0; i < newOnes.size(); i++) {
+            if ( newOnes.get(i).__currentDispatcher == this )
+                res.add(newOnes.get(i));
+        }
+        if ( res.size() != actors.length || newOnes.size() > 0 )
+            actors = res.toArray(new Actor[res.size()]);
+    }
+
+    /**
+     * @return true if this thread found nothing to do during the last round (ready queue empty or all actors polled)
+     */
+    boolean isIdle(int emptyCount) {
+        return useReadyQueue || emptyCount >= actors.length;
+    }
+
+    /**
+     * @return true if this thread currently executes an actor. Racy, used to pick a thread to steal from.
+     */
+    boolean isBusy() {
+        return inTurn && ! sleeping;
+    }
+
+    /**
+     * called by a thief. In ready queue mode, removes and returns the next ready actor, else the next actor
+     * having pending messages which is not executed currently.
+     */
+    Actor pollStealable() {
+        if ( useReadyQueue )
+            return readyQueue.poll();
+        final Actor actors[] = this.actors;
+        final int n = actors.length;
+        final int start = stealScanIndex;
+        for (int i = 0; i < n && i < STEAL_SCAN_ACTORS; i++) {
+            Actor actor = actors[(start + i) % n];
+            if ( actor.__runner == null && actor.__currentDispatcher == this && hasPendingMessages(actor) ) {
+                stealScanIndex = (start + i + 1) % n;
+                return actor;
+            }
+        }
+        stealScanIndex = (start + STEAL_SCAN_ACTORS) % Math.max(1, n);
+        return null;
+    }
+
+    /**
+     * called by this (idle) thread to move actorRef from victim to this. Fails if the actor is executed currently,
+     * has been moved meanwhile or has been stopped. In ready queue mode actorRef must have been polled from
+     * victim's ready queue, it is requeued in case of failure.
+     *
+     * @return true if actorRef is dispatched by this thread now
+     */
+    boolean takeOver(Actor actorRef, DispatcherThread victim) {
+        boolean res = false;
+        if ( runnerUpdater.compareAndSet(actorRef, null, this) ) {
+            try {
+                if ( actorRef.__currentDispatcher == victim && ! actorRef.__stopped ) {
+                    actorRef.__currentDispatcher = actorRef.getActor().__currentDispatcher = this;
+                    victim.actorsStolen = true;
+                    toAdd.offer(actorRef); // added immediately, might be contained already if it has been stolen from this before
+                    actorsStolen = true;
+                    schedulePendingAdds();
+                    res = true;
+                }
+            } finally {
+                actorRef.__runner = null;
+            }
+        }
+        if ( useReadyQueue && ! actorRef.__stopped ) {
+            if ( res )
+                readyQueue.offer(actorRef); // ready flag is still set
+            else
+                requeue(actorRef);
+        }
+        return res;
+    }
+
     // poll all actors in queue arr round robin
     int count = 0;
-    protected CallEntry pollQueues(Actor[] actors) {
+    protected Actor nextActor(Actor[] actors) {
         if ( count >= actors.length ) {
             // check for changed queueList each run FIXME: too often !
             count = 0;
@@ -198,12 +395,125 @@ public class DispatcherThread extends Thread implements Monitorable {
                 return null;
             }
         }
-        Actor actor2poll = actors[count];
-        CallEntry res = (CallEntry) actor2poll.__cbQueue.poll();
-        if ( res == null )
-            res = (CallEntry) actor2poll.__mailbox.poll();
-        count++;
-        return res;
+        return actors[count++];
+    }
+
+    Actor turnActor; // actor of current batch
+    final Consumer drainConsumer = entry -> {
+        if ( ! turnActor.__stopped ) // $stop has been processed in this batch
+            dispatch((CallEntry) entry);
+    };
+
+    /**
+     * process up to 'throughput' messages of given actor, callbacks queued before the turn are processed first.
+     * Throughput is taken from the actor (Actor.setThroughput) or the scheduler.
+     *
+     * @return false if no message has been processed
+     */
+    protected boolean runTurn(Actor actor) {
+        if ( ! stealing || actor.__runner == this ) // nested turn (see ElasticScheduler.put2QueuePolling)
+            return runTurnOwned(actor);
+        if ( ! runnerUpdater.compareAndSet(actor, null, this) )
+            return false; // taken over currently
+        final boolean prevInTurn = inTurn;
+        try {
+            if ( actor.__currentDispatcher != this ) // stolen
+                return false;
+            inTurn = true;
+            return runTurnOwned(actor);
+        } finally {
+            inTurn = prevInTurn;
+            actor.__runner = null;
+        }
+    }
+
+    private boolean runTurnOwned(Actor actor) {
+        if ( sendBatch == null )
+            return processTurn(actor);
+        turnDepth++;
+        try {
+            return processTurn(actor);
+        } finally {
+            turnDepth--;
+            sendBatch.flush(); // messages sent to actors of other threads during the turn
+        }
+    }
+
+    private boolean processTurn(Actor actor) {
+        int throughput = actor.__throughput > 0 ? actor.__throughput : scheduler.getThroughput();
+        if ( throughput <= 1 ) {
+            CallEntry callEntry = (CallEntry) actor.__cbQueue.poll();
+            if ( callEntry == null )
+                callEntry = (CallEntry) pollMailbox(actor);
+            return callEntry != null && dispatch(callEntry);
+        }
+        Actor prevTurnActor = turnActor; // turns might nest (see ElasticScheduler.put2QueuePolling)
+        turnActor = actor;
+        int count = drain(actor.__cbQueue, drainConsumer, throughput);
+        if ( count < throughput )
+            count += drainMailbox(actor, drainConsumer, throughput - count);
+        turnActor = prevTurnActor;
+        return count > 0;
+    }
+
+    /**
+     * poll next message of actor. Spilled messages (OverflowPolicy.SPILL, DROP_OLDEST) are polled
+     * once the mailbox is empty. Spilled messages of a stopped actor are discarded.
+     */
+    public static Object pollMailbox(Actor actor) {
+        final Queue overflow = actor.__overflow;
+        if ( overflow == null )
+            return actor.__mailbox.poll();
+        if ( actor.__stopped ) { // e.g. $stop processed during this turn
+            overflow.clear();
+            return null;
+        }
+        dropOldest(actor, overflow);
+        Object res = actor.__mailbox.poll();
+        return res != null ? res : overflow.poll();
+    }
+
+    /**
+     * process up to limit messages of actor's mailbox, then spilled messages.
+     */
+    static int drainMailbox(Actor actor, Consumer consumer, int limit) {
+        if ( actor.__overflow == null )
+            return drain(actor.__mailbox, consumer, limit);
+        // one by one, a message might block the turn while senders overflow
+        int count = 0;
+        Object entry;
+        while ( count < limit && (entry = pollMailbox(actor)) != null ) {
+            count++;
+            consumer.accept(entry);
+        }
+        return count;
+    }
+
+    // OverflowPolicy.DROP_OLDEST, discard the messages displaced by spilled ones
+    static void dropOldest(Actor actor, Queue overflow) {
+        final Actor realActor = actor.getActor();
+        final OverflowStats stats = realActor == null ? null : realActor.__overflowStats;
+        if ( stats == null || stats.pendingDrops.get() == 0 )
+            return;
+        int toDrop = stats.pendingDrops.getAndSet(0);
+        int dropped = 0;
+        while ( dropped < toDrop && (actor.__mailbox.poll() != null || overflow.poll() != null) )
+            dropped++;
+        stats.dropped.addAndGet(dropped);
+    }
+
+    static int drain(Queue q, Consumer consumer, int limit) {
+        if ( q instanceof MpscChunkedQueue )
+            return ((MpscChunkedQueue) q).drain(consumer, limit);
+        if ( q instanceof MpscConcurrentQueue )
+            return ((MpscConcurrentQueue) q).drain(consumer, limit);
+        int count = 0;
+        Object entry;
+        while ( count < limit && (entry = q.poll()) != null ) {
+            count++;
+            consumer.accept(entry);
+        }
+        return count;
     }
 
 
@@ -211,6 +521,8 @@ public class DispatcherThread extends Thread implements Monitorable {
     long created = System.currentTimeMillis();
 
     public boolean pollQs() {
+        if ( useReadyQueue )
+            return pollReadyQueue();
         return pollQs(actors);
     }
 
@@ -218,58 +530,201 @@ public class DispatcherThread extends Thread implements Monitorable {
      * @return false if no message could be polled
      */
     public boolean pollQs(Actor actors[]) {
-        CallEntry callEntry = pollQueues(actors);
-        if (callEntry != null) {
-            try {
-                // before calling the actor method, set current sender
-                // to target, so for each method/callback invoked by the actor method,
-                // sender has correct value
-                Actor.sender.set(callEntry.getTargetActor());
-                Object invoke = null;
-                try {
-                    invoke = invoke(callEntry);
-                } catch (IllegalArgumentException iae) {
-                    // FIXME: boolean is translated wrong by minbin .. this fix is expensive
-                    final Class<?>[] parameterTypes = callEntry.getMethod().getParameterTypes();
-                    final Object[] args = callEntry.getArgs();
-                    if ( args.length == parameterTypes.length ) {
-                        for (int i = 0; i < args.length; i++) {
-                            Object arg = args[i];
-                            if ( (parameterTypes[i] == boolean.class || parameterTypes[i] == Boolean.class) &&
-                                 arg instanceof Byte ) {
-                                args[i] = ((Byte) arg).intValue()!=0;
-                            }
-                        }
-                        invoke = invoke(callEntry);
-                    } else {
-                        System.out.println("mismatch when invoking method " + callEntry);
-                        for (int i = 0; i < callEntry.getArgs().length; i++) {
-                            Object o = callEntry.getArgs()[i];
-                            System.out.println("arg " + i + " " + o + (o != null ? " " + o.getClass().getSimpleName() : "") + ",");
+        Actor actor = nextActor(actors);
+        if (actor != null) {
+            return runTurn(actor);
+        }
+        return false;
+    }
+
+    /**
+     * ready queue scheduling: run a turn of the next actor having pending messages
+     * @return false if no actor is ready
+     */
+    protected boolean pollReadyQueue() {
+        Actor actor = readyQueue.poll();
+        if ( actor == null )
+            return false;
+        if ( actor.__currentDispatcher != this ) {
+            // moved to another dispatcher (rebalance, isolate), ready state moves with it
+            requeue(actor);
+            return true;
+        }
+        if ( actor.__stopped ) { // leave ready flag set, so a stopped actor is not queued again
+            return true;
+        }
+        boolean res = runTurn(actor); // queues might have been emptied by a nested pollQs already
+        if ( ! actor.__stopped ) {
+            if ( hasPendingMessages(actor) ) {
+                requeue(actor);
+            } else {
+                actor.__ready = 0;
+                // a sender might have seen the flag still set after queuing
+                if ( hasPendingMessages(actor) )
+                    ((DispatcherThread) actor.__currentDispatcher).actorReady(actor);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * ready queue scheduling only. Called by senders after a message has been put to one of the queues of the given
+     * actor ref, queues the ref to the ready queue in case it is not queued already.
+     */
+    public void actorReady(Actor actorRef) {
+        if ( useReadyQueue && actorRef.__ready == 0 && readyUpdater.compareAndSet(actorRef, 0, 1) ) {
+            readyQueue.offer(actorRef);
+        }
+    }
+
+    // ready flag is set. queue to current dispatcher of actor
+    static void requeue(Actor actorRef) {
+        DispatcherThread dispatcher = (DispatcherThread) actorRef.__currentDispatcher;
+        if ( dispatcher.useReadyQueue )
+            dispatcher.readyQueue.offer(actorRef);
+        else
+            actorRef.__ready = 0; // polled round robin anyway
+    }
+
+    static boolean hasPendingMessages(Actor actor) {
+        final Queue overflow = actor.__overflow;
+        return ! actor.__cbQueue.isEmpty() || ! actor.__mailbox.isEmpty() || (overflow != null && ! overflow.isEmpty());
+    }
+
+    // pass ready actors which have been moved away to their new dispatcher. used on termination
+    void forwardReadyQueue() {
+        Actor actor;
+        while ( (actor = readyQueue.poll()) != null ) {
+            if ( actor.__currentDispatcher != this )
+                requeue(actor);
+        }
+    }
+
+    // sampled message handling time (see addCost)
+    boolean measureCost = true;
+    final CostMeter cost = new CostMeter();
+    int dispatchCount;
+    boolean timeAll; // last message timed was expensive
+    long nextCostRebalance;
+    long nextColocate;
+    int trafficCount;
+
+    /**
+     * buffer a message sent to an actor of another thread by the actor executed currently (see SendBatch)
+     * @return false if the message has to be sent immediately
+     */
+    boolean batchSend(ElasticScheduler scheduler, Actor receiver, CallEntry e) {
+        return sendBatch != null && turnDepth > 0 && sendBatch.add(scheduler, receiver, e);
+    }
+
+    /**
+     * @return true every TrafficStats.SAMPLE_INTERVAL'th call (used by ElasticScheduler.sampleTraffic)
+     */
+    boolean isTrafficSampleDue() {
+        return (++trafficCount & (TrafficStats.SAMPLE_INTERVAL - 1)) == 0;
+    }
+
+    void addCost(Actor actor, long nanos, long now) {
+        CostMeter meter = actor.__cost;
+        if ( meter == null )
+            meter = actor.__cost = new CostMeter();
+        meter.add(nanos, now);
+        cost.add(nanos, now);
+    }
+
+    /**
+     * direct calls only. Check wether a message from the actor executing currently (sender) to receiver (both real
+     * actors) can be invoked inline: receiver is dispatched by this thread, has no pending messages (which would
+     * be overtaken), is not executing already (no reentrance) and the nesting limit has not been reached.
+     * If true is returned, the receiver is locked and exitDirectCall must follow.
+     */
+    boolean enterDirectCall(Actor sender, Actor receiver) {
+        if ( directDepth >= directCallers.length || stackDepth > 0 || sender == null || sender == receiver || receiver.__stopped )
+            return false;
+        for (int i = 0; i < directDepth; i++) {
+            if ( directCallers[i] == receiver )
+                return false;
+        }
+        Actor ref = receiver.__self;
+        if ( stealing && ! runnerUpdater.compareAndSet(ref, null, this) )
+            return false; // might be taken over or executing
+        if ( ref.__currentDispatcher != this || hasPendingMessages(receiver) ) {
+            if ( stealing )
+                ref.__runner = null;
+            return false;
+        }
+        directCallers[directDepth++] = sender;
+        return true;
+    }
+
+    void exitDirectCall(Actor receiver) {
+        directCallers[--directDepth] = null;
+        if ( stealing )
+            receiver.__self.__runner = null;
+    }
+
+    /**
+     * invoke a message inline (see enterDirectCall). Not timed, the cost is added to the calling actor.
+     */
+    void dispatchDirect(CallEntry callEntry) {
+        Actor sender = Actor.sender.get();
+        Actor receiver = callEntry.getTargetActor();
+        try {
+            dispatch(callEntry, false);
+        } finally {
+            exitDirectCall(receiver);
+            Actor.sender.set(sender);
+        }
+    }
+
+    /**
+     * invoke the polled call entry
+     * @return false if an exception occured
+     */
+    protected boolean dispatch(CallEntry callEntry) {
+        return dispatch(callEntry, measureCost);
+    }
+
+    private boolean dispatch(CallEntry callEntry, boolean measureCost) {
+        try {
+            // before calling the actor method, set current sender
+            // to target, so for each method/callback invoked by the actor method,
+            // sender has correct value
+            Actor.sender.set(callEntry.getTargetActor());
+            final Object invoke;
+            if ( measureCost && (timeAll || (++dispatchCount & (COST_SAMPLE_INTERVAL - 1)) == 0) ) {
+                long start = System.nanoTime();
+                invoke = invoke(callEntry);
+                long now = System.nanoTime();
+                long nanos = now - start;
+                // time each message as long as messages are expensive compared to reading the clock
+                boolean wasTimeAll = timeAll;
+                timeAll = nanos > COST_TIME_ALL_NANOS;
+                addCost(callEntry.getTargetActor(), wasTimeAll || timeAll ? nanos : nanos * COST_SAMPLE_INTERVAL, now);
+            } else
+                invoke = invoke(callEntry);
+            if (callEntry.getFutureCB() != null) {
+                final Future futureCB = callEntry.getFutureCB();   // the future of caller side
+                final Promise invokeResult = (Promise) invoke;  // the future returned sync from call
+                invokeResult.then(
+                    new Callback() {
+                        @Override
+                        public void receive(Object result, Object error) {
+                            futureCB.receive(result, error);
                         }
-                        System.out.println();
-                        throw iae;
                     }
-                }
-                if (callEntry.getFutureCB() != null) {
-                    final Future futureCB = callEntry.getFutureCB();   // the future of caller side
-                    final Promise invokeResult = (Promise) invoke;  // the future returned sync from call
-                    invokeResult.then(
-                        new Callback() {
-                            @Override
-                            public void receive(Object result, Object error) {
-                                futureCB.receive(result, error);
-                            }
-                        }
-                    );
-                }
-                return true;
-            } catch ( Throwable e) {
-                if ( e instanceof InvocationTargetException && ((InvocationTargetException) e).getTargetException() == InternalActorStoppedException.Instance ) {
-                    // fixme: rare classcast exception with elasticscheduler seen here when $stop is called from a callback ..
-                    Actor actor = (Actor) callEntry.getTarget();
-                    actor.__stopped = true;
-                    removeActorImmediate(actor.getActorRef());
+                );
+            }
+            return true;
+        } catch ( Throwable e) {
+            if ( e instanceof InvocationTargetException ) {
+                e = e.getCause();
+            }
+            if ( e == InternalActorStoppedException.Instance ) {
+                // fixme: rare classcast exception with elasticscheduler seen here when $stop is called from a callback ..
+                Actor actor = (Actor) callEntry.getTarget();
+                actor.__stopped = true;
+                actorStopped(actor);
 // FIXME: Many Testcases fail if uncommented. Rethink
 //                    if (callEntry.getFutureCB() != null)
 //                        callEntry.getFutureCB().receive(null, e);
@@ -279,33 +734,54 @@ public class DispatcherThread extends Thread implements Monitorable {
 //                        callEntry.getFutureCB().receive(null, e);
 //                    else
 //                        Log.Warn(this,e,"");
-                    return true;
-                }
-                if ( e instanceof InvocationTargetException ) {
-                    e = e.getCause();
-                }
-                if (callEntry.getFutureCB() != null) {
-                    Log.Info(this,e,"returned catched exception to future");
-                    callEntry.getFutureCB().receive(null, e);
-                }
-                else
-                    Log.Warn(this,e,"");
+                return true;
+            }
+            if (callEntry.getFutureCB() != null) {
+                Log.Info(this,e,"returned catched exception to future");
+                callEntry.getFutureCB().receive(null, e);
             }
+            else
+                Log.Warn(this,e,"");
         }
         return false;
     }
 
-    private Object invoke(CallEntry poll) throws IllegalAccessException, InvocationTargetException {
-        final Object target = poll.getTarget();
-        return poll.getMethod().invoke(target, poll.getArgs());
+    protected void actorStopped(Actor actor) {
+        if ( useReadyQueue || stealing ) // ready or stolen actors might not have been added to actors[] yet
+            schedulePendingAdds();
+        removeActorImmediate(actor.getActorRef());
     }
 
-    private void checkForSplit() {
-        int load = getLoad();
-        if (load > QUEUE_PERCENTAGE_TRIGGERING_REBALANCE &&
-            actors.length > 1 &&
-            System.currentTimeMillis()-created > MILLIS_AFTER_CREATION_BEFORE_REBALANCING )
-        {
+    private Object invoke(CallEntry poll) throws Throwable {
+        if ( poll instanceof CallbackEntry ) {
+            // result passed to a callback
+            ((CallbackEntry) poll).deliver();
+            return null;
+        }
+        if ( poll instanceof RunnableEntry ) {
+            // expired timer (see TimingWheel)
+            ((RunnableEntry) poll).run();
+            return null;
+        }
+        final ActorInvoker invoker = poll.getInvoker();
+        if ( invoker != null ) {
+            // generated direct call
+            return invoker.invoke(poll.getTarget(), poll.getMethodIndex(), poll.getArgs());
+        }
+        return ReflectiveInvoker.invokeReflective(poll.getMethod(), poll.getTarget(), poll.getArgs());
+    }
+
+    /**
+     * rebalance if queues fill up or if (measured) this thread is busy handling messages most of the time.
+     * The latter is checked at most once per CostMeter period, as cost figures change slowly.
+     */
+    private void checkForSplit(boolean noIdle, long now) {
+        if ( actors.length <= 1 || System.currentTimeMillis()-created <= MILLIS_AFTER_CREATION_BEFORE_REBALANCING )
+            return;
+        if ( noIdle && getLoad() > QUEUE_PERCENTAGE_TRIGGERING_REBALANCE ) {
+            scheduler.rebalance(this);
+        } else if ( now - nextCostRebalance > 0 && cost.getPerMille(now) > COST_PERMILLE_TRIGGERING_REBALANCE ) {
+            nextCostRebalance = now + CostMeter.PERIOD_MILLIS * 1000l * 1000;
             scheduler.rebalance(this);
         }
     }
@@ -318,18 +794,53 @@ public class DispatcherThread extends Thread implements Monitorable {
         int res = 0;
         final Actor actors[] = this.actors;
         for (int i = 0; i < actors.length; i++) {
-            MpscConcurrentQueue queue = (MpscConcurrentQueue) actors[i].__mailbox;
-            int load = queue.size() * 100 / queue.getCapacity();
+            final Actor actor = actors[i];
+            int load = actor.__mailbox.size() * 100 / actor.__mbCapacity;
             if ( load > res )
                 res = load;
-            queue = (MpscConcurrentQueue) actors[i].__cbQueue;
-            load = queue.size() * 100 / queue.getCapacity();
+            load = actor.__cbQueue.size() * 100 / actor.__mbCapacity; // same capacity
             if ( load > res )
                 res = load;
         }
         return res;
     }
 
+    /**
+     * @return share of thread time spent handling messages of given actor in 1/1000 (estimated from
+     * sampled messages, see COST_SAMPLE_INTERVAL)
+     */
+    public static int getCost(Actor actor, long now) {
+        CostMeter meter = actor.getActor().__cost;
+        return meter == null ? 0 : meter.getPerMille(now);
+    }
+
+    /**
+     * @return share of this thread's time spent handling messages of its actors in 1/1000. As costs move with the
+     * actors, this also reflects recently added/removed actors.
+     */
+    public int getCost() {
+        final long now = System.nanoTime();
+        int res = 0;
+        final Actor actors[] = this.actors;
+        for (int i = 0; i < actors.length; i++) {
+            res += getCost(actors[i], now);
+        }
+        return res;
+    }
+
+    /**
+     * @return max cost of a single actor in 1/1000, see getCost
+     */
+    public int getMaxActorCost() {
+        final long now = System.nanoTime();
+        int res = 0;
+        final Actor actors[] = this.actors;
+        for (int i = 0; i < actors.length; i++) {
+            res = Math.max(res, getCost(actors[i], now));
+        }
+        return res;
+    }
+
     /**
      * accumulated queue sizes of all actors
      * @return
@@ -369,6 +880,7 @@ public class DispatcherThread extends Thread implements Monitorable {
      */
     public void shutDown() {
         shutDown=true;
+        wakeUp();
     }
 
     /**
@@ -381,7 +893,7 @@ public class DispatcherThread extends Thread implements Monitorable {
     public boolean isEmpty() {
         for (int i = 0; i < actors.length; i++) {
             Actor act = actors[i];
-            if ( ! act.__mailbox.isEmpty() || ! act.__cbQueue.isEmpty() )
+            if ( hasPendingMessages(act) )
                 return false;
         }
         return true;
@@ -436,7 +948,7 @@ public class DispatcherThread extends Thread implements Monitorable {
 
     @Override
     public Future $getReport() {
-        return new Promise(new DispatcherReport(getName(), actors.length, getLoad(),getAccumulatedQSizes() ));
+        return new Promise(new DispatcherReport(getName(), actors.length, getLoad(),getAccumulatedQSizes(), getCost(), getMaxActorCost() ));
     }
 
     @Override
@@ -450,6 +962,8 @@ public class DispatcherThread extends Thread implements Monitorable {
         int numActors;
         int loadPerc;
         int qSizes;
+        int costPerMille;
+        int maxActorCostPerMille;
 
         public DispatcherReport() {
         }
@@ -461,6 +975,12 @@ public class DispatcherThread extends Thread implements Monitorable {
             this.qSizes = qSizes;
         }
 
+        public DispatcherReport(String name, int numActors, int loadPerc, int qSizes, int costPerMille, int maxActorCostPerMille) {
+            this(name, numActors, loadPerc, qSizes);
+            this.costPerMille = costPerMille;
+            this.maxActorCostPerMille = maxActorCostPerMille;
+        }
+
         public String getName() {
             return name;
         }
@@ -468,6 +988,25 @@ public class DispatcherThread extends Thread implements Monitorable {
         public int getNumActors() {
             return numActors;
         }
+
+        public int getLoadPerc() {
+            return loadPerc;
+        }
+
+        public int getQSizes() {
+            return qSizes;
+        }
+
+        /**
+         * @return share of thread time spent handling messages in 1/1000
+         */
+        public int getCostPerMille() {
+            return costPerMille;
+        }
+
+        public int getMaxActorCostPerMille() {
+            return maxActorCostPerMille;
+        }
     }
 
 }
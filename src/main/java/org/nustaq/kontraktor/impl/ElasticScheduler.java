@@ -1,6 +1,8 @@
 package org.nustaq.kontraktor.impl;
 
 import com.sun.org.apache.xpath.internal.SourceTree;
+import io.jaq.mpsc.MpscChunkedQueue;
+import io.jaq.mpsc.MpscConcurrentQueue;
 import org.nustaq.kontraktor.*;
 import org.nustaq.kontraktor.monitoring.Monitorable;
 import org.nustaq.kontraktor.util.Log;
@@ -33,15 +35,27 @@ public class ElasticScheduler implements Scheduler, Monitorable {
     public static boolean REALLY_DEBUG_SCHEDULING = false; // logs any move and remove
 
     public static int RECURSE_ON_BLOCK_THRESHOLD = 2;
+    public static boolean USE_READY_QUEUE = false; // default for new schedulers, see setUseReadyQueue
+    public static boolean USE_STEALING = false; // default for new schedulers, see setStealing
+    public static boolean USE_BATCH_SENDS = false; // default for new schedulers, see setBatchSends
+    public static boolean USE_DIRECT_CALLS = false; // default for new schedulers, see setDirectCalls
+    public static int DEFAULT_THROUGHPUT = 1; // default for new schedulers, see setThroughput
+    public static int COLOCATE_MIN_SAMPLES = 8; // min sampled messages exchanged before actors are colocated
 
     int maxThread = Runtime.getRuntime().availableProcessors();
     protected BackOffStrategy backOffStrategy = new BackOffStrategy();
     final DispatcherThread threads[];
 
     int defQSize = DEFQSIZE;
+    protected boolean useReadyQueue = USE_READY_QUEUE;
+    protected boolean stealing = USE_STEALING;
+    protected boolean batchSends = USE_BATCH_SENDS;
+    protected boolean directCalls = USE_DIRECT_CALLS;
+    protected int throughput = DEFAULT_THROUGHPUT;
     protected ExecutorService exec = Executors.newCachedThreadPool();
-    public static Timer delayedCalls = new Timer();
     private AtomicInteger isolateCount = new AtomicInteger(0);
+    private AtomicInteger colocationCount = new AtomicInteger(0);
+    private AtomicInteger stealCount = new AtomicInteger(0);
 
     public ElasticScheduler(int maxThreads) {
         this(maxThreads, DEFQSIZE);
@@ -75,8 +89,134 @@ public class ElasticScheduler implements Scheduler, Monitorable {
         return defQSize;
     }
 
+    @Override
+    public int getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * set the max number of messages processed per actor turn. Values > 1 let a dispatcher drain a batch of
+     * messages from a busy actor before moving on to the next one (better cache locality, less fairness).
+     * Can be overridden per actor using Actor.setThroughput.
+     */
+    public ElasticScheduler setThroughput(int messagesPerTurn) {
+        this.throughput = messagesPerTurn;
+        return this;
+    }
+
+    /**
+     * if true, idle dispatchers park until a message is queued instead of polling periodically.
+     * see BackOffStrategy.setWakeOnEnqueue
+     */
+    public ElasticScheduler setWakeOnEnqueue(boolean wakeOnEnqueue) {
+        backOffStrategy.setWakeOnEnqueue(wakeOnEnqueue);
+        return this;
+    }
+
+    public boolean isUseReadyQueue() {
+        return useReadyQueue;
+    }
+
+    /**
+     * if true, dispatchers only poll actors having pending messages instead of polling all of their actors
+     * round robin. Pays off if a lot of mostly idle actors are scheduled on a dispatcher.
+     * Must be set before the first actor is created on this scheduler.
+     */
+    public ElasticScheduler setUseReadyQueue(boolean useReadyQueue) {
+        this.useReadyQueue = useReadyQueue;
+        return this;
+    }
+
+    public boolean isStealing() {
+        return stealing;
+    }
+
+    /**
+     * if true, an idle dispatcher takes over actors having pending messages from a dispatcher busy executing another
+     * actor, so bursts spread across threads without waiting for the next rebalance (see DispatcherThread class doc).
+     * Stealing is done while polling idle, a dispatcher parked by wakeOnEnqueue does not steal.
+     * Actors manually placed on a dispatcher might be moved as well.
+     * Must be set before the first actor is created on this scheduler.
+     */
+    public ElasticScheduler setStealing(boolean stealing) {
+        this.stealing = stealing;
+        return this;
+    }
+
+    public boolean isBatchSends() {
+        return batchSends;
+    }
+
+    /**
+     * if true, messages sent by an actor to actors of other dispatchers are buffered per receiver and put onto the
+     * receiver's mailbox with a single batch offer once the sender's turn is done (one CAS per batch instead of
+     * one per message). Order of messages from one sender to one receiver is kept. Delays delivery until the
+     * end of the turn, so actors should not block within a turn after sending.
+     * Must be set before the first actor is created on this scheduler.
+     */
+    public ElasticScheduler setBatchSends(boolean batchSends) {
+        this.batchSends = batchSends;
+        return this;
+    }
+
+    public boolean isDirectCalls() {
+        return directCalls;
+    }
+
+    /**
+     * if true, a message sent from within a turn to an actor of the same dispatcher is invoked inline (synchronously)
+     * instead of being queued, if the receiver has no pending messages, is not executing further up the stack and
+     * less than DispatcherThread.MAX_DIRECT_CALL_DEPTH inline calls are nested. Otherwise it is queued as usual.
+     *
+     * Ordering: a message is never invoked before messages queued to the receiver earlier, so order of messages from
+     * one sender to one receiver is kept. Unlike a queued message, it is processed before the rest of the sender's
+     * method and before messages queued to other actors of the same dispatcher.
+     * Reentrance: an actor is never invoked while executing, a call to an actor further up the stack (e.g. a call back
+     * to the sender) is queued. Callbacks passed and futures returned are still delivered to the sender asynchronously
+     * (on its callback queue), exceptions of the receiver are not propagated to the sender.
+     * Pays off for pipelines of colocated actors, but an expensive receiver delays the sender's turn.
+     */
+    public ElasticScheduler setDirectCalls(boolean directCalls) {
+        this.directCalls = directCalls;
+        return this;
+    }
+
 //    @Override
     public Future put2QueuePolling(CallEntry e) {
+        final Future fut = wrapFutureResult(e);
+        queueCall(e);
+        return fut;
+    }
+
+    protected void queueCall(CallEntry e) {
+        Actor targetActor = e.getTargetActor();
+        Actor sendingActor = e.getSendingActor();
+        if ( sendingActor != null && sendingActor != targetActor )
+            sampleTraffic(sendingActor, targetActor);
+        if ( e.isCallback() )
+            put2QueuePolling(targetActor.__cbQueue, false, e, targetActor);
+        else if ( ! batchSend(e, targetActor) )
+            put2Mailbox(e, targetActor);
+    }
+
+    /**
+     * directCalls only. Invoke e inline if possible (see setDirectCalls)
+     * @return false if e has to be queued
+     */
+    protected boolean tryDirectCall(CallEntry e) {
+        Actor targetActor = e.getTargetActor();
+        Thread thread = Thread.currentThread();
+        if ( targetActor.__currentDispatcher != thread || ! ((DispatcherThread) thread).enterDirectCall(e.getSendingActor(), targetActor) )
+            return false;
+        ((DispatcherThread) thread).dispatchDirect(e);
+        return true;
+    }
+
+    /**
+     * if e has a future result, let it be completed on the callback queue of the sender
+     * @return the future returned to the sender
+     */
+    protected Future wrapFutureResult(CallEntry e) {
         final Future fut;
         if (e.hasFutureResult() && ! (e.getFutureCB() instanceof CallbackWrapper) ) {
             fut = new Promise();
@@ -88,11 +228,108 @@ public class ElasticScheduler implements Scheduler, Monitorable {
             }));
         } else
             fut = null;
-        Actor targetActor = e.getTargetActor();
-        put2QueuePolling( e.isCallback() ? targetActor.__cbQueue : targetActor.__mailbox, false, e, targetActor);
         return fut;
     }
 
+    /**
+     * batchSends only. Buffer a message sent from within a turn to an actor of another dispatcher (see SendBatch)
+     * @return false if the message has to be sent immediately
+     */
+    protected boolean batchSend(CallEntry e, Actor targetActor) {
+        if ( ! batchSends )
+            return false;
+        Thread thread = Thread.currentThread();
+        return thread instanceof DispatcherThread && targetActor.__currentDispatcher != thread &&
+               ((DispatcherThread) thread).batchSend(this, targetActor, e);
+    }
+
+    /**
+     * record every Nth message sent by an actor executed by a dispatcher thread (see colocate)
+     */
+    protected void sampleTraffic(Actor sender, Actor receiver) {
+        Thread thread = Thread.currentThread();
+        if ( thread instanceof DispatcherThread && ((DispatcherThread) thread).isTrafficSampleDue() )
+            TrafficStats.record(sender, receiver, System.nanoTime());
+    }
+
+    /**
+     * put a message onto the mailbox of targetActor. If the mailbox is full, the OverflowPolicy of the
+     * called method or the actor applies.
+     */
+    protected void put2Mailbox(CallEntry e, Actor targetActor) {
+        OverflowPolicy policy = targetActor.__overflowPolicy;
+        ActorInvoker invoker = e.getInvoker();
+        if ( invoker != null && e.getMethodIndex() >= 0 ) {
+            OverflowPolicy methodPolicy = invoker.getOverflowPolicy(e.getMethodIndex());
+            if ( methodPolicy != null )
+                policy = methodPolicy;
+        }
+        if ( policy == null )
+            policy = OverflowPolicy.BLOCK;
+        Queue mailbox = targetActor.__mailbox;
+        Queue overflow = policy.isQueueing() ? targetActor.__overflow : null;
+        // once spilling, stay on the overflow queue until it has been processed, so order is preserved
+        if ( (overflow == null || overflow.isEmpty()) && mailbox.offer(e) ) {
+            messageQueued(targetActor);
+            return;
+        }
+        OverflowStats stats = OverflowStats.get(targetActor);
+        switch (policy) {
+            case BLOCK:
+                stats.blocked.incrementAndGet();
+                put2QueuePolling(mailbox, false, e, targetActor);
+                break;
+            case DROP_NEWEST:
+                stats.dropped.incrementAndGet();
+                break;
+            case FAIL:
+                stats.failed.incrementAndGet();
+                if ( e.hasFutureResult() )
+                    e.getFutureCB().receive(null, MailboxFullException.Instance);
+                break;
+            case DROP_OLDEST:
+                overflow.offer(e);
+                stats.spilled.incrementAndGet();
+                // the consumer removes pending drops from the head of the mailbox before processing it
+                if ( stats.pendingDrops.incrementAndGet() > targetActor.__mbCapacity ) {
+                    // whole mailbox is dropped already, oldest messages are on the overflow queue
+                    stats.pendingDrops.decrementAndGet();
+                    if ( overflow.poll() != null )
+                        stats.dropped.incrementAndGet();
+                }
+                messageQueued(targetActor);
+                break;
+            case SPILL:
+                overflow.offer(e);
+                stats.spilled.incrementAndGet();
+                messageQueued(targetActor);
+                break;
+        }
+    }
+
+    /**
+     * put messages buffered during a turn onto the mailbox of targetActor. Uses a single batch offer if there
+     * is enough space and no message has been spilled, else messages are put one by one (applying OverflowPolicy).
+     */
+    protected void put2Mailbox(Actor targetActor, CallEntry entries[], int len) {
+        Queue mailbox = targetActor.__mailbox;
+        Queue overflow = targetActor.__overflow;
+        if ( overflow == null || overflow.isEmpty() ) {
+            boolean offered = false;
+            if ( mailbox instanceof MpscChunkedQueue )
+                offered = ((MpscChunkedQueue) mailbox).offer(entries, 0, len);
+            else if ( mailbox instanceof MpscConcurrentQueue )
+                offered = ((MpscConcurrentQueue) mailbox).offer(entries, 0, len);
+            if ( offered ) {
+                messageQueued(targetActor);
+                return;
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            put2Mailbox(entries[i], targetActor);
+        }
+    }
+
     @Override
     public void yield(int count) {
         backOffStrategy.yield(count);
@@ -192,24 +429,33 @@ public class ElasticScheduler implements Scheduler, Monitorable {
         if ( warningPrinted && DEBUG_SCHEDULING) {
             Log.Lg.warn(this,"Thread "+Thread.currentThread().getName()+" continued");
         }
+        messageQueued(receiver);
+    }
+
+    /**
+     * called after a message has been put successfully to one of the queues of receiver
+     */
+    protected void messageQueued(Object receiver) {
+        if ( receiver instanceof Actor ) {
+            Actor ref = ((Actor) receiver).__self;
+            if ( ref != null && ref.__currentDispatcher instanceof DispatcherThread ) {
+                DispatcherThread dispatcher = (DispatcherThread) ref.__currentDispatcher;
+                dispatcher.actorReady(ref);
+                dispatcher.wakeUp();
+            }
+        }
     }
 
     @Override
     public Object enqueueCall(Actor sendingActor, Actor receiver, String methodName, Object args[], boolean isCB) {
-        // System.out.println("dispatch "+methodName+" "+Thread.currentThread());
-        // here sender + receiver are known in a ST context
         Actor actor = receiver.getActor();
-        Method method = actor.__getCachedMethod(methodName, actor);
-
-        int count = 0;
-        // scan for callbacks in arguments ..
-        for (int i = 0; i < args.length; i++) {
-            Object arg = args[i];
-            if ( arg instanceof Callback) {
-                args[i] = new CallbackWrapper<>(sendingActor,(Callback<Object>) arg);
-            }
+        int methodId = actor.__invoker.getIndex(methodName);
+        if ( methodId >= 0 ) {
+            return enqueueCall(sendingActor, receiver, methodId, args, isCB);
         }
-
+        // not a regular async method, dispatch by reflection
+        Method method = actor.__getCachedMethod(methodName, actor);
+        wrapCallbacks(sendingActor, args);
         CallEntry e = new CallEntry(
                 actor, // target
                 method,
@@ -221,6 +467,55 @@ public class ElasticScheduler implements Scheduler, Monitorable {
         return put2QueuePolling(e);
     }
 
+    @Override
+    public Object enqueueCall(Actor sendingActor, Actor receiver, int methodId, Object args[], boolean isCB) {
+        // System.out.println("dispatch "+methodId+" "+Thread.currentThread());
+        // here sender + receiver are known in a ST context
+        Actor actor = receiver.getActor();
+        ActorInvoker invoker = actor.__invoker;
+        wrapCallbacks(sendingActor, args, invoker.getDescriptor(methodId).getCallbackSlots());
+        CallEntry e = new CallEntry(
+                actor, // target
+                invoker.getMethod(methodId),
+                args,
+                Actor.sender.get(), // enqueuer
+                actor,
+                isCB,
+                invoker,
+                methodId
+        );
+        if ( directCalls && ! isCB ) {
+            final Future fut = wrapFutureResult(e);
+            if ( ! tryDirectCall(e) )
+                queueCall(e);
+            return fut;
+        }
+        return put2QueuePolling(e);
+    }
+
+    /**
+     * wrap callbacks passed at given argument slots (see CallDescriptor), so they are executed in the sender's thread
+     */
+    protected void wrapCallbacks(Actor sendingActor, Object[] args, int callbackSlots[]) {
+        for (int i = 0; i < callbackSlots.length; i++) {
+            int slot = callbackSlots[i];
+            Object arg = args[slot];
+            if ( arg instanceof Callback) {
+                args[slot] = new CallbackWrapper<>(sendingActor,(Callback<Object>) arg);
+            }
+        }
+    }
+
+    protected void wrapCallbacks(Actor sendingActor, Object[] args) {
+        // scan for callbacks in arguments ..
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if ( arg instanceof Callback) {
+                args[i] = new CallbackWrapper<>(sendingActor,(Callback<Object>) arg);
+            }
+        }
+    }
+
     public void threadStopped(DispatcherThread th) {
         synchronized(threads) {
             for (int i = 0; i < threads.length; i++) {
@@ -269,6 +564,8 @@ public class ElasticScheduler implements Scheduler, Monitorable {
      * Creates a wrapper on the given object enqueuing all calls to INTERFACE methods of the given object to the given actors's queue.
      * This is used to enable processing of resulting callback's in the callers thread.
      * see also @InThread annotation.
+     * If the object implements a single (public) interface, an instance of a generated class is returned (see
+     * InThreadProxy), else a dynamic proxy.
      * @param callback
      * @param <T>
      * @return
@@ -281,17 +578,22 @@ public class ElasticScheduler implements Scheduler, Monitorable {
         {
             return callback; // callback in callee thread
         }
+        if ( interfaces.length == 1 ) {
+            T generated = Actors.instance.getFactory().instantiateInThreadProxy(interfaces[0], callback, actor);
+            if ( generated != null )
+                return generated;
+        }
         return (T) Proxy.newProxyInstance(callback.getClass().getClassLoader(), interfaces, invoker);
     }
 
     @Override
     public void delayedCall(long millis, final Runnable toRun) {
-        delayedCalls.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                toRun.run();
-            }
-        }, millis);
+        TimingWheel.Default.schedule(millis, toRun);
+    }
+
+    @Override
+    public TimingWheel.Entry delayedCall(long millis, Actor receiver, Runnable toRun) {
+        return TimingWheel.Default.schedule(millis, toRun, receiver);
     }
 
     @Override
@@ -383,48 +685,203 @@ public class ElasticScheduler implements Scheduler, Monitorable {
      * @return an UNSTARTED dispatcher thread
      */
     protected DispatcherThread createDispatcherThread() {
-        return new DispatcherThread(this);
+        return new DispatcherThread(this,useReadyQueue,stealing,batchSends);
     }
 
     final Object balanceLock = new Object();
 
     /** called from inside overloaded thread.
-     * all actors assigned to the calling thread therefore can be safely moved
+     * all actors assigned to the calling thread therefore can be safely moved.
+     *
+     * Actors are moved based on their measured cost (share of thread time spent handling their messages, see
+     * DispatcherThread.getCost). If no cost has been sampled yet, queue sizes are used.
      * @param dispatcherThread
      */
     @Override
     public void rebalance(DispatcherThread dispatcherThread) {
         synchronized (balanceLock) {
-            DispatcherThread minLoadThread = assignDispatcher(dispatcherThread.getLoad());
+            final long now = System.nanoTime();
+            final boolean byCost = dispatcherThread.getCost() > 0;
+            DispatcherThread minLoadThread = byCost ? findMinCostThread(dispatcherThread) : assignDispatcher(dispatcherThread.getLoad());
             if (minLoadThread == null || minLoadThread == dispatcherThread) {
                 return;
             }
-            int qSizes = dispatcherThread.getAccumulatedQSizes();
+            long load = byCost ? dispatcherThread.getCost() : dispatcherThread.getAccumulatedQSizes();
             // move actors
             Actor[] qList = dispatcherThread.getActors();
-            long otherQSizes = minLoadThread.getAccumulatedQSizes();
-            if (4*otherQSizes/3>qSizes) {
+            long otherLoad = byCost ? minLoadThread.getCost() : minLoadThread.getAccumulatedQSizes();
+            if (4*otherLoad/3>load) {
                 if (REALLY_DEBUG_SCHEDULING) {
-                    Log.Info(this, "no payoff, skip rebalance load:"+qSizes+" other:"+otherQSizes);
+                    Log.Info(this, "no payoff, skip rebalance load:"+load+" other:"+otherLoad);
                 }
                 return;
             }
+            // first pass moves actors not communicating with other actors of this thread, so
+            // tightly coupled actors stay together
+            for (int pass = 0; pass < 2; pass++) {
+                for (int i = 0; i < qList.length; i++) {
+                    Actor actor = qList[i];
+                    if ( actor == null || (pass == 0 && getTraffic(actor, dispatcherThread, now) > 0) )
+                        continue;
+                    int actorLoad = byCost ? DispatcherThread.getCost(actor, now) : actor.getQSizes();
+                    if (otherLoad + actorLoad < load - actorLoad) {
+                        if (REALLY_DEBUG_SCHEDULING)
+                            Log.Info(this,"move " + actorLoad + " myload " + load + " otherload " + otherLoad + " from "+dispatcherThread.getName()+" to "+minLoadThread.getName() );
+                        if ( moveActor(actor, dispatcherThread, minLoadThread) ) {
+                            otherLoad += actorLoad;
+                            load -= actorLoad;
+                        }
+                        qList[i] = null;
+                    }
+                }
+            }
+            if ( ! minLoadThread.isAlive() )
+                minLoadThread.start();
+        }
+    }
+
+    /**
+     * move actorRef from the calling dispatcher thread to another one. With stealing enabled, the actor is moved
+     * while holding Actor.__runner, it is skipped if it has been taken over by a thief meanwhile.
+     *
+     * @return false if actorRef has not been moved
+     */
+    protected boolean moveActor(Actor actorRef, DispatcherThread from, DispatcherThread to) {
+        if ( ! from.stealing ) {
+            from.removeActorImmediate(actorRef);
+            to.addActor(actorRef);
+            return true;
+        }
+        final Thread current = Thread.currentThread();
+        final boolean lock = actorRef.__runner != current; // else a turn of actorRef is in progress (tryIsolate)
+        if ( lock && ! DispatcherThread.runnerUpdater.compareAndSet(actorRef, null, current) )
+            return false;
+        try {
+            if ( actorRef.__currentDispatcher != from )
+                return false;
+            from.removeActorImmediate(actorRef);
+            to.addActor(actorRef);
+            return true;
+        } finally {
+            if ( lock )
+                actorRef.__runner = null;
+        }
+    }
+
+    /**
+     * an idle dispatcher takes over an actor having pending messages from a thread executing another actor
+     * currently. Threads are checked round robin, no lock is held.
+     */
+    @Override
+    public boolean steal(DispatcherThread thief) {
+        final DispatcherThread current[] = threads;
+        final int len = current.length;
+        boolean member = false;
+        for (int i = 0; i < len; i++) {
+            member |= current[i] == thief;
+        }
+        if ( ! member ) // isolated or stopping
+            return false;
+        final int start = thief.victimIndex;
+        for (int i = 0; i < len; i++) {
+            DispatcherThread victim = current[(start + i) % len];
+            if ( victim == null || victim == thief || ! victim.isBusy() )
+                continue;
+            Actor actorRef = victim.pollStealable();
+            if ( actorRef != null && thief.takeOver(actorRef, victim) ) {
+                thief.victimIndex = (start + i + 1) % len;
+                stealCount.incrementAndGet();
+                if (REALLY_DEBUG_SCHEDULING)
+                    Log.Info(this,"steal " + actorRef.getActor().getClass().getSimpleName() + " from "+victim.getName()+" to "+thief.getName() );
+                return true;
+            }
+        }
+        thief.victimIndex = (start + 1) % Math.max(1, len);
+        return false;
+    }
+
+    /**
+     * moves actors of the calling thread to the thread of the actors they exchange most messages with (sampled, see
+     * TrafficStats). An actor is moved if it communicates significantly more with actors on the other thread than
+     * with actors on its current one and the other thread has spare capacity (see DispatcherThread.getCost).
+     */
+    @Override
+    public void colocate(DispatcherThread dispatcherThread) {
+        synchronized (balanceLock) {
+            final long now = System.nanoTime();
+            Actor[] qList = dispatcherThread.getActors();
             for (int i = 0; i < qList.length; i++) {
                 Actor actor = qList[i];
-                if (otherQSizes + actor.getQSizes() < qSizes - actor.getQSizes()) {
-                    otherQSizes += actor.getQSizes();
-                    qSizes -= actor.getQSizes();
+                TrafficStats stats = actor.getActor().__traffic;
+                if ( stats == null )
+                    continue;
+                // dispatcher of peer with most traffic (summed up per dispatcher)
+                DispatcherThread best = null;
+                int bestTraffic = 0;
+                for (int p = 0; p < stats.getNumPeers(); p++) {
+                    Actor peer = stats.getPeer(p);
+                    if ( peer != null && peer.__currentDispatcher != dispatcherThread && peer.__currentDispatcher instanceof DispatcherThread &&
+                         ((DispatcherThread) peer.__currentDispatcher).getScheduler() == this ) // never move to a thread of another scheduler
+                    {
+                        DispatcherThread other = (DispatcherThread) peer.__currentDispatcher;
+                        int traffic = getTraffic(actor, other, now);
+                        if ( traffic > bestTraffic ) {
+                            best = other;
+                            bestTraffic = traffic;
+                        }
+                    }
+                }
+                if ( best != null && ! best.isIsolated() &&
+                     bestTraffic >= COLOCATE_MIN_SAMPLES &&
+                     bestTraffic > 2 * getTraffic(actor, dispatcherThread, now) &&
+                     best.getCost() + DispatcherThread.getCost(actor, now) < DispatcherThread.COST_PERMILLE_TRIGGERING_REBALANCE )
+                {
                     if (REALLY_DEBUG_SCHEDULING)
-                        Log.Info(this,"move " + actor.getQSizes() + " myload " + qSizes + " otherload " + otherQSizes + " from "+dispatcherThread.getName()+" to "+minLoadThread.getName() );
-                    dispatcherThread.removeActorImmediate(actor);
-                    minLoadThread.addActor(actor);
+                        Log.Info(this,"colocate " + actor.getActor().getClass().getSimpleName() + " traffic " + bestTraffic + " from "+dispatcherThread.getName()+" to "+best.getName() );
+                    if ( moveActor(actor, dispatcherThread, best) )
+                        colocationCount.incrementAndGet();
                 }
             }
-            if ( ! minLoadThread.isAlive() )
-                minLoadThread.start();
         }
     }
 
+    /**
+     * @return sampled messages exchanged (both directions) between actor and those of its peers dispatched by
+     * given thread
+     */
+    static int getTraffic(Actor actor, DispatcherThread dispatcher, long now) {
+        TrafficStats stats = actor.getActor().__traffic;
+        if ( stats == null )
+            return 0;
+        int res = 0;
+        for (int p = 0; p < stats.getNumPeers(); p++) {
+            Actor peer = stats.getPeer(p);
+            if ( peer != null && peer.__currentDispatcher == dispatcher )
+                res += stats.getCount(p, now) + TrafficStats.getCount(peer, actor, now);
+        }
+        return res;
+    }
+
+    /**
+     * @return thread with lowest cost other than the given one. If it is not significantly cheaper, a new
+     * (unstarted) thread is created if possible.
+     */
+    private DispatcherThread findMinCostThread(DispatcherThread dispatcherThread) {
+        DispatcherThread minThread = null;
+        for (int i = 0; i < threads.length; i++) {
+            DispatcherThread thread = threads[i];
+            if (thread != null && thread != dispatcherThread && (minThread == null || thread.getCost() < minThread.getCost())) {
+                minThread = thread;
+            }
+        }
+        if ( minThread == null || 4*minThread.getCost()/3 > dispatcherThread.getCost() ) {
+            DispatcherThread newThread = createNewThreadIfPossible();
+            if ( newThread != null )
+                return newThread;
+        }
+        return minThread;
+    }
+
     // fixme: use currentthread if this is a precondition anyway
     public void tryIsolate(DispatcherThread dispatcherThread, Actor refToExclude /*implicitely indicates unblock*/) {
         if ( dispatcherThread != Thread.currentThread() )
@@ -468,8 +925,7 @@ public class ElasticScheduler implements Scheduler, Monitorable {
                     throw new RuntimeException("this also");
                 }
                 if ( actor != refToExclude ) {
-                    dispatcherThread.removeActorImmediate(actor);
-                    minLoadThread.addActor(actor);
+                    moveActor(actor, dispatcherThread, minLoadThread);
                 }
                 if (REALLY_DEBUG_SCHEDULING)
                     Log.Info(this,"move for unblock " + actor.getQSizes() + " myload " + dispatcherThread.getAccumulatedQSizes() + " actors " + qList.length);
@@ -495,6 +951,7 @@ public class ElasticScheduler implements Scheduler, Monitorable {
             if (minLoadThread == null)
                 return;
             // move to actor with minimal load
+            dispatcherThread.schedulePendingAdds(); // drop stolen actors
             Actor qList[] = dispatcherThread.getActors();
             for (int i = 0; i < threads.length; i++) { // avoid further dispatch
                 if ( threads[i] == dispatcherThread ) {
@@ -508,8 +965,7 @@ public class ElasticScheduler implements Scheduler, Monitorable {
                 // sanity, remove me later
                 if ( actor.getActorRef() != actor )
                     throw new RuntimeException("this should not happen ever");
-                dispatcherThread.removeActorImmediate(actor);
-                minLoadThread.addActor(actor);
+                moveActor(actor, dispatcherThread, minLoadThread);
                 if (REALLY_DEBUG_SCHEDULING)
                     Log.Info(this,"move for idle " + actor.getQSizes() + " myload " + dispatcherThread.getAccumulatedQSizes() + " actors " + qList.length);
             }
@@ -532,7 +988,38 @@ public class ElasticScheduler implements Scheduler, Monitorable {
                 count++;
             }
         }
-        return new Promise<>(new SchedulingReport(count,defQSize,isolateCount.get()));
+        SchedulingReport report = new SchedulingReport(count, defQSize, isolateCount.get());
+        report.colocations = colocationCount.get();
+        report.steals = stealCount.get();
+        report.traffic = getTrafficEdges();
+        return new Promise<>(report);
+    }
+
+    /**
+     * @return sampled sender => receiver message counts of all actors (see TrafficStats)
+     */
+    public List<TrafficEdge> getTrafficEdges() {
+        final long now = System.nanoTime();
+        List<TrafficEdge> res = new ArrayList<>();
+        DispatcherThread[] current = threads;
+        for (int i = 0; i < current.length; i++) {
+            if ( current[i] == null )
+                continue;
+            Actor[] actors = current[i].getActors();
+            for (int j = 0; j < actors.length; j++) {
+                Actor sender = actors[j].getActor();
+                TrafficStats stats = sender.__traffic;
+                if ( stats == null )
+                    continue;
+                for (int p = 0; p < stats.getNumPeers(); p++) {
+                    Actor receiver = stats.getPeer(p);
+                    int messages = stats.getCount(p, now);
+                    if ( receiver != null && messages > 0 )
+                        res.add(new TrafficEdge(sender, receiver, messages));
+                }
+            }
+        }
+        return res;
     }
 
     @Override
@@ -557,6 +1044,9 @@ public class ElasticScheduler implements Scheduler, Monitorable {
         int numDispatchers;
         int defQSize;
         int isolatedThreads;
+        int colocations;
+        int steals;
+        List<TrafficEdge> traffic;
 
         public SchedulingReport() {
         }
@@ -574,6 +1064,86 @@ public class ElasticScheduler implements Scheduler, Monitorable {
         public int getDefQSize() {
             return defQSize;
         }
+
+        public int getIsolatedThreads() {
+            return isolatedThreads;
+        }
+
+        /**
+         * @return number of actors moved to the thread of their peers
+         */
+        public int getColocations() {
+            return colocations;
+        }
+
+        /**
+         * @return number of actors taken over by idle threads (see setStealing)
+         */
+        public int getSteals() {
+            return steals;
+        }
+
+        public List<TrafficEdge> getTraffic() {
+            return traffic;
+        }
+    }
+
+    /**
+     * sampled messages sent from one actor to another within the last CostMeter period(s)
+     */
+    public static class TrafficEdge implements Serializable {
+
+        String sender;
+        String receiver;
+        String senderDispatcher;
+        String receiverDispatcher;
+        int messages;
+
+        public TrafficEdge() {
+        }
+
+        public TrafficEdge(Actor sender, Actor receiver, int messages) {
+            this.sender = id(sender);
+            this.receiver = id(receiver);
+            this.senderDispatcher = name(sender.__currentDispatcher);
+            this.receiverDispatcher = name(receiver.__currentDispatcher);
+            this.messages = messages;
+        }
+
+        static String id(Actor actor) {
+            return actor.getClass().getSimpleName() + "#" + Integer.toHexString(System.identityHashCode(actor));
+        }
+
+        static String name(Thread dispatcher) {
+            return dispatcher == null ? "" : dispatcher.getName();
+        }
+
+        public String getSender() {
+            return sender;
+        }
+
+        public String getReceiver() {
+            return receiver;
+        }
+
+        public String getSenderDispatcher() {
+            return senderDispatcher;
+        }
+
+        public String getReceiverDispatcher() {
+            return receiverDispatcher;
+        }
+
+        /**
+         * @return sampled number of messages (every TrafficStats.SAMPLE_INTERVAL'th message sent is counted)
+         */
+        public int getMessages() {
+            return messages;
+        }
+
+        public boolean isColocated() {
+            return senderDispatcher.equals(receiverDispatcher);
+        }
     }
 
 }
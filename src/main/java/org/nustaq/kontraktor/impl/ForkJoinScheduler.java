@@ -0,0 +1,292 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.monitoring.Monitorable;
+import org.nustaq.kontraktor.util.Log;
+
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A scheduler running actors as tasks on a work stealing ForkJoinPool instead of dedicated DispatcherThreads.
+ * Once a message is queued to an idle actor, its task is submitted to the pool (Actor.__ready avoids duplicate
+ * submission). A task processes up to 'throughput' messages and resubmits itself while there are pending messages,
+ * so an actor is still executed by a single thread at a time. There is no spinning and no rebalancing, load is
+ * balanced by work stealing. Suited for a large number of actors on a fixed number of cores.
+ *
+ * Note that (unlike with ElasticScheduler) the thread executing an actor changes from turn to turn and
+ * Actor.__currentDispatcher is a placeholder.
+ */
+public class ForkJoinScheduler extends ElasticScheduler {
+
+    public static int DEFAULT_TASK_THROUGHPUT = 32;
+
+    static AtomicInteger poolCount = new AtomicInteger(0);
+
+    protected final ForkJoinPool pool;
+    protected final TaskDispatcher dispatcher;
+
+    public ForkJoinScheduler(int parallelism) {
+        this(parallelism, DEFQSIZE);
+    }
+
+    public ForkJoinScheduler(int parallelism, int defQSize) {
+        super(parallelism, defQSize);
+        throughput = DEFAULT_TASK_THROUGHPUT;
+        final int poolId = poolCount.incrementAndGet();
+        pool = new ForkJoinPool(
+            parallelism,
+            fjPool -> {
+                ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fjPool);
+                worker.setName("ForkJoinScheduler " + poolId + " " + worker.getName());
+                worker.setDaemon(false); // same as DispatcherThread, idle workers terminate
+                return worker;
+            },
+            (thread, ex) -> Log.Warn(this, ex, "uncaught in " + thread.getName()),
+            true // FIFO, tasks are never joined
+        );
+        dispatcher = new TaskDispatcher();
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * all actors share a placeholder dispatcher, they are executed by the pool
+     */
+    @Override
+    public DispatcherThread assignDispatcher(int minLoadPerc) {
+        return dispatcher;
+    }
+
+    @Override
+    public void put2QueuePolling(Queue q, boolean isCBQ, Object o, Object receiver) {
+        if ( q.offer(o) ) {
+            messageQueued(receiver);
+        } else if ( isWorker(Thread.currentThread()) ) {
+            // receiver is full. Let the pool compensate the blocked worker, so the receiver gets a thread
+            try {
+                ForkJoinPool.managedBlock(new OfferBlocker(q, o, receiver));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            messageQueued(receiver);
+        } else {
+            super.put2QueuePolling(q, isCBQ, o, receiver);
+        }
+    }
+
+    @Override
+    protected void messageQueued(Object receiver) {
+        if ( receiver instanceof Actor ) {
+            Actor ref = ((Actor) receiver).__self;
+            if ( ref != null && ref.__task instanceof ActorTask ) {
+                actorReady(ref);
+            }
+        }
+    }
+
+    void actorReady(Actor ref) {
+        if ( ref.__ready == 0 && DispatcherThread.readyUpdater.compareAndSet(ref, 0, 1) ) {
+            schedule((ActorTask) ref.__task);
+        }
+    }
+
+    /**
+     * submit the task of a ready actor. Subclasses may run tasks on a different executor.
+     */
+    protected void schedule(ActorTask task) {
+        if ( isWorker(Thread.currentThread()) )
+            task.fork(); // local queue of current worker
+        else
+            pool.execute((ForkJoinTask<?>) task);
+    }
+
+    boolean isWorker(Thread thread) {
+        return thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool;
+    }
+
+    /**
+     * process up to throughput messages of the task's actor (callbacks first), reschedule if there are pending ones
+     */
+    protected void runTurn(ActorTask task) {
+        Actor actor = task.actor;
+        if ( actor.__stopped ) // leave ready flag set, so a stopped actor is not scheduled again
+            return;
+        int throughput = actor.__throughput > 0 ? actor.__throughput : this.throughput;
+        int count = DispatcherThread.drain(actor.__cbQueue, task, throughput);
+        if ( count < throughput )
+            DispatcherThread.drainMailbox(actor, task, throughput - count);
+        if ( actor.__stopped )
+            return;
+        if ( DispatcherThread.hasPendingMessages(actor) ) {
+            schedule(task);
+        } else {
+            actor.__ready = 0;
+            // a sender might have seen the flag still set after queuing
+            if ( DispatcherThread.hasPendingMessages(actor) )
+                actorReady(actor);
+        }
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return pool.getPoolSize();
+    }
+
+    @Override
+    public void rebalance(DispatcherThread dispatcherThread) {
+        // work stealing
+    }
+
+    @Override
+    public void colocate(DispatcherThread dispatcherThread) {
+    }
+
+    @Override
+    public boolean steal(DispatcherThread thief) {
+        return false; // work stealing
+    }
+
+    @Override
+    public void tryIsolate(DispatcherThread dispatcherThread, Actor refToExclude) {
+        // blocking is handled by ForkJoinPool.managedBlock
+    }
+
+    @Override
+    public void tryStopThread(DispatcherThread dispatcherThread) {
+    }
+
+    @Override
+    public void threadStopped(DispatcherThread th) {
+    }
+
+    @Override
+    public Future $getReport() {
+        return new Promise<>(new SchedulingReport(pool.getPoolSize(), defQSize, 0));
+    }
+
+    @Override
+    public Future<Monitorable[]> $getSubMonitorables() {
+        return new Promise<>(new Monitorable[0]);
+    }
+
+    /**
+     * the task of an actor. It is never completed, so the same instance is resubmitted for each turn.
+     */
+    protected static class ActorTask extends ForkJoinTask<Void> implements Runnable, Consumer {
+
+        final Actor actor;
+        final ForkJoinScheduler scheduler;
+
+        ActorTask(Actor actorRef, ForkJoinScheduler scheduler) {
+            this.actor = actorRef;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void run() {
+            try {
+                scheduler.runTurn(this);
+            } catch (Throwable th) {
+                Log.Warn(this, th, "from actor turn");
+            }
+        }
+
+        @Override
+        protected boolean exec() {
+            run();
+            return false;
+        }
+
+        @Override
+        public void accept(Object callEntry) {
+            if ( ! actor.__stopped ) // $stop has been processed in this turn
+                scheduler.dispatcher.dispatch((CallEntry) callEntry);
+        }
+
+        @Override
+        public Void getRawResult() {
+            return null;
+        }
+
+        @Override
+        protected void setRawResult(Void value) {
+        }
+    }
+
+    /**
+     * never started. Creates the task of an actor and dispatches its messages from pool threads.
+     */
+    class TaskDispatcher extends DispatcherThread {
+
+        TaskDispatcher() {
+            super(ForkJoinScheduler.this);
+            measureCost = false; // shared by pool threads
+        }
+
+        @Override
+        public synchronized void start() {
+            // fake thread, just don't start
+        }
+
+        @Override
+        public void addActor(Actor act) {
+            Actor ref = act.getActorRef();
+            ref.__currentDispatcher = act.getActor().__currentDispatcher = this;
+            ref.__task = act.getActor().__task = new ActorTask(ref, ForkJoinScheduler.this);
+        }
+
+        @Override
+        protected void actorStopped(Actor actor) {
+            // not in any actors[]
+        }
+    }
+
+    class OfferBlocker implements ForkJoinPool.ManagedBlocker {
+
+        final Queue q;
+        final Object o;
+        final Object receiver;
+        boolean offered;
+
+        OfferBlocker(Queue q, Object o, Object receiver) {
+            this.q = q;
+            this.o = o;
+            this.receiver = receiver;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            int count = 0;
+            while ( ! (offered = q.offer(o)) ) {
+                ForkJoinScheduler.this.yield(count++);
+                if ( backOffStrategy.isYielding(count) ) {
+                    Actor sendingActor = Actor.sender.get();
+                    if ( receiver instanceof Actor && ((Actor) receiver).__stopped ) {
+                        String dl = o instanceof CallEntry ? ((CallEntry) o).getMethod().getName() : "" + o;
+                        if ( sendingActor != null )
+                            sendingActor.__addDeadLetter((Actor) receiver, dl);
+                        throw new StoppedActorTargetedException(dl);
+                    }
+                    if ( sendingActor != null && sendingActor.__throwExAtBlock )
+                        throw ActorBlockedException.Instance;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return offered || (offered = q.offer(o));
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+
+/**
+ * Base class of the classes generated by ActorProxyFactory for callback interfaces wrapped with inThread
+ * (see @InThread). Each interface method of a generated class queues a call entry to the callback queue of the
+ * actor, it is executed by the actor's dispatcher using a generated invoker (no reflection).
+ * Methods of Object (toString, hashCode, ..) are not forwarded, non-void methods return null/0/false.
+ */
+public abstract class InThreadProxy {
+
+    protected final Object __target;
+    protected final Actor __actor;
+    protected final ActorInvoker __invoker;
+
+    protected InThreadProxy(Object target, Actor actor, ActorInvoker invoker) {
+        this.__target = target;
+        this.__actor = actor;
+        this.__invoker = invoker;
+    }
+
+    // used by generated code
+    protected void __enqueue(int methodIndex, Object args[]) {
+        CallEntry ce = new CallEntry(__target, __invoker.getMethod(methodIndex), args, Actor.sender.get(), __actor, true, __invoker, methodIndex);
+        __actor.__scheduler.put2QueuePolling(__actor.__cbQueue, true, ce, __actor);
+    }
+
+}
@@ -0,0 +1,20 @@
+package org.nustaq.kontraktor.impl;
+
+/**
+ * error passed to the future of a call rejected because the receiver's mailbox was full
+ * (see OverflowPolicy.FAIL)
+ */
+public class MailboxFullException extends RuntimeException {
+
+    public static MailboxFullException Instance = new MailboxFullException();
+
+    public MailboxFullException() {
+        super("mailbox full");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * counters of messages which did not fit into the mailbox of an actor (see OverflowPolicy). Created once the
+ * mailbox of an actor is full for the first time.
+ */
+public class OverflowStats {
+
+    static final AtomicReferenceFieldUpdater<Actor,OverflowStats> statsUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(Actor.class, OverflowStats.class, "__overflowStats");
+
+    /**
+     * @return stats of given actor (real actor or proxy), created if not present
+     */
+    public static OverflowStats get(Actor actor) {
+        Actor realActor = actor.getActor();
+        OverflowStats stats = realActor.__overflowStats;
+        if ( stats == null ) {
+            statsUpdater.compareAndSet(realActor, null, new OverflowStats());
+            stats = realActor.__overflowStats;
+        }
+        return stats;
+    }
+
+    final AtomicLong blocked = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong spilled = new AtomicLong();
+    // DROP_OLDEST: number of messages to remove from the head of the mailbox, done by the consumer
+    final AtomicInteger pendingDrops = new AtomicInteger();
+
+    /**
+     * @return number of sends which had to wait for a full mailbox (OverflowPolicy.BLOCK)
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    /**
+     * @return number of messages discarded (OverflowPolicy.DROP_NEWEST, DROP_OLDEST)
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of calls rejected (OverflowPolicy.FAIL)
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of messages put onto the overflow queue (OverflowPolicy.SPILL, DROP_OLDEST)
+     */
+    public long getSpilled() {
+        return spilled.get();
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.nustaq.kontraktor.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * method table + dispatch using Method.invoke. Used if no invoker could be generated for an actor class
+ * (or generation is turned off).
+ */
+public class ReflectiveInvoker extends ActorInvoker {
+
+    public ReflectiveInvoker(Method methods[], CallDescriptor descriptors[]) {
+        init(methods, descriptors);
+    }
+
+    @Override
+    public Object invoke(Object target, int methodIndex, Object[] args) throws Throwable {
+        try {
+            return invokeReflective(methods[methodIndex], target, args);
+        } catch (InvocationTargetException ite) {
+            throw ite.getCause();
+        }
+    }
+
+    public static Object invokeReflective(Method method, Object target, Object args[]) throws IllegalAccessException, InvocationTargetException {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalArgumentException iae) {
+            // FIXME: boolean is translated wrong by minbin .. this fix is expensive
+            final Class<?>[] parameterTypes = method.getParameterTypes();
+            if ( args.length == parameterTypes.length ) {
+                for (int i = 0; i < args.length; i++) {
+                    Object arg = args[i];
+                    if ( (parameterTypes[i] == boolean.class || parameterTypes[i] == Boolean.class) &&
+                         arg instanceof Byte ) {
+                        args[i] = ((Byte) arg).intValue()!=0;
+                    }
+                }
+                return method.invoke(target, args);
+            } else {
+                System.out.println("mismatch when invoking method " + method);
+                for (int i = 0; i < args.length; i++) {
+                    Object o = args[i];
+                    System.out.println("arg " + i + " " + o + (o != null ? " " + o.getClass().getSimpleName() : "") + ",");
+                }
+                System.out.println();
+                throw iae;
+            }
+        }
+    }
+
+}
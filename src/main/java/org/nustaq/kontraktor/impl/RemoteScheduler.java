@@ -1,10 +1,19 @@
 package org.nustaq.kontraktor.impl;
 
+import java.util.Queue;
+
 /**
  * Created by ruedi on 08.08.14.
+ *
+ * Scheduler of remote actor refs. Messages to remote refs are not dispatched locally. Once connected to an outbound
+ * queue (see RemoteRefRegistry), messages are put to this single queue of the connection and the connection is
+ * signaled, so sending does not need to poll the mailboxes of all remote refs.
  */
 public class RemoteScheduler extends ElasticScheduler {
 
+    volatile Queue outbound;
+    volatile Runnable outboundSignal;
+
     public RemoteScheduler() {
         super(1);
     }
@@ -13,6 +22,29 @@ public class RemoteScheduler extends ElasticScheduler {
         super(1, defQSize);
     }
 
+    /**
+     * route messages to remote refs of this scheduler to outbound, signal is run after each message queued
+     */
+    public void setOutbound(Queue outbound, Runnable signal) {
+        this.outboundSignal = signal;
+        this.outbound = outbound;
+    }
+
+    public Queue getOutbound() {
+        return outbound;
+    }
+
+    @Override
+    protected void queueCall(CallEntry e) {
+        final Queue q = outbound;
+        if ( q == null || e.isCallback() ) {
+            super.queueCall(e);
+            return;
+        }
+        put2QueuePolling(q, false, e, e.getTargetActor().getActorRef());
+        outboundSignal.run();
+    }
+
     @Override
     protected DispatcherThread createDispatcherThread() {
         return new DispatcherThread(this) {
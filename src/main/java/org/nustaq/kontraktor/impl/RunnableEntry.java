@@ -0,0 +1,19 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+
+/**
+ * callback queue entry running a task in the thread of an actor (e.g. an expired TimingWheel entry). Recognized
+ * by the dispatcher and executed as a direct Runnable.run(), like CallbackEntry.
+ */
+public class RunnableEntry extends CallEntry<Runnable> {
+
+    public RunnableEntry(Runnable task, Actor targetActor) {
+        super(task, TimingWheel.RUN_METHOD, TimingWheel.NO_ARGS, null, targetActor, true);
+    }
+
+    public void run() {
+        getTarget().run();
+    }
+
+}
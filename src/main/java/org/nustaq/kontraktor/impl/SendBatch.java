@@ -0,0 +1,73 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+
+import java.util.Arrays;
+
+/**
+ * Messages sent to actors of other dispatchers during a turn of a DispatcherThread (see
+ * ElasticScheduler.setBatchSends). Messages are collected per receiver and put onto its mailbox with a single
+ * batch offer once the turn is done. Dispatcher thread only.
+ */
+class SendBatch {
+
+    public static int MAX_RECEIVERS = 8; // messages to further receivers are sent immediately
+    public static int MAX_MESSAGES = 64; // per receiver, a full batch is sent immediately
+
+    final Actor receivers[] = new Actor[MAX_RECEIVERS]; // real actors
+    final ElasticScheduler schedulers[] = new ElasticScheduler[MAX_RECEIVERS];
+    final CallEntry entries[][] = new CallEntry[MAX_RECEIVERS][MAX_MESSAGES];
+    final int sizes[] = new int[MAX_RECEIVERS];
+    int numReceivers;
+    boolean flushing; // messages sent by turns nested into a flush are not buffered
+
+    /**
+     * @return false if the message has not been buffered and has to be sent immediately
+     */
+    boolean add(ElasticScheduler scheduler, Actor receiver, CallEntry e) {
+        if ( flushing )
+            return false;
+        int i = 0;
+        while ( i < numReceivers && receivers[i] != receiver )
+            i++;
+        if ( i == numReceivers ) {
+            if ( i == MAX_RECEIVERS )
+                return false; // no earlier message of the sender is buffered for receiver, so order is kept
+            receivers[i] = receiver;
+            schedulers[i] = scheduler;
+            numReceivers++;
+        }
+        entries[i][sizes[i]++] = e;
+        if ( sizes[i] == MAX_MESSAGES )
+            flush(i);
+        return true;
+    }
+
+    /**
+     * send all buffered messages
+     */
+    void flush() {
+        if ( flushing ) // turn nested into a flush
+            return;
+        for (int i = 0; i < numReceivers; i++) {
+            if ( sizes[i] > 0 )
+                flush(i);
+        }
+        Arrays.fill(receivers, 0, numReceivers, null);
+        Arrays.fill(schedulers, 0, numReceivers, null);
+        numReceivers = 0;
+    }
+
+    private void flush(int i) {
+        final int size = sizes[i];
+        sizes[i] = 0;
+        flushing = true;
+        try {
+            schedulers[i].put2Mailbox(receivers[i], entries[i], size);
+        } finally {
+            flushing = false;
+            Arrays.fill(entries[i], 0, size, null);
+        }
+    }
+
+}
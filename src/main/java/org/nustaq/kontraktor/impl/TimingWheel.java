@@ -0,0 +1,240 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel backing delayed calls (Actor.delayed, Scheduler.delayedCall) and Promise.timeoutIn.
+ *
+ * schedule and cancel are O(1) and don't lock: new and cancelled entries are queued and moved into/out of the
+ * wheel's buckets by the timer thread once per tick. Each tick the timer thread expires the entries of one
+ * bucket. If nothing is scheduled, the timer thread parks until the next schedule.
+ *
+ * Entries scheduled for an actor are not run on the timer thread, they are put onto the callback queue of the
+ * actor and executed by its dispatcher.
+ */
+public class TimingWheel {
+
+    public static int DEFAULT_TICK_MILLIS = 1;
+    public static int DEFAULT_WHEEL_SIZE = 1024; // will be alligned to 2^x
+
+    /**
+     * shared by all schedulers
+     */
+    public static final TimingWheel Default = new TimingWheel("kontraktor timer", DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+
+    static final Method RUN_METHOD;
+    static final Object NO_ARGS[] = new Object[0];
+
+    static {
+        try {
+            RUN_METHOD = Runnable.class.getMethod("run");
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static final int PENDING = 0;
+    static final int CANCELLED = 1;
+    static final int EXPIRED = 2;
+
+    static final AtomicIntegerFieldUpdater<Entry> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+    final long tickNanos;
+    final Entry buckets[]; // head of a doubly linked list each, only accessed by timer thread
+    final int mask;
+    final long startNanos;
+    final ConcurrentLinkedQueue<Entry> added = new ConcurrentLinkedQueue<>();
+    final ConcurrentLinkedQueue<Entry> cancelled = new ConcurrentLinkedQueue<>();
+    final Thread thread;
+    volatile boolean sleeping;
+
+    long tick;   // next tick to process (timer thread)
+    int pending; // number of entries in buckets (timer thread)
+
+    public TimingWheel(String name, int tickMillis, int wheelSize) {
+        int size = 1;
+        while ( size < wheelSize )
+            size <<= 1;
+        buckets = new Entry[size];
+        mask = size - 1;
+        tickNanos = tickMillis * 1000l * 1000;
+        startNanos = System.nanoTime();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * run toRun on the timer thread after the given delay. toRun must not block.
+     */
+    public Entry schedule(long delayMillis, Runnable toRun) {
+        return schedule(delayMillis, toRun, null);
+    }
+
+    /**
+     * after the given delay, put toRun onto the callback queue of receiver, so it is executed in the receiver's thread.
+     */
+    public Entry schedule(long delayMillis, Runnable toRun, Actor receiver) {
+        Entry entry = new Entry(System.nanoTime() + Math.max(0, delayMillis) * 1000 * 1000, toRun, receiver);
+        added.offer(entry);
+        if ( sleeping )
+            LockSupport.unpark(thread);
+        return entry;
+    }
+
+    /**
+     * @return number of entries in the wheel (approximation, for monitoring)
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    void run() {
+        while ( true ) {
+            try {
+                awaitTick();
+                transferAdded();
+                removeCancelled();
+                expire(tick++);
+            } catch (Throwable th) {
+                Log.Warn(this, th, "in timer thread");
+            }
+        }
+    }
+
+    void awaitTick() {
+        while ( true ) {
+            long now = System.nanoTime();
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            if ( now >= deadline )
+                return;
+            if ( pending == 0 && added.isEmpty() ) {
+                sleeping = true;
+                if ( added.isEmpty() )
+                    LockSupport.park(this);
+                sleeping = false;
+                // empty buckets, just skip the ticks passed
+                tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos);
+            } else {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+        }
+    }
+
+    void transferAdded() {
+        Entry entry;
+        while ( (entry = added.poll()) != null ) {
+            if ( entry.state != PENDING )
+                continue;
+            // bucket of tick t is expired at startNanos + (t+1) * tickNanos
+            long deadlineTick = (entry.deadline - startNanos + tickNanos - 1) / tickNanos - 1;
+            entry.deadlineTick = Math.max(tick, deadlineTick);
+            link(entry);
+        }
+    }
+
+    void removeCancelled() {
+        Entry entry;
+        while ( (entry = cancelled.poll()) != null ) {
+            unlink(entry);
+        }
+    }
+
+    void expire(long tick) {
+        Entry entry = buckets[(int) (tick & mask)];
+        while ( entry != null ) {
+            Entry next = entry.next;
+            if ( entry.state == CANCELLED ) {
+                unlink(entry);
+            } else if ( entry.deadlineTick <= tick ) {
+                unlink(entry);
+                if ( stateUpdater.compareAndSet(entry, PENDING, EXPIRED) ) {
+                    try {
+                        entry.fire();
+                    } catch (Throwable th) {
+                        Log.Warn(this, th, "in delayed call");
+                    }
+                }
+            }
+            entry = next;
+        }
+    }
+
+    void link(Entry entry) {
+        int bucket = (int) (entry.deadlineTick & mask);
+        Entry head = buckets[bucket];
+        entry.next = head;
+        if ( head != null )
+            head.prev = entry;
+        buckets[bucket] = entry;
+        entry.bucket = bucket;
+        pending++;
+    }
+
+    void unlink(Entry entry) {
+        if ( entry.bucket < 0 ) // never linked or already removed
+            return;
+        if ( entry.prev != null )
+            entry.prev.next = entry.next;
+        else
+            buckets[entry.bucket] = entry.next;
+        if ( entry.next != null )
+            entry.next.prev = entry.prev;
+        entry.prev = entry.next = null;
+        entry.bucket = -1;
+        pending--;
+    }
+
+    public class Entry {
+
+        final long deadline;
+        final Runnable task;
+        final Actor receiver;
+        volatile int state = PENDING;
+
+        // timer thread only
+        Entry prev, next;
+        int bucket = -1;
+        long deadlineTick;
+
+        Entry(long deadline, Runnable task, Actor receiver) {
+            this.deadline = deadline;
+            this.task = task;
+            this.receiver = receiver;
+        }
+
+        /**
+         * @return false if the entry already has expired or has been cancelled before
+         */
+        public boolean cancel() {
+            if ( stateUpdater.compareAndSet(this, PENDING, CANCELLED) ) {
+                cancelled.offer(this);
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        void fire() {
+            if ( receiver == null ) {
+                task.run();
+            } else {
+                receiver.__scheduler.put2QueuePolling(receiver.__cbQueue, true, new RunnableEntry(task, receiver), receiver);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.nustaq.kontraktor.impl;
+
+import org.nustaq.kontraktor.Actor;
+
+/**
+ * Sampled number of messages an actor sent to its most frequent receivers (see ElasticScheduler.colocate). Kept by
+ * the sending (real) actor and written by the thread executing it, so no synchronization is required. Counts
+ * halve each CostMeter period, so rare or past peers are evicted. If all slots are taken, the least frequent
+ * peer is replaced.
+ */
+public class TrafficStats {
+
+    public static int MAX_PEERS = 8;
+    public static int SAMPLE_INTERVAL = 16; // every Nth message sent by a dispatcher thread is recorded
+
+    final Actor peers[] = new Actor[MAX_PEERS]; // real actors
+    final int counts[] = new int[MAX_PEERS];
+    long period;
+
+    /**
+     * record a message sent by sender (real actor) to receiver (real actor). Must be called by the thread
+     * executing sender.
+     */
+    public static void record(Actor sender, Actor receiver, long now) {
+        TrafficStats stats = sender.__traffic;
+        if ( stats == null )
+            stats = sender.__traffic = new TrafficStats();
+        stats.add(receiver, now);
+    }
+
+    /**
+     * @return sampled messages from sender to receiver (real actors or refs) in the current period
+     */
+    public static int getCount(Actor sender, Actor receiver, long now) {
+        TrafficStats stats = sender.getActor().__traffic;
+        if ( stats == null )
+            return 0;
+        receiver = receiver.getActor();
+        for (int i = 0; i < stats.peers.length; i++) {
+            if ( stats.peers[i] == receiver )
+                return stats.getCount(i, now);
+        }
+        return 0;
+    }
+
+    void add(Actor receiver, long now) {
+        decay(now);
+        int minIndex = 0;
+        for (int i = 0; i < peers.length; i++) {
+            if ( peers[i] == receiver ) {
+                counts[i]++;
+                return;
+            }
+            if ( counts[i] < counts[minIndex] )
+                minIndex = i;
+        }
+        peers[minIndex] = receiver;
+        counts[minIndex]++;
+    }
+
+    void decay(long now) {
+        long p = CostMeter.period(now);
+        if ( p != period ) {
+            int shift = (int) Math.min(31, p - period);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] >>= shift;
+                if ( counts[i] == 0 )
+                    peers[i] = null; // don't keep stopped actors
+            }
+            period = p;
+        }
+    }
+
+    public int getNumPeers() {
+        return peers.length;
+    }
+
+    /**
+     * @return peer in given slot or null
+     */
+    public Actor getPeer(int index) {
+        return peers[index];
+    }
+
+    /**
+     * @return count of peer in given slot, decayed to the given time
+     */
+    public int getCount(int index, long now) {
+        long elapsed = CostMeter.period(now) - period;
+        if ( elapsed <= 0 )
+            return counts[index];
+        return elapsed >= 31 ? 0 : counts[index] >> elapsed;
+    }
+
+}
@@ -32,7 +32,9 @@ public class ActorRefSerializer extends FSTBasicObjectSerializer {
     public Object instantiate(Class objectClass, FSTObjectInput in, FSTClazzInfo serializationInfo, FSTClazzInfo.FSTFieldInfo referencee, int streamPositioin) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException {
         // fixme: detect local actors returned from foreign
         int id = in.readInt();
-        String clzName = in.readStringUTF();
+        // minbin: names are written plain (cross platform protocol) unless inside a coded call
+        boolean dictionary = ! in.getConf().isCrossPlatform() || reg.readingCoded;
+        String clzName = dictionary ? reg.getReadDictionary().readString(in) : in.readStringUTF();
         if (clzName.endsWith("_ActorProxy")) {
             clzName = clzName.substring(0,clzName.length()-"_ActorProxy".length());
         }
@@ -48,6 +50,9 @@ public class ActorRefSerializer extends FSTBasicObjectSerializer {
         Actor act = (Actor) toWrite;
         int id = reg.publishActor(act); // register published host side FIXME: if ref is foreign ref, scnd id is required see javascript impl
         out.writeInt(id);
-        out.writeStringUTF(act.getActorRef().getClass().getName());
+        if ( ! out.getConf().isCrossPlatform() || reg.writingCoded )
+            reg.getWriteDictionary().writeString(out, act.getActorRef().getClass().getName());
+        else // minbin: keep protocol of other platforms
+            out.writeStringUTF(act.getActorRef().getClass().getName());
     }
 }
@@ -0,0 +1,14 @@
+package org.nustaq.kontraktor.remoting;
+
+/**
+ * a RemoteCallEntry written by RemoteCallEntrySerializer with MinBin coding (names sent via the WireDictionary).
+ * Only sent to peers which offered to read it when the connection has been opened (see
+ * RemoteRefRegistry.connectionOpened), other peers receive plain RemoteCallEntry.
+ */
+public class CodedCallEntry extends RemoteCallEntry {
+
+    public CodedCallEntry(int futureKey, int receiverKey, String method, Object[] args) {
+        super(futureKey, receiverKey, method, args);
+    }
+
+}
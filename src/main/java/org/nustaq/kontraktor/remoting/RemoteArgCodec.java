@@ -0,0 +1,216 @@
+package org.nustaq.kontraktor.remoting;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.impl.ActorInvoker;
+import org.nustaq.serialization.FSTClazzInfo;
+import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectInput;
+import org.nustaq.serialization.FSTObjectOutput;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Base class of the per-actor-class argument codecs generated by ActorProxyFactory. A generated codec switches
+ * on the method index (same index as ActorInvoker) and writes the arguments of a remote call positionally
+ * according to the method's parameter types, so no class tags are written and no references are tracked.
+ *
+ * A method is encodable if all of its parameters are primitives, Strings, primitive arrays or flat classes
+ * (serializable classes having only fields of the former types). Flat arguments are written field by field,
+ * so they must be of exactly the declared class. Other methods and calls (e.g. callbacks, actor refs, object
+ * graphs) are serialized by FST as before, see RemoteCallEntrySerializer.
+ *
+ * Both sides of a connection need the same actor class. Used with FSTSer coding only.
+ */
+public abstract class RemoteArgCodec {
+
+    /**
+     * codec of an actor class without encodable methods
+     */
+    public static final RemoteArgCodec NONE = new RemoteArgCodec() {
+        @Override
+        public void encode(int methodIndex, FSTObjectOutput out, Object[] args) throws IOException {
+            throw new IllegalArgumentException("no codec for method index "+methodIndex);
+        }
+
+        @Override
+        public Object[] decode(int methodIndex, FSTObjectInput in) throws Exception {
+            throw new IOException("no codec for method index "+methodIndex);
+        }
+    };
+
+    protected ActorInvoker invoker;
+    protected boolean encodable[]; // by method index
+    protected Class flatTypes[][]; // by method index and parameter, null if no flat parameter
+
+    public void init(ActorInvoker invoker) {
+        this.invoker = invoker;
+        encodable = new boolean[invoker.getNumMethods()];
+        flatTypes = new Class[encodable.length][];
+        for (int i = 0; i < encodable.length; i++) {
+            encodable[i] = isEncodable(invoker.getMethod(i));
+            if ( encodable[i] ) {
+                Class<?>[] parameterTypes = invoker.getMethod(i).getParameterTypes();
+                for (int j = 0; j < parameterTypes.length; j++) {
+                    if ( isFlat(parameterTypes[j]) ) {
+                        if ( flatTypes[i] == null )
+                            flatTypes[i] = new Class[parameterTypes.length];
+                        flatTypes[i][j] = parameterTypes[j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return index of a method having a generated encoding or -1
+     */
+    public int getIndex(String methodName) {
+        if ( invoker == null || methodName == null )
+            return -1;
+        int index = invoker.getIndex(methodName);
+        return index >= 0 && encodable[index] ? index : -1;
+    }
+
+    /**
+     * @return true if the actual arguments can be written by encode (flat arguments of exact class and not
+     * handled by a custom serializer of conf)
+     */
+    public boolean canEncode(int methodIndex, Object args[], FSTConfiguration conf) {
+        Class flat[] = flatTypes[methodIndex];
+        if ( flat != null ) {
+            for (int i = 0; i < flat.length; i++) {
+                if ( flat[i] != null && args[i] != null &&
+                     ( args[i].getClass() != flat[i] || conf.getClassInfo(flat[i]).getSer() != null ) )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    public abstract void encode(int methodIndex, FSTObjectOutput out, Object args[]) throws IOException;
+
+    public abstract Object[] decode(int methodIndex, FSTObjectInput in) throws Exception;
+
+    public static boolean isEncodable(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if ( ! isValueType(parameterTypes[i]) && ! isFlat(parameterTypes[i]) )
+                return false;
+        }
+        return true;
+    }
+
+    static boolean isValueType(Class type) {
+        return type.isPrimitive() || type == String.class ||
+               ( type.isArray() && type.getComponentType().isPrimitive() );
+    }
+
+    static boolean isFlat(Class type) {
+        if ( type.isPrimitive() || type.isArray() || type.isInterface() || type.isEnum() ||
+             Modifier.isAbstract(type.getModifiers()) ||
+             ! Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type) ||
+             Actor.class.isAssignableFrom(type) || type == String.class || type.getName().startsWith("java.") )
+            return false;
+        for ( Class c = type; c != Object.class; c = c.getSuperclass() ) {
+            for (Method m : c.getDeclaredMethods()) {
+                String name = m.getName();
+                if ( name.equals("writeObject") || name.equals("readObject") ||
+                     name.equals("writeReplace") || name.equals("readResolve") )
+                    return false;
+            }
+            for (Field f : c.getDeclaredFields()) {
+                if ( ( f.getModifiers() & (Modifier.STATIC|Modifier.TRANSIENT) ) == 0 && ! isValueType(f.getType()) )
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // used by generated code
+
+    public static void writeString(FSTObjectOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if ( s != null )
+            out.writeStringUTF(s);
+    }
+
+    public static String readString(FSTObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readStringUTF() : null;
+    }
+
+    public static void writeArray(FSTObjectOutput out, Object array) throws IOException {
+        if ( array == null ) {
+            out.writeInt(-1);
+            return;
+        }
+        int len = java.lang.reflect.Array.getLength(array);
+        out.writeInt(len);
+        out.getCodec().writePrimitiveArray(array, 0, len);
+    }
+
+    public static Object readArray(FSTObjectInput in, Class componentType) throws IOException {
+        int len = in.readInt();
+        if ( len < 0 )
+            return null;
+        Object array = java.lang.reflect.Array.newInstance(componentType, len);
+        return in.getCodec().readFPrimitiveArray(array, componentType, len);
+    }
+
+    public static void writeFlat(FSTObjectOutput out, Object o) throws IOException {
+        out.writeBoolean(o != null);
+        if ( o == null )
+            return;
+        FSTClazzInfo.FSTFieldInfo fields[] = out.getConf().getClassInfo(o.getClass()).getFieldInfo();
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                FSTClazzInfo.FSTFieldInfo fi = fields[i];
+                Class type = fi.getType();
+                if ( type == int.class ) out.writeInt(fi.getIntValue(o));
+                else if ( type == long.class ) out.writeLong(fi.getLongValue(o));
+                else if ( type == double.class ) out.writeDouble(fi.getDoubleValue(o));
+                else if ( type == boolean.class ) out.writeBoolean(fi.getBooleanValue(o));
+                else if ( type == byte.class ) out.writeByte(fi.getByteValue(o));
+                else if ( type == short.class ) out.writeShort(fi.getShortValue(o));
+                else if ( type == char.class ) out.writeChar(fi.getCharValue(o));
+                else if ( type == float.class ) out.writeFloat(fi.getFloatValue(o));
+                else if ( type == String.class ) writeString(out, (String) fi.getObjectValue(o));
+                else writeArray(out, fi.getObjectValue(o));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public static Object readFlat(FSTObjectInput in, Class clz) throws IOException {
+        if ( ! in.readBoolean() )
+            return null;
+        FSTClazzInfo clzInfo = in.getConf().getClassInfo(clz);
+        Object o = clzInfo.newInstance(true);
+        FSTClazzInfo.FSTFieldInfo fields[] = clzInfo.getFieldInfo();
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                FSTClazzInfo.FSTFieldInfo fi = fields[i];
+                Class type = fi.getType();
+                if ( type == int.class ) fi.setIntValue(o, in.readInt());
+                else if ( type == long.class ) fi.setLongValue(o, in.readLong());
+                else if ( type == double.class ) fi.setDoubleValue(o, in.readDouble());
+                else if ( type == boolean.class ) fi.setBooleanValue(o, in.readBoolean());
+                else if ( type == byte.class ) fi.setByteValue(o, in.readByte());
+                else if ( type == short.class ) fi.setShortValue(o, in.readShort());
+                else if ( type == char.class ) fi.setCharValue(o, in.readChar());
+                else if ( type == float.class ) fi.setFloatValue(o, in.readFloat());
+                else if ( type == String.class ) fi.setObjectValue(o, readString(in));
+                else fi.setObjectValue(o, readArray(in, type.getComponentType()));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+        return o;
+    }
+
+}
@@ -13,6 +13,7 @@ public class RemoteCallEntry implements Serializable {
 
     public static final int MAILBOX = 0;
     public static final int CBQ = 1;
+    public static final int CONTROL = 2; // connection setup, ignored by peers not knowing the method
 
     int receiverKey; // id of published actor in host, contains cbId in case of callbacks
     int futureKey; // id of future if any
@@ -0,0 +1,107 @@
+package org.nustaq.kontraktor.remoting;
+
+import org.nustaq.serialization.FSTBasicObjectSerializer;
+import org.nustaq.serialization.FSTClazzInfo;
+import org.nustaq.serialization.FSTObjectInput;
+import org.nustaq.serialization.FSTObjectOutput;
+
+import java.io.IOException;
+
+/**
+ * writes the method name of a RemoteCallEntry via the connection's WireDictionary. Arguments of calls to
+ * actors are written by the generated RemoteArgCodec of the actor class if the method is encodable, else
+ * (and for callback results) they are serialized by FST.
+ * With MinBin coding only CodedCallEntry is written this way (peers which accepted the dictionary, see
+ * RemoteRefRegistry.connectionOpened), arguments are always serialized then. Plain RemoteCallEntry keeps the
+ * cross platform format.
+ */
+public class RemoteCallEntrySerializer extends FSTBasicObjectSerializer {
+
+    /**
+     * if false, arguments are always serialized by FST (receivers decode both)
+     */
+    public static boolean USE_ARG_CODECS = true;
+
+    RemoteRefRegistry reg;
+
+    public RemoteCallEntrySerializer(RemoteRefRegistry reg) {
+        this.reg = reg;
+    }
+
+    @Override
+    public void readObject(FSTObjectInput in, Object toRead, FSTClazzInfo clzInfo, FSTClazzInfo.FSTFieldInfo referencedBy) throws IOException, ClassNotFoundException, IllegalAccessException, InstantiationException {
+    }
+
+    @Override
+    public Object instantiate(Class objectClass, FSTObjectInput in, FSTClazzInfo serializationInfo, FSTClazzInfo.FSTFieldInfo referencee, int streamPositioin) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException {
+        int receiverKey = in.readInt();
+        int futureKey = in.readInt();
+        int queue = in.readInt();
+        String method = reg.getReadDictionary().readString(in);
+        RemoteCallEntry rce = new RemoteCallEntry(futureKey, receiverKey, method, null);
+        rce.setQueue(queue);
+        in.registerObject(rce, streamPositioin, serializationInfo, referencee);
+        reg.readingCoded = true;
+        try {
+            readArgs(in, rce);
+        } finally {
+            reg.readingCoded = false;
+        }
+        return rce;
+    }
+
+    void readArgs(FSTObjectInput in, RemoteCallEntry rce) throws IOException, ClassNotFoundException {
+        if ( in.readBoolean() ) {
+            int receiverKey = rce.getReceiverKey();
+            String method = rce.getMethod();
+            RemoteArgCodec codec = reg.getArgCodec(receiverKey, true);
+            if ( codec == null ) {
+                // unknown receiver, args can't be decoded. As a message is a frame of its own, the rest is skipped
+                rce.setArgs(new Object[0]);
+                return;
+            }
+            int index = codec.getIndex(method);
+            if ( index < 0 )
+                throw new IOException("no codec for "+method+", actor classes of sender and receiver differ ?");
+            try {
+                rce.setArgs(codec.decode(index, in));
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        } else {
+            rce.setArgs((Object[]) in.readObject());
+        }
+    }
+
+    @Override
+    public void writeObject(FSTObjectOutput out, Object toWrite, FSTClazzInfo clzInfo, FSTClazzInfo.FSTFieldInfo referencedBy, int streamPosition) throws IOException {
+        RemoteCallEntry rce = (RemoteCallEntry) toWrite;
+        out.writeInt(rce.getReceiverKey());
+        out.writeInt(rce.getFutureKey());
+        out.writeInt(rce.getQueue());
+        reg.getWriteDictionary().writeString(out, rce.getMethod());
+        reg.writingCoded = true;
+        try {
+            writeArgs(out, rce);
+        } finally {
+            reg.writingCoded = false;
+        }
+    }
+
+    void writeArgs(FSTObjectOutput out, RemoteCallEntry rce) throws IOException {
+        // generated codecs write FST specific
+        boolean useCodec = USE_ARG_CODECS && rce.getQueue() == RemoteCallEntry.MAILBOX && ! out.getConf().isCrossPlatform();
+        RemoteArgCodec codec = useCodec ? reg.getArgCodec(rce.getReceiverKey(), false) : null;
+        int index = codec != null ? codec.getIndex(rce.getMethod()) : -1;
+        if ( index >= 0 && codec.canEncode(index, rce.getArgs(), out.getConf()) ) {
+            out.writeBoolean(true);
+            codec.encode(index, out, rce.getArgs());
+        } else {
+            out.writeBoolean(false);
+            out.writeObject(rce.getArgs());
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.nustaq.kontraktor.remoting;
 
+import io.jaq.mpsc.MpscChunkedQueue;
 import org.nustaq.kontraktor.*;
 import org.nustaq.kontraktor.impl.*;
 import org.nustaq.kontraktor.util.Log;
@@ -7,10 +8,10 @@ import org.nustaq.serialization.FSTConfiguration;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiFunction;
 
 /**
@@ -23,6 +24,11 @@ import java.util.function.BiFunction;
  */
 public abstract class RemoteRefRegistry implements RemoteConnection {
 
+    public static int OUTBOUND_QUEUE_SIZE = 32768;
+    public static int SEND_BATCH_SIZE = 1000; // max messages written by singleSendLoop
+    public static long MAX_SEND_WAIT_NANOS = 100_000_000l; // park of an idle blocking sender
+    public static final String DICTIONARY_OFFER = "$dictionary"; // CONTROL message, see connectionOpened
+
     protected FSTConfiguration conf;
 
     RemoteScheduler scheduler = new RemoteScheduler(); // unstarted thread dummy
@@ -32,12 +38,27 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
     ConcurrentHashMap<Integer, Object> publishedActorMapping = new ConcurrentHashMap<>();
     ConcurrentHashMap<Object, Integer> publishedActorMappingReverse = new ConcurrentHashMap<>();
 
-    BackOffStrategy backOffStrategy = new BackOffStrategy();
+    // messages to all remote refs of this connection, filled by the RemoteScheduler of the refs. Grows on demand,
+    // an idle connection does not hold a buffer
+    protected final MpscChunkedQueue<CallEntry> outbound = new MpscChunkedQueue<>(OUTBOUND_QUEUE_SIZE);
+    volatile Thread sendThread;
+    volatile boolean senderWaiting;
+    volatile boolean flushPending; // a callback result has been written directly to the channel
 
     // have disabled dispacther thread
     ConcurrentLinkedQueue<Actor> remoteActors = new ConcurrentLinkedQueue<>();
     ConcurrentHashMap<Integer,Actor> remoteActorSet = new ConcurrentHashMap<>();
 
+    // method and actor class names sent/received on this connection
+    final WireDictionary writeDictionary = new WireDictionary();
+    final WireDictionary readDictionary = new WireDictionary();
+    // minbin: the peer reads calls coded with the dictionary (CodedCallEntry), see connectionOpened
+    volatile boolean peerReadsDictionary;
+    // a coded call is written/read, actor refs inside use the dictionary (see ActorRefSerializer).
+    // Messages of a connection are written one at a time (dictionary order) and read by a single thread
+    boolean writingCoded;
+    boolean readingCoded;
+
     public ThreadLocal<ObjectSocket> currentObjectSocket = new ThreadLocal<>();
     protected volatile boolean terminated = false;
     BiFunction<Actor,String,Boolean> remoteCallInterceptor;
@@ -57,6 +78,7 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
 			    conf = FSTConfiguration.createDefaultConfiguration();
 	    }
 	    configureConfiguration( code );
+        scheduler.setOutbound(outbound, this::outboundQueued);
 	}
 
     public BiFunction<Actor, String, Boolean> getRemoteCallInterceptor() {
@@ -71,9 +93,14 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
 		conf.registerSerializer(Actor.class,new ActorRefSerializer(this),true);
 		conf.registerSerializer(CallbackWrapper.class, new CallbackRefSerializer(this), true);
 		conf.registerSerializer(Spore.class, new SporeRefSerializer(), true);
-		conf.registerClass(RemoteCallEntry.class);
+		if ( code.getCoding() == SerializerType.FSTSer )
+			conf.registerSerializer(RemoteCallEntry.class, new RemoteCallEntrySerializer(this), false);
+		else // minbin: plain calls stay readable by other platforms, peers accepting the dictionary get coded calls
+			conf.registerSerializer(CodedCallEntry.class, new RemoteCallEntrySerializer(this), false);
+		conf.registerClass(RemoteCallEntry.class, CodedCallEntry.class);
         conf.registerCrossPlatformClassMapping(new String[][]{
                 {"call", RemoteCallEntry.class.getName()},
+                {"ccall", CodedCallEntry.class.getName()},
                 {"cbw", CallbackWrapper.class.getName()}
         });
 		conf.registerSerializer(Timeout.class, new TimeoutSerializer(), false);
@@ -104,6 +131,8 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
 
     public void setTerminated(boolean terminated) {
         this.terminated = terminated;
+        if ( terminated )
+            outboundQueued(); // wake up sender
     }
 
     public int publishActor(Actor act) {
@@ -148,6 +177,8 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
 
     public void registerRemoteRefDirect(Actor act) {
         act = act.getActorRef();
+        if ( act.__scheduler instanceof RemoteScheduler && ((RemoteScheduler) act.__scheduler).getOutbound() == null )
+            ((RemoteScheduler) act.__scheduler).setOutbound(outbound, this::outboundQueued);
         remoteActorSet.put(act.__remoteId,act);
         remoteActors.add(act);
         act.__addStopHandler((actor, err) -> {
@@ -185,7 +216,8 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
             //don't call remoteRefStopped here as its designed to be overridden
             removeRemoteActor(actor);
             actor.getActorRef().__stopped = true;
-            actor.getActor().__stopped = true;
+            if ( actor.getActor() != null ) // reference to the real actor is cleared by __stop
+                actor.getActor().__stopped = true;
         });
     }
 
@@ -197,20 +229,67 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
         } catch (InternalActorStoppedException ase) {}
     }
 
+    /**
+     * blocking channels. Sends messages queued to remote refs, parks while there is nothing to send.
+     */
+    /**
+     * called by transports once a connection has been established. Minbin: tells the peer this side reads
+     * dictionary coded calls. Peers not knowing the offer ignore it (unknown queue) and keep sending plain
+     * calls, a peer never sends coded calls unless it received the offer. FSTSer always uses the dictionary.
+     */
+    public void connectionOpened(ObjectSocket chan) {
+        if ( ! conf.isCrossPlatform() )
+            return;
+        RemoteCallEntry offer = new RemoteCallEntry(0, 0, DICTIONARY_OFFER, new Object[0]);
+        offer.setQueue(RemoteCallEntry.CONTROL);
+        try {
+            writeObject(chan, offer);
+            flushPending = true;
+            outboundQueued(); // let the sender flush
+        } catch (Exception ex) {
+            chan.setLastError(ex);
+            Log.Lg.infoLong(this, ex, "connection closed");
+        }
+    }
+
+    /**
+     * @return a call to be written to the peer, coded if the peer has offered to read the dictionary
+     */
+    public RemoteCallEntry newCallEntry(int futureKey, int receiverKey, String method, Object args[]) {
+        if ( peerReadsDictionary )
+            return new CodedCallEntry(futureKey, receiverKey, method, args);
+        return new RemoteCallEntry(futureKey, receiverKey, method, args);
+    }
+
     protected void sendLoop(ObjectSocket channel) throws IOException {
+        sendThread = Thread.currentThread();
         try {
-            int count = 0;
             while (!isTerminated()) {
-                if (singleSendLoop(channel)) {
-                    count = 0;
+                if ( ! singleSendLoop(channel) ) {
+                    senderWaiting = true;
+                    // recheck, a result written after the flush might not have seen senderWaiting
+                    if ( outbound.isEmpty() && ! flushPending && ! isTerminated() )
+                        LockSupport.parkNanos(this, MAX_SEND_WAIT_NANOS);
+                    senderWaiting = false;
                 }
-                backOffStrategy.yield(count++);
             }
         } finally {
             stopRemoteRefs();
         }
     }
 
+    /**
+     * called after a message has been queued to outbound (any thread). Wakes up a waiting sendLoop, non
+     * blocking channels override to schedule sending.
+     */
+    protected void outboundQueued() {
+        if ( senderWaiting ) {
+            Thread thread = sendThread;
+            if ( thread != null )
+                LockSupport.unpark(thread);
+        }
+    }
+
     protected void receiveLoop(ObjectSocket channel) {
         try {
             while( !isTerminated() ) {
@@ -232,6 +311,14 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
     public boolean singleReceive(ObjectSocket channel) throws Exception {
         // read object
         final Object response = channel.readObject();
+        return receiveObject(channel, response);
+    }
+
+    /**
+     * process a message read from channel (non blocking channels decode messages themselves)
+     * @return true if response is not a valid message
+     */
+    public boolean receiveObject(ObjectSocket channel, Object response) throws Exception {
         if (response instanceof RemoteCallEntry == false) {
             if ( response != null )
                 Log.Lg.error(this, null, "unexpected response:" + response); // fixme
@@ -267,6 +354,9 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
             publishedCallback.receive(read.getArgs()[0], read.getArgs()[1]); // is a wrapper enqueuing in caller
             if (!isContinue)
                 removePublishedObject(read.getReceiverKey());
+        } else if (read.getQueue() == read.CONTROL) {
+            if ( DICTIONARY_OFFER.equals(read.getMethod()) && conf.isCrossPlatform() )
+                peerReadsDictionary = true;
         }
         return false;
     }
@@ -284,54 +374,45 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
     }
 
     /**
-     * poll remote actor proxies and send. return true if there was at least one message
+     * send up to SEND_BATCH_SIZE messages queued to remote refs. return true if there was at least one message.
+     * Flushes once there are no more messages queued, while more are queued the channel decides (see WriteBuffer).
      * @param chan
      */
     public boolean singleSendLoop(ObjectSocket chan) throws IOException {
         boolean res = false;
-        int sumQueued = 0;
-        ArrayList<Actor> toRemove = null;
-        for (Iterator<Actor> iterator = remoteActors.iterator(); iterator.hasNext(); ) {
-            Actor remoteActor = iterator.next();
-            CallEntry ce = (CallEntry) remoteActor.__mailbox.poll();
-            if ( ce != null) {
-                if ( ce.getMethod().getName().equals("$close") ) {
-                    chan.close();
-                } else
-                if ( ce.getMethod().getName().equals("$stop") ) {
-                    new Thread( () -> { // ??
-                        try {
-                            remoteActor.getActor().$stop();
-                        } catch (InternalActorStoppedException ex) {}
-                    }, "stopper thread").start();
-                } else {
-                    sumQueued += remoteActor.__mailbox.size();
-                    int futId = 0;
-                    if (ce.hasFutureResult()) {
-                        futId = registerPublishedCallback(ce.getFutureCB());
-                    }
+        CallEntry ce;
+        for ( int count = 0; count < SEND_BATCH_SIZE && (ce = outbound.poll()) != null; count++ ) {
+            Actor remoteActor = ce.getTargetActor().getActorRef();
+            if ( ce.getMethod().getName().equals("$close") ) {
+                chan.close();
+            } else
+            if ( ce.getMethod().getName().equals("$stop") ) {
+                new Thread( () -> { // ??
                     try {
-                        RemoteCallEntry rce = new RemoteCallEntry(futId, remoteActor.__remoteId, ce.getMethod().getName(), ce.getArgs());
-                        rce.setQueue(rce.MAILBOX);
-                        writeObject(chan, rce);
-                        res = true;
-                    } catch (Exception ex) {
-                        chan.setLastError(ex);
-                        if (toRemove == null)
-                            toRemove = new ArrayList();
-                        toRemove.add(remoteActor);
-                        remoteActor.$stop();
-                        Log.Lg.infoLong(this, ex, "connection closed");
-                        break;
-                    }
+                        remoteActor.getActor().$stop();
+                    } catch (InternalActorStoppedException ex) {}
+                }, "stopper thread").start();
+            } else {
+                int futId = 0;
+                if (ce.hasFutureResult()) {
+                    futId = registerPublishedCallback(ce.getFutureCB());
+                }
+                try {
+                    RemoteCallEntry rce = newCallEntry(futId, remoteActor.__remoteId, ce.getMethod().getName(), ce.getArgs());
+                    rce.setQueue(rce.MAILBOX);
+                    writeObject(chan, rce);
+                    res = true;
+                } catch (Exception ex) {
+                    chan.setLastError(ex);
+                    Log.Lg.infoLong(this, ex, "connection closed");
+                    removeRemoteActor(remoteActor);
+                    break;
                 }
             }
         }
-        if (toRemove!=null) {
-            toRemove.forEach( (act) -> removeRemoteActor(act) );
-        }
-        if ( sumQueued < 100 )
+        if ( outbound.isEmpty() )
         {
+            flushPending = false;
             chan.flush();
         }
         return res;
@@ -345,9 +426,11 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
         if ( Callback.FINSILENT.equals(error) ) {
             return;
         }
-        RemoteCallEntry rce = new RemoteCallEntry(0, id, null, new Object[] {result,error});
+        RemoteCallEntry rce = newCallEntry(0, id, null, new Object[] {result,error});
         rce.setQueue(rce.CBQ);
         writeObject(chan, rce);
+        flushPending = true;
+        outboundQueued(); // let the sender flush
     }
 
     @Override
@@ -359,6 +442,25 @@ public abstract class RemoteRefRegistry implements RemoteConnection {
         return conf;
     }
 
+    /**
+     * @return codec of remote calls to the published actor or remote ref with given id, null if unknown
+     */
+    RemoteArgCodec getArgCodec(int actorId, boolean published) {
+        Object actor = published ? publishedActorMapping.get(actorId) : remoteActorSet.get(actorId);
+        if ( actor instanceof Actor == false )
+            return null;
+        Class clz = actor instanceof ActorProxy ? actor.getClass().getSuperclass() : actor.getClass();
+        return Actors.instance.getFactory().getArgCodec(clz);
+    }
+
+    public WireDictionary getWriteDictionary() {
+        return writeDictionary;
+    }
+
+    public WireDictionary getReadDictionary() {
+        return readDictionary;
+    }
+
     public abstract Actor getFacadeProxy();
 
 }
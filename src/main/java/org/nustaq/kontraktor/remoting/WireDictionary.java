@@ -0,0 +1,99 @@
+package org.nustaq.kontraktor.remoting;
+
+import org.nustaq.serialization.FSTObjectInput;
+import org.nustaq.serialization.FSTObjectOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Per connection dictionary of strings frequently sent (method names, actor class names). The first time a
+ * string is written it is defined as (-id, string), afterwards only id is written. 0 denotes null.
+ * Used by FSTSer coding. With MinBin only by calls to peers which accepted the dictionary when the connection
+ * was opened (CodedCallEntry), other MinBin messages keep the cross platform format.
+ *
+ * Each side of a connection has its own dictionary. The write side is filled by the serializing threads, the
+ * read side by the receiving thread. As the receiver learns ids in stream order, a message defining an id must
+ * be written to the stream before any message referencing it, so serialize + append of a message must not
+ * interleave with other messages (see TCPSocket.writeObject, NIOObjectSocket.writeObject).
+ * Ids defined by a message are staged until the message has been appended to the stream (commit). If the
+ * message fails (e.g. an argument is not serializable) they are discarded (rollback), so an id never
+ * defined on the wire is not used by later messages.
+ */
+public class WireDictionary {
+
+    // write side
+    final HashMap<String,Integer> ids = new HashMap<>();
+    final HashMap<String,Integer> staged = new HashMap<>(); // defined by the message currently written
+
+    // read side
+    String names[] = new String[64];
+    int numRead; // ids 1..numRead are defined
+
+    public synchronized void writeString(FSTObjectOutput out, String s) throws IOException {
+        if ( s == null ) {
+            out.writeInt(0);
+            return;
+        }
+        Integer id = ids.get(s);
+        if ( id == null )
+            id = staged.get(s);
+        if ( id != null ) {
+            out.writeInt(id);
+            return;
+        }
+        id = ids.size() + staged.size() + 1;
+        staged.put(s, id);
+        out.writeInt(-id);
+        out.writeStringUTF(s);
+    }
+
+    /**
+     * the message written has been appended to the stream, its definitions are known to the receiver
+     */
+    public synchronized void commit() {
+        if ( ! staged.isEmpty() ) {
+            ids.putAll(staged);
+            staged.clear();
+        }
+    }
+
+    /**
+     * the message written has not been appended to the stream
+     */
+    public synchronized void rollback() {
+        staged.clear();
+    }
+
+    /**
+     * ids come from the peer: a definition must be the next id (ids are defined in stream order), a reference
+     * must be defined before
+     */
+    public String readString(FSTObjectInput in) throws IOException {
+        int id = in.readInt();
+        if ( id == 0 )
+            return null;
+        if ( id < 0 ) {
+            if ( id != -(numRead + 1) )
+                throw new IOException("unexpected dictionary definition " + id + ", expected " + -(numRead + 1));
+            id = -id;
+            if ( id >= names.length )
+                names = Arrays.copyOf(names, names.length * 2);
+            names[id] = in.readStringUTF();
+            numRead = id;
+            return names[id];
+        }
+        if ( id > numRead )
+            throw new IOException("undefined dictionary id " + id);
+        return names[id];
+    }
+
+    /**
+     * @return number of strings defined by the write side
+     */
+    public synchronized int getNumWritten() {
+        return ids.size();
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.nustaq.kontraktor.remoting;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Outgoing frames (little endian int length + serialized message) of a connection. Frames are appended to a
+ * single reusable buffer and written with one write call on flush, so a burst of messages costs one syscall.
+ *
+ * Flushing is adaptive: the sender flushes once it runs out of messages (see RemoteRefRegistry.singleSendLoop),
+ * so a single message is written immediately. While messages keep coming, frames are coalesced until flushBytes
+ * are pending or the oldest pending frame has waited maxFlushDelay (see isFlushDue).
+ *
+ * The buffer grows as needed and shrinks back to INITIAL_SIZE once it has been written completely.
+ * Methods are synchronized, frames may be appended by any thread.
+ */
+public class WriteBuffer {
+
+    public static int INITIAL_SIZE = 64 * 1024;
+    public static int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    public static long DEFAULT_MAX_FLUSH_DELAY_NANOS = 500_000; // 0.5 ms
+
+    ByteBuffer buffer = ByteBuffer.allocate(INITIAL_SIZE).order(ByteOrder.LITTLE_ENDIAN); // write mode
+    int pendingFrames;
+    long oldestPendingNanos;
+
+    int flushBytes = DEFAULT_FLUSH_BYTES;
+    long maxFlushDelayNanos = DEFAULT_MAX_FLUSH_DELAY_NANOS;
+
+    // counters
+    volatile long writes;
+    volatile long framesWritten;
+    volatile long bytesWritten;
+
+    /**
+     * append a frame
+     */
+    public synchronized void append(byte bytes[], int len) {
+        if ( buffer.remaining() < len + 4 ) {
+            buffer.flip();
+            buffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.remaining() + len + 4))
+                         .order(ByteOrder.LITTLE_ENDIAN)
+                         .put(buffer);
+        }
+        if ( pendingFrames == 0 )
+            oldestPendingNanos = System.nanoTime();
+        pendingFrames++;
+        buffer.putInt(len);
+        buffer.put(bytes, 0, len);
+    }
+
+    /**
+     * @return true if pending frames should be written without waiting for the sender to run out of messages
+     */
+    public synchronized boolean isFlushDue() {
+        return pendingFrames > 0 &&
+               ( buffer.position() >= flushBytes || System.nanoTime() - oldestPendingNanos >= maxFlushDelayNanos );
+    }
+
+    /**
+     * @return number of bytes not written yet
+     */
+    public synchronized int getPendingBytes() {
+        return buffer.position();
+    }
+
+    public synchronized int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * write as much as possible to a non blocking channel
+     * @return number of bytes not written yet
+     */
+    public synchronized int writeTo(WritableByteChannel channel) throws IOException {
+        if ( buffer.position() == 0 )
+            return 0;
+        buffer.flip();
+        int written;
+        try {
+            written = channel.write(buffer);
+        } finally {
+            buffer.compact();
+        }
+        if ( written > 0 ) {
+            writes++;
+            bytesWritten += written;
+        }
+        if ( buffer.position() == 0 )
+            framesDone();
+        return buffer.position();
+    }
+
+    /**
+     * write all pending frames to a (blocking) stream and flush it
+     */
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        int len = buffer.position();
+        if ( len == 0 )
+            return;
+        try {
+            out.write(buffer.array(), 0, len);
+            out.flush();
+        } finally {
+            buffer.clear();
+        }
+        writes++;
+        bytesWritten += len;
+        framesDone();
+    }
+
+    // buffer is empty
+    void framesDone() {
+        framesWritten += pendingFrames;
+        pendingFrames = 0;
+        if ( buffer.capacity() > INITIAL_SIZE ) // don't keep the peak size of a burst
+            buffer = ByteBuffer.allocate(INITIAL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int getFlushBytes() {
+        return flushBytes;
+    }
+
+    /**
+     * pending bytes forcing a flush while the sender has more messages to write
+     */
+    public WriteBuffer setFlushBytes(int flushBytes) {
+        this.flushBytes = flushBytes;
+        return this;
+    }
+
+    public long getMaxFlushDelayNanos() {
+        return maxFlushDelayNanos;
+    }
+
+    /**
+     * max time a frame is held back while the sender has more messages to write. 0 flushes each message.
+     */
+    public WriteBuffer setMaxFlushDelayNanos(long maxFlushDelayNanos) {
+        this.maxFlushDelayNanos = maxFlushDelayNanos;
+        return this;
+    }
+
+    /**
+     * @return number of write calls
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public double getFramesPerWrite() {
+        long w = writes;
+        return w == 0 ? 0 : (double) framesWritten / w;
+    }
+
+    public double getBytesPerWrite() {
+        long w = writes;
+        return w == 0 ? 0 : (double) bytesWritten / w;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBuffer{" +
+                   "writes=" + writes +
+                   ", frames=" + framesWritten +
+                   ", bytes=" + bytesWritten +
+                   ", framesPerWrite=" + String.format("%.1f", getFramesPerWrite()) +
+                   '}';
+    }
+}
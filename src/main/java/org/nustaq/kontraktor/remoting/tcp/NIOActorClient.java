@@ -0,0 +1,132 @@
+package org.nustaq.kontraktor.remoting.tcp;
+
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.impl.RemoteScheduler;
+import org.nustaq.kontraktor.remoting.RemoteRefRegistry;
+import org.nustaq.kontraktor.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Client side for a tcp actor server (NIOActorServer or TCPActorServer) using non blocking IO.
+ * All NIOActorClients of a process share SelectorLoop.DEFAULT_LOOPS selector threads (daemon), so
+ * opening many connections does not create threads.
+ */
+public class NIOActorClient<T extends Actor> extends RemoteRefRegistry {
+
+    public static <AC extends Actor> Future<AC> Connect( Class<AC> clz, String host, int port ) throws IOException {
+        Promise<AC> res = new Promise<>();
+        NIOActorClient<AC> client = new NIOActorClient<>( clz, host, port);
+        client.connect( (socket, error) -> {
+            // don't run user code on the selector thread
+            ForkJoinPool.commonPool().execute(() -> {
+                if ( error != null ) {
+                    Log.Info(NIOActorClient.class, "connection to " + client.getDescriptionString() + " failed");
+                    res.receive(null, error);
+                } else
+                    res.receive(client.getFacadeProxy(), null);
+            });
+        });
+        return res;
+    }
+
+    Class<? extends Actor> actorClazz;
+    T facadeProxy;
+
+    String host;
+    int port;
+    NIOObjectSocket socket;
+    volatile boolean connected = false;
+
+    public NIOActorClient(Class<? extends Actor> clz, String host, int port) {
+        this.host = host;
+        this.port = port;
+        actorClazz = clz;
+        facadeProxy = Actors.AsActor( actorClazz, new RemoteScheduler() );
+        facadeProxy.__remoteId = 1;
+        registerRemoteRefDirect(facadeProxy);
+    }
+
+    public T getFacadeProxy() {
+        return facadeProxy;
+    }
+
+    /**
+     * start a non blocking connect. callback is invoked by the selector thread
+     */
+    public void connect(Callback<NIOActorClient<T>> callback) throws IOException {
+        SelectorLoop loop = SelectorLoop.nextClientLoop();
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        socket = new NIOObjectSocket(channel, loop, this);
+        loop.execute(() -> {
+            try {
+                socket.registerConnect((sock, error) -> {
+                    if (error == null) {
+                        connected = true;
+                        connectionOpened(socket);
+                        facadeProxy.__addRemoteConnection(this);
+                        callback.receive(this, null);
+                    } else {
+                        callback.receive(null, error);
+                    }
+                });
+                if ( channel.connect(new InetSocketAddress(host, port)) )
+                    socket.connected(); // connected immediately (local)
+            } catch (Exception e) {
+                socket.failed(e);
+            }
+        });
+    }
+
+    private String getDescriptionString() {
+        return actorClazz.getSimpleName() + "@" + host + ":" + port;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return the connection, e.g. to configure flushing (see getWriteBuffer)
+     */
+    public NIOObjectSocket getSocket() {
+        return socket;
+    }
+
+    @Override
+    protected void outboundQueued() {
+        if ( socket != null )
+            socket.requestSend();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            Log.Warn(this, e, "");
+        }
+    }
+
+    @Override
+    protected void remoteRefStopped(Actor actor) {
+        super.remoteRefStopped(actor);
+        if (actor.getActorRef() == facadeProxy.getActorRef() ) {
+            // connection closed => close connection and stop all remoteRefs
+            setTerminated(true);
+            stopRemoteRefs();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.Warn(this, e, "");
+            }
+        }
+    }
+
+}
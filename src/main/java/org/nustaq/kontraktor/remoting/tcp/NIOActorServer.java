@@ -0,0 +1,189 @@
+package org.nustaq.kontraktor.remoting.tcp;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.ActorProxy;
+import org.nustaq.kontraktor.remoting.RemoteRefRegistry;
+import org.nustaq.kontraktor.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Publish an actor via TCP using non blocking IO. Same semantics and wire format as TCPActorServer (so
+ * TCPActorClient and NIOActorClient can connect), but connections are served by a fixed number of selector
+ * threads instead of two threads per client, so thousands of clients are feasible.
+ *
+ * Remote calls are decoded and enqueued to the facade by the selector threads, so the facade actor should
+ * not be blocked by a remote client's slowness.
+ */
+public class NIOActorServer {
+
+    public static NIOActorServer Publish(Actor act, int port) throws IOException {
+        return Publish(act, port, SelectorLoop.DEFAULT_LOOPS);
+    }
+
+    /**
+     * @param port - 0 to use any free port (see getPort)
+     * @param numLoops - number of selector threads
+     */
+    public static NIOActorServer Publish(Actor act, int port, int numLoops) throws IOException {
+        NIOActorServer server = new NIOActorServer((ActorProxy) act, port, numLoops);
+        server.start();
+        return server;
+    }
+
+    protected Set<NIOServerConnection> connections = ConcurrentHashMap.newKeySet();
+
+    Actor facadeActor;
+    int port;
+    int numLoops;
+    ServerSocketChannel serverChannel;
+    SelectorLoop loops[];
+    int loopCount;
+    protected volatile boolean terminated = false;
+
+    public NIOActorServer(ActorProxy proxy, int port, int numLoops) {
+        this.port = port;
+        this.numLoops = numLoops;
+        this.facadeActor = (Actor) proxy;
+    }
+
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    public void setTerminated(boolean terminated) {
+        this.terminated = terminated;
+        if ( terminated )
+            close();
+    }
+
+    /**
+     * @return port the server is bound to
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return current number of client connections
+     */
+    public int getNumConnections() {
+        return connections.size();
+    }
+
+    /**
+     * bind and start selector threads, does not block
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        port = serverChannel.socket().getLocalPort();
+        loops = SelectorLoop.start("NIOActorServer " + port, numLoops, false);
+        loops[0].execute(() -> {
+            try {
+                serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT, new SelectorLoop.Handler() {
+                    @Override
+                    public void ready(SelectionKey key) throws Exception {
+                        accept();
+                    }
+
+                    @Override
+                    public void failed(Exception ex) {
+                        Log.Warn(NIOActorServer.this, ex, "accept failed");
+                    }
+                });
+            } catch (IOException e) {
+                Log.Warn(this, e, "");
+                close();
+            }
+        });
+        Log.Info(this, facadeActor.getActor().getClass().getName() + " running on " + port);
+    }
+
+    // loop thread of loops[0]
+    void accept() throws IOException {
+        SocketChannel channel;
+        while ( (channel = serverChannel.accept()) != null ) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectorLoop loop = loops[loopCount++ % loops.length];
+            NIOServerConnection connection = new NIOServerConnection(channel, loop, facadeActor);
+            connections.add(connection);
+            connection.start();
+        }
+    }
+
+    /**
+     * stop accepting, close all connections and stop the selector threads
+     */
+    public void close() {
+        terminated = true;
+        try {
+            if ( serverChannel != null )
+                serverChannel.close();
+        } catch (IOException e) {
+            Log.Warn(this, e, "");
+        }
+        if ( loops != null ) {
+            for (int i = 0; i < loops.length; i++) {
+                loops[i].terminate();
+            }
+        }
+    }
+
+    public class NIOServerConnection extends RemoteRefRegistry {
+        NIOObjectSocket socket;
+        Actor facade;
+
+        public NIOServerConnection(SocketChannel channel, SelectorLoop loop, Actor facade) {
+            super();
+            this.socket = new NIOObjectSocket(channel, loop, this);
+            this.facade = facade;
+            socket.setCloseHandler(() -> connections.remove(NIOServerConnection.this));
+        }
+
+        public void start() {
+            publishActor(facade); // so facade is always 1
+            socket.loop.execute(() -> {
+                try {
+                    socket.register();
+                    connectionOpened(socket);
+                } catch (IOException e) {
+                    socket.failed(e);
+                }
+            });
+        }
+
+        @Override
+        protected void outboundQueued() {
+            socket.requestSend();
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.Warn(this, e, "");
+            }
+        }
+
+        @Override
+        public Actor getFacadeProxy() {
+            return facade;
+        }
+
+        public NIOObjectSocket getSocket() {
+            return socket;
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package org.nustaq.kontraktor.remoting.tcp;
+
+import org.nustaq.kontraktor.Callback;
+import org.nustaq.kontraktor.remoting.ObjectSocket;
+import org.nustaq.kontraktor.remoting.RemoteRefRegistry;
+import org.nustaq.kontraktor.remoting.WireDictionary;
+import org.nustaq.kontraktor.remoting.WriteBuffer;
+import org.nustaq.kontraktor.util.Log;
+import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectOutput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A non blocking connection served by a SelectorLoop. Uses the framing of TCPSocket (little endian int length +
+ * serialized object), so blocking and non blocking peers can be mixed.
+ *
+ * readObject is called by the loop only and returns null if no complete message has been received yet.
+ * writeObject may be called from any thread, it appends to a WriteBuffer flushed by the loop. The write buffer
+ * grows as required, a slow peer does not block senders. A peer not reading at all fails the connection once
+ * more than MAX_BUFFERED_WRITE bytes are pending.
+ *
+ * Messages to remote refs are taken from the outbound queue of the registry once requestSend has been called
+ * (see RemoteRefRegistry.outboundQueued). Taking stops while more than MAX_PENDING_WRITE bytes could not be
+ * written, it continues once the peer catches up.
+ */
+public class NIOObjectSocket implements ObjectSocket, SelectorLoop.Handler {
+
+    public static int INITIAL_BUFFER_SIZE = 64 * 1024;
+    public static int MAX_PENDING_WRITE = 1024 * 1024;
+    public static int MAX_BUFFERED_WRITE = 64 * 1024 * 1024; // pending bytes failing the connection
+    public static int MAX_SEND_BATCHES = 16; // per turn, then other connections of the loop are served
+
+    final SocketChannel channel;
+    final SelectorLoop loop;
+    final RemoteRefRegistry registry;
+    final FSTConfiguration conf;
+    SelectionKey key;
+    Callback<NIOObjectSocket> connectCallback; // pending connect (client side)
+    Runnable closeHandler;
+
+    ByteBuffer readBuffer; // loop thread only, read mode while decoding
+    int requiredReadSize;
+    final WriteBuffer writeBuffer = new WriteBuffer();
+    final WireDictionary dictionary;
+    final AtomicBoolean sendRequested = new AtomicBoolean(false);
+    final Runnable sendTask = () -> {
+        sendRequested.set(false);
+        pollSends();
+    };
+    volatile boolean closed;
+    volatile Exception lastError;
+
+    public NIOObjectSocket(SocketChannel channel, SelectorLoop loop, RemoteRefRegistry registry) {
+        this.channel = channel;
+        this.loop = loop;
+        this.registry = registry;
+        this.conf = registry.getConf();
+        this.dictionary = registry.getWriteDictionary();
+        readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void setCloseHandler(Runnable closeHandler) {
+        this.closeHandler = closeHandler;
+    }
+
+    /**
+     * loop thread only. start reading from an accepted channel
+     */
+    void register() throws IOException {
+        key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+        loop.sockets.add(this);
+    }
+
+    /**
+     * loop thread only. register a channel with pending connect, callback receives this socket or an error
+     */
+    void registerConnect(Callback<NIOObjectSocket> callback) throws IOException {
+        connectCallback = callback;
+        key = channel.register(loop.selector, SelectionKey.OP_CONNECT, this);
+    }
+
+    /**
+     * loop thread only. connect finished, start reading
+     */
+    void connected() {
+        key.interestOps(SelectionKey.OP_READ);
+        loop.sockets.add(this);
+        Callback<NIOObjectSocket> callback = connectCallback;
+        connectCallback = null;
+        callback.receive(this, null);
+        pollSends(); // messages queued while connecting
+    }
+
+    @Override
+    public void ready(SelectionKey key) throws Exception {
+        if ( key.isConnectable() ) {
+            if ( channel.finishConnect() )
+                connected();
+            return;
+        }
+        if ( key.isReadable() )
+            read();
+        if ( key.isValid() && key.isWritable() && write() < MAX_PENDING_WRITE )
+            pollSends();
+    }
+
+    @Override
+    public void failed(Exception ex) {
+        if ( ! closed )
+            Log.Lg.infoLong(this, ex, "connection closed");
+        closeNow(ex);
+    }
+
+    void read() throws Exception {
+        if ( channel.read(readBuffer) < 0 )
+            throw new EOFException("closed by peer");
+        readBuffer.flip();
+        registry.currentObjectSocket.set(this); // used when deserializing callbacks
+        Object message;
+        while ( ! closed && (message = readObject()) != null ) {
+            registry.receiveObject(this, message);
+        }
+        write(); // results and callbacks completed synchronously while receiving
+        readBuffer.compact();
+        if ( requiredReadSize > readBuffer.capacity() ) {
+            readBuffer.flip();
+            readBuffer = ByteBuffer.allocate(Math.max(requiredReadSize, readBuffer.capacity() * 2))
+                             .order(ByteOrder.LITTLE_ENDIAN)
+                             .put(readBuffer);
+        }
+    }
+
+    /**
+     * loop thread only
+     * @return next message received completely or null
+     */
+    @Override
+    public Object readObject() throws Exception {
+        int available = readBuffer.remaining();
+        if ( available < 4 )
+            return null;
+        int position = readBuffer.position();
+        int len = readBuffer.getInt(position);
+        if ( len <= 0 )
+            throw new EOFException("client closed");
+        if ( available < len + 4 ) {
+            requiredReadSize = len + 4;
+            return null;
+        }
+        requiredReadSize = 0;
+        readBuffer.position(position + 4);
+        byte message[] = new byte[len];
+        readBuffer.get(message);
+        return conf.getObjectInput(message).readObject();
+    }
+
+    @Override
+    public void writeObject(Object toWrite) throws Exception {
+        if ( closed )
+            throw new IOException("connection closed");
+        int pending = writeBuffer.getPendingBytes();
+        if ( pending > MAX_BUFFERED_WRITE ) { // e.g. future results of a stalled peer
+            IOException ex = new IOException("peer does not read, " + pending + " bytes pending");
+            if ( loop.isLoopThread() )
+                failed(ex);
+            else
+                loop.execute(() -> failed(ex));
+            throw ex;
+        }
+        synchronized (writeBuffer) { // keep WireDictionary definitions in stream order
+            boolean appended = false;
+            try {
+                FSTObjectOutput out = conf.getObjectOutput();
+                out.writeObject(toWrite);
+                writeBuffer.append(out.getBuffer(), out.getWritten());
+                appended = true;
+                out.flush();
+            } finally {
+                if ( dictionary != null ) {
+                    if ( appended )
+                        dictionary.commit();
+                    else
+                        dictionary.rollback();
+                }
+            }
+        }
+        if ( ! loop.isLoopThread() || writeBuffer.isFlushDue() ) // e.g. a future result
+            flush();
+    }
+
+    /**
+     * write on the loop thread, immediately if called by the loop
+     */
+    @Override
+    public void flush() throws IOException {
+        if ( loop.isLoopThread() )
+            write();
+        else
+            requestSend();
+    }
+
+    /**
+     * any thread. let the loop send queued messages and write
+     */
+    public void requestSend() {
+        if ( sendRequested.compareAndSet(false, true) )
+            loop.execute(sendTask);
+    }
+
+    /**
+     * loop thread only. send messages queued to remote refs and write as long as the peer keeps up
+     */
+    void pollSends() {
+        try {
+            for (int i = 0; ! closed && write() < MAX_PENDING_WRITE; i++ ) {
+                if ( i == MAX_SEND_BATCHES ) {
+                    requestSend(); // continue next turn
+                    return;
+                }
+                if ( ! registry.singleSendLoop(this) ) // sends a batch
+                    return;
+            }
+        } catch (Exception e) {
+            failed(e);
+        }
+    }
+
+    /**
+     * @return number of bytes still to write
+     */
+    int write() throws IOException {
+        if ( closed || key == null || connectCallback != null ) // not connected yet
+            return 0;
+        int pending = writeBuffer.writeTo(channel);
+        int ops = pending > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if ( key.interestOps() != ops )
+            key.interestOps(ops);
+        return pending;
+    }
+
+    public WriteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
+    @Override
+    public void setLastError(Exception ex) {
+        lastError = ex;
+    }
+
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if ( loop.isLoopThread() )
+            closeNow(null);
+        else
+            loop.execute(() -> closeNow(null));
+    }
+
+    /**
+     * loop thread only
+     */
+    void closeNow(Exception cause) {
+        if ( closed )
+            return;
+        closed = true;
+        loop.sockets.remove(this);
+        if ( key != null )
+            key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.Warn(this, e, "");
+        }
+        if ( connectCallback != null ) {
+            connectCallback.receive(null, cause != null ? cause : new IOException("connection closed"));
+            connectCallback = null;
+        }
+        registry.setTerminated(true);
+        try {
+            registry.cleanUp();
+        } catch (Exception e) {
+            Log.Warn(this, e, "");
+        }
+        if ( closeHandler != null )
+            closeHandler.run();
+    }
+
+}
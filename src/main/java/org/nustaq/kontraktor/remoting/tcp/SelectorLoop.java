@@ -0,0 +1,138 @@
+package org.nustaq.kontraktor.remoting.tcp;
+
+import org.nustaq.kontraktor.util.Log;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread running a Selector for any number of non blocking connections (see NIOActorServer, NIOActorClient).
+ * Reads and decodes incoming messages, sends outgoing messages once signaled by a connection (NIOObjectSocket.requestSend)
+ * and writes without blocking. Keys of the selector are only touched by the loop thread, other threads pass work
+ * using execute. Once idle, the loop blocks in select.
+ */
+public class SelectorLoop {
+
+    public static int DEFAULT_LOOPS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    static SelectorLoop clientLoops[];
+    static AtomicInteger clientLoopCount = new AtomicInteger(0);
+
+    /**
+     * @return a loop of the loops shared by all NIOActorClients (daemon threads, started lazily), round robin
+     */
+    public static synchronized SelectorLoop nextClientLoop() throws IOException {
+        if ( clientLoops == null )
+            clientLoops = start("NIOActorClient", DEFAULT_LOOPS, true);
+        return clientLoops[(clientLoopCount.getAndIncrement() & Integer.MAX_VALUE) % clientLoops.length];
+    }
+
+    public static SelectorLoop[] start(String name, int numLoops, boolean daemon) throws IOException {
+        SelectorLoop loops[] = new SelectorLoop[numLoops];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new SelectorLoop(name + " selector " + i, daemon);
+        }
+        return loops;
+    }
+
+    /**
+     * attachment of a selection key
+     */
+    interface Handler {
+        void ready(SelectionKey key) throws Exception;
+        void failed(Exception ex);
+    }
+
+    final Selector selector;
+    final Thread thread;
+    final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    final ArrayList<NIOObjectSocket> sockets = new ArrayList<>(); // loop thread only, closed on terminate
+    volatile boolean terminated;
+
+    public SelectorLoop(String name, boolean daemon) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(daemon);
+        thread.start();
+    }
+
+    /**
+     * run task on the loop thread
+     */
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        if ( Thread.currentThread() != thread )
+            selector.wakeup();
+    }
+
+    public boolean isLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * @return number of connections served (approximation, for monitoring)
+     */
+    public int getNumConnections() {
+        return sockets.size();
+    }
+
+    /**
+     * close all connections and stop the loop thread
+     */
+    public void terminate() {
+        terminated = true;
+        selector.wakeup();
+    }
+
+    void run() {
+        while ( ! terminated ) {
+            try {
+                runTasks();
+                // execute wakes up select
+                int selected = tasks.isEmpty() ? selector.select() : selector.selectNow();
+                if ( selected > 0 ) {
+                    Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                    while ( iterator.hasNext() ) {
+                        SelectionKey key = iterator.next();
+                        iterator.remove();
+                        Handler handler = (Handler) key.attachment();
+                        try {
+                            if ( key.isValid() )
+                                handler.ready(key);
+                        } catch (Exception ex) {
+                            handler.failed(ex);
+                        }
+                    }
+                }
+            } catch (Throwable th) {
+                Log.Warn(this, th, "in selector loop");
+            }
+        }
+        for (int i = sockets.size() - 1; i >= 0; i--) {
+            sockets.get(i).closeNow(null);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            Log.Warn(this, e, "");
+        }
+    }
+
+    void runTasks() {
+        Runnable task;
+        // tasks queued by tasks run next turn
+        for ( int count = tasks.size(); count > 0 && (task = tasks.poll()) != null; count-- ) {
+            try {
+                task.run();
+            } catch (Throwable th) {
+                Log.Warn(this, th, "in selector loop task");
+            }
+        }
+    }
+
+}
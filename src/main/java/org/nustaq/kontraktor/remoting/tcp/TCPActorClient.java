@@ -76,6 +76,13 @@ public class TCPActorClient<T extends Actor> extends RemoteRefRegistry {
         return connected;
     }
 
+    /**
+     * @return the connection once connected, e.g. to configure flushing (see getWriteBuffer)
+     */
+    public TCPSocket getSocket() {
+        return client != null ? (TCPSocket) client.chan : null;
+    }
+
     /**
      *
      */
@@ -84,7 +91,8 @@ public class TCPActorClient<T extends Actor> extends RemoteRefRegistry {
         ObjectSocket chan;
 
         public ActorClient() throws IOException {
-            chan = new TCPSocket(host,port,conf);
+            chan = new TCPSocket(host,port,conf,getWriteDictionary());
+            connectionOpened(chan);
             new Thread(
                 () -> {
                     currentObjectSocket.set(chan);
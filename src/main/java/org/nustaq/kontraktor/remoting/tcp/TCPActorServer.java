@@ -17,9 +17,9 @@ import java.util.List;
  * Publish an actor via TCP. actor refs/callbacks/futures handed out to clients are automatically transformed
  * and rerouted, so remoting is mostly transparent.
  *
- * Currently old school blocking IO is used. Should be replaced by a NIO implementation to support many clients.
- * For a moderate number of clients < ~200 blocking IO is not a problem. Depending on load expect significant performance
- * degradation starting with ~500 clients.
+ * Old school blocking IO, two threads per client. For a moderate number of clients < ~200 blocking IO is not a problem.
+ * Depending on load expect significant performance degradation starting with ~500 clients, use NIOActorServer
+ * (same wire format) to support many clients.
  */
 public class TCPActorServer {
 
@@ -81,12 +81,13 @@ public class TCPActorServer {
 
         public ActorServerClientConnection(Socket s, Actor facade) throws IOException {
             super();
-            this.channel = new TCPSocket(s,conf);
+            this.channel = new TCPSocket(s,conf,getWriteDictionary());
             this.facade = facade;
         }
 
         public void start() {
             publishActor(facade); // so facade is always 1
+            connectionOpened(channel);
             new Thread(() -> {
                 try {
                     currentObjectSocket.set(channel);
@@ -123,6 +124,10 @@ public class TCPActorServer {
         public Actor getFacadeProxy() {
             return facade;
         }
+
+        public TCPSocket getSocket() {
+            return channel;
+        }
     }
 
 }
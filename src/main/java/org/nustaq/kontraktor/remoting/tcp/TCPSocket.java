@@ -1,6 +1,8 @@
 package org.nustaq.kontraktor.remoting.tcp;
 
 import org.nustaq.kontraktor.remoting.ObjectSocket;
+import org.nustaq.kontraktor.remoting.WireDictionary;
+import org.nustaq.kontraktor.remoting.WriteBuffer;
 import org.nustaq.net.TCPObjectSocket;
 import org.nustaq.serialization.FSTConfiguration;
 import org.nustaq.serialization.FSTObjectOutput;
@@ -11,18 +13,75 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by ruedi on 11.08.2014.
+ *
+ * Messages written are coalesced by a WriteBuffer and written to the socket with a single write on flush.
  */
 public class TCPSocket extends TCPObjectSocket implements ObjectSocket {
 
+    final WriteBuffer writeBuffer = new WriteBuffer();
+    OutputStream socketOut;
+    FSTConfiguration conf;
+    WireDictionary dictionary; // write side of the connection, null if conf does not use one
+
     public TCPSocket(String host, int port) throws IOException {
-        super(host, port);
+        this(host, port, FSTConfiguration.createDefaultConfiguration());
     }
 
     public TCPSocket(String host, int port, FSTConfiguration conf) throws IOException {
         super(host, port, conf);
+        init(conf);
     }
 
     public TCPSocket(Socket socket, FSTConfiguration conf) throws IOException {
         super(socket, conf);
+        init(conf);
+    }
+
+    public TCPSocket(String host, int port, FSTConfiguration conf, WireDictionary dictionary) throws IOException {
+        this(host, port, conf);
+        this.dictionary = dictionary;
+    }
+
+    public TCPSocket(Socket socket, FSTConfiguration conf, WireDictionary dictionary) throws IOException {
+        this(socket, conf);
+        this.dictionary = dictionary;
+    }
+
+    void init(FSTConfiguration conf) throws IOException {
+        this.conf = conf;
+        socketOut = getSocket().getOutputStream();
     }
+
+    @Override
+    public void writeObject(Object toWrite) throws Exception {
+        synchronized (writeBuffer) { // keep WireDictionary definitions in stream order
+            boolean appended = false;
+            try {
+                FSTObjectOutput out = conf.getObjectOutput();
+                out.writeObject(toWrite);
+                writeBuffer.append(out.getBuffer(), out.getWritten());
+                appended = true;
+                out.flush();
+            } finally {
+                if ( dictionary != null ) {
+                    if ( appended )
+                        dictionary.commit();
+                    else
+                        dictionary.rollback();
+                }
+            }
+        }
+        if ( writeBuffer.isFlushDue() )
+            flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBuffer.writeTo(socketOut);
+    }
+
+    public WriteBuffer getWriteBuffer() {
+        return writeBuffer;
+    }
+
 }
@@ -78,6 +78,13 @@ public class Log extends Actor<Log> {
         this.logger = delegate;
     }
 
+    /**
+     * @return current log target, e.g. to restore it after $init
+     */
+    @CallerSideMethod public LogWrapper getLogWrapper() {
+        return getActor().logger;
+    }
+
     public void $setSeverity(int severity) {
         this.severity = severity;
     }
@@ -0,0 +1,130 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.remoting.*;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * generated argument codecs of remote calls
+ */
+public class ArgCodecTest {
+
+    public static class Point implements Serializable {
+        int x, y;
+        String label;
+        double weights[];
+
+        public Point() {
+        }
+
+        public Point(int x, int y, String label, double[] weights) {
+            this.x = x;
+            this.y = y;
+            this.label = label;
+            this.weights = weights;
+        }
+    }
+
+    public static class Point3D extends Point {
+        int z;
+    }
+
+    public static class CodecActor extends Actor<CodecActor> {
+        public void $prims(int a, long b, boolean c, byte d, short e, char f, float g, double h) {}
+        public void $strings(String a, String b) {}
+        public void $arrays(int a[], byte b[], double c[]) {}
+        public void $flat(Point a, Point b) {}
+        public void $complex(Object a) {}
+    }
+
+    static RemoteRefRegistry registry(SerializerType type) {
+        return new RemoteRefRegistry(new Coding(type)) {
+            @Override
+            public Actor getFacadeProxy() {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testCodec() {
+        RemoteArgCodec codec = Actors.instance.getFactory().getArgCodec(CodecActor.class);
+        assertNotSame(RemoteArgCodec.NONE, codec);
+        assertTrue(codec.getIndex("$prims") >= 0);
+        assertTrue(codec.getIndex("$flat") >= 0);
+        assertEquals(-1, codec.getIndex("$complex"));
+        assertEquals(-1, codec.getIndex("$unknown"));
+    }
+
+    @Test
+    public void testFST() {
+        checkRoundTrip(SerializerType.FSTSer);
+    }
+
+    @Test
+    public void testMinBin() {
+        checkRoundTrip(SerializerType.MinBin);
+    }
+
+    void checkRoundTrip(SerializerType type) {
+        RemoteRefRegistry sender = registry(type);
+        RemoteRefRegistry receiver = registry(type);
+        CodecActor actor = Actors.AsActor(CodecActor.class);
+        try {
+            int id = receiver.publishActor(actor);
+            sender.registerRemoteActorRef(CodecActor.class, id, null);
+
+            Object prims[] = roundTrip(sender, receiver, id, "$prims", 1, 2l, true, (byte) 3, (short) 4, 'x', 5.5f, 6.5);
+            assertEquals("[1, 2, true, 3, 4, x, 5.5, 6.5]", Arrays.toString(prims));
+
+            assertEquals("[A, null]", Arrays.toString(roundTrip(sender, receiver, id, "$strings", "A", null)));
+
+            Object arrays[] = roundTrip(sender, receiver, id, "$arrays", new int[]{1, 2, 3}, null, new double[0]);
+            assertArrayEquals(new int[]{1, 2, 3}, (int[]) arrays[0]);
+            assertNull(arrays[1]);
+            assertEquals(0, ((double[]) arrays[2]).length);
+
+            Object flat[] = roundTrip(sender, receiver, id, "$flat", new Point(1, 2, "p", new double[]{0.5}), null);
+            Point p = (Point) flat[0];
+            assertEquals(1, p.x);
+            assertEquals(2, p.y);
+            assertEquals("p", p.label);
+            assertEquals(0.5, p.weights[0], 0.0);
+            assertNull(flat[1]);
+
+            // subclass of a flat parameter type and object graphs fall back to serialization
+            Point3D p3 = new Point3D();
+            p3.z = 3;
+            assertEquals(3, ((Point3D) roundTrip(sender, receiver, id, "$flat", p3, null)[0]).z);
+            assertEquals("[[1, 2]]", Arrays.deepToString(roundTrip(sender, receiver, id, "$complex", new Object[]{new int[]{1, 2}})));
+        } finally {
+            actor.$stop();
+        }
+    }
+
+    Object[] roundTrip(RemoteRefRegistry sender, RemoteRefRegistry receiver, int id, String method, Object... args) {
+        // messages must be decoded in the order written (WireDictionary)
+        RemoteCallEntry call = new RemoteCallEntry(0, id, method, args);
+        RemoteCallEntry received = (RemoteCallEntry) receiver.getConf().asObject(WireDictionaryTest.write(sender, call));
+        assertEquals(method, received.getMethod());
+        byte coded[] = WireDictionaryTest.write(sender, call); // method name is defined now
+        assertEquals(args.length, ((RemoteCallEntry) receiver.getConf().asObject(coded)).getArgs().length);
+        RemoteCallEntrySerializer.USE_ARG_CODECS = false;
+        try {
+            byte serialized[] = WireDictionaryTest.write(sender, call);
+            if ( ! method.equals("$complex") && ! (args[0] instanceof Point3D) )
+                assertTrue(method, coded.length <= serialized.length);
+            assertEquals(args.length, ((RemoteCallEntry) receiver.getConf().asObject(serialized)).getArgs().length);
+        } finally {
+            RemoteCallEntrySerializer.USE_ARG_CODECS = true;
+        }
+        return received.getArgs();
+    }
+
+}
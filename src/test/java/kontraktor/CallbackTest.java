@@ -6,8 +6,14 @@ import org.nustaq.kontraktor.Actor;
 import org.nustaq.kontraktor.Actors;
 import org.nustaq.kontraktor.Callback;
 import org.nustaq.kontraktor.annotations.InThread;
+import org.nustaq.kontraktor.impl.ActorInvoker;
+import org.nustaq.kontraktor.impl.CallDescriptor;
 import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.impl.InThreadProxy;
 
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -24,6 +30,11 @@ public class CallbackTest {
         public void cb( Object o);
     }
 
+    public static interface Listener {
+        public void onEvent(int i, String s);
+        public boolean check(long l);
+    }
+
     public static class CBTActor extends Actor<CBTActor> {
 
         public void $method(Callback cb) {
@@ -48,6 +59,15 @@ public class CallbackTest {
         public void $customCB1( MyCB cb ) {
             cb.cb("Hallo");
         }
+
+        public void $twoCustomCB( @InThread MyCB cb, int dummy, @InThread MyCB cb1 ) {
+            cb.cb("Hallo");
+            cb1.cb("Hallo");
+        }
+
+        public void $objectCB( Object cb ) {
+            ((Callback) cb).receive("object", null);
+        }
     }
 
     public static class CBTCallActor extends Actor<CBTCallActor> {
@@ -73,6 +93,14 @@ public class CallbackTest {
                     assertTrue(__currentDispatcher == Thread.currentThread());
                 }
             }));
+            MyCB inThreadCB = o -> assertTrue(__currentDispatcher == Thread.currentThread());
+            cbt.$twoCustomCB(inThreadCB, 0, inThreadCB);
+            cbt.$objectCB(new Callback() {
+                @Override
+                public void receive(Object result, Object error) {
+                    assertTrue(__currentDispatcher == Thread.currentThread());
+                }
+            });
         }
 
         @Override
@@ -130,4 +158,45 @@ public class CallbackTest {
         assertTrue(errors.get() == 0);
     }
 
+    @Test
+    public void testGeneratedInThreadProxy() throws InterruptedException {
+        final CBTActor actor = Actors.AsActor(CBTActor.class);
+        final CountDownLatch latch = new CountDownLatch(2);
+        Listener listener = actor.getScheduler().inThread(actor, new Listener() {
+            @Override
+            public void onEvent(int i, String s) {
+                if ( Thread.currentThread() == actor.__currentDispatcher && i == 1 && "x".equals(s) )
+                    latch.countDown();
+            }
+
+            @Override
+            public boolean check(long l) {
+                if ( Thread.currentThread() == actor.__currentDispatcher && l == 2 )
+                    latch.countDown();
+                return true;
+            }
+        });
+        Assert.assertTrue(listener instanceof InThreadProxy);
+        listener.onEvent(1, "x");
+        Assert.assertFalse(listener.check(2)); // queued, not executed
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        actor.$stop();
+    }
+
+    @Test
+    public void testCallDescriptor() {
+        Actors.AsActor(CBTActor.class).$stop(); // generate proxy
+        ActorInvoker invoker = Actors.instance.getFactory().getInvoker(CBTActor.class);
+        CallDescriptor twoCustomCB = invoker.getDescriptor(invoker.getIndex("$twoCustomCB"));
+        Assert.assertTrue(Arrays.equals(new int[] {0, 2}, twoCustomCB.getInThreadSlots()));
+        Assert.assertEquals(0, twoCustomCB.getCallbackSlots().length);
+        CallDescriptor ping = invoker.getDescriptor(invoker.getIndex("$ping"));
+        Assert.assertTrue(Arrays.equals(new int[] {1}, ping.getCallbackSlots()));
+        Assert.assertTrue(Arrays.equals(new int[] {0}, ping.getActorSlots()));
+        Assert.assertFalse(ping.hasFutureResult());
+        CallDescriptor objectCB = invoker.getDescriptor(invoker.getIndex("$objectCB"));
+        Assert.assertTrue(Arrays.equals(new int[] {0}, objectCB.getCallbackSlots()));
+        Assert.assertTrue(invoker.getDescriptor(invoker.getIndex("$sync")).hasFutureResult());
+    }
+
 }
\ No newline at end of file
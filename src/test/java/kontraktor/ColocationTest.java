@@ -0,0 +1,83 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * actors exchanging many messages are moved onto the same dispatcher
+ */
+public class ColocationTest {
+
+    public static class Chatter extends Actor<Chatter> {
+
+        CountDownLatch done;
+
+        public void $block(CountDownLatch latch) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        public void $noop() {
+        }
+
+        public void $ping(Chatter other, int remaining, CountDownLatch done) {
+            if ( remaining == 0 )
+                done.countDown();
+            else
+                other.$ping(self(), remaining - 1, done);
+        }
+    }
+
+    @Test
+    public void testColocate() throws InterruptedException {
+        ElasticScheduler scheduler = new ElasticScheduler(2);
+        Chatter a = Actors.AsActor(Chatter.class, scheduler, 1024);
+        // fill the queue of a, so b is assigned to a new thread
+        CountDownLatch latch = new CountDownLatch(1);
+        a.$block(latch);
+        while ( a.getMailboxSize() > 0 )
+            Thread.sleep(1);
+        for (int i = 0; i < 1000; i++) {
+            a.$noop();
+        }
+        Chatter b = Actors.AsActor(Chatter.class, scheduler, 1024);
+        latch.countDown();
+        assertNotSame(a.__currentDispatcher, b.__currentDispatcher);
+
+        long deadline = System.currentTimeMillis() + 20000;
+        while ( a.__currentDispatcher != b.__currentDispatcher && System.currentTimeMillis() < deadline ) {
+            CountDownLatch done = new CountDownLatch(1);
+            a.$ping(b, 10000, done);
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+        assertTrue(a.__currentDispatcher == b.__currentDispatcher);
+
+        // traffic is exported by the scheduler report
+        CountDownLatch done = new CountDownLatch(1);
+        a.$ping(b, 10000, done);
+        done.await(10, TimeUnit.SECONDS);
+        ElasticScheduler.SchedulingReport report[] = { null };
+        scheduler.$getReport().then( (r, e) -> report[0] = (ElasticScheduler.SchedulingReport) r );
+        assertTrue(report[0].getColocations() >= 1);
+        boolean found = false;
+        for ( ElasticScheduler.TrafficEdge edge : report[0].getTraffic() ) {
+            if ( edge.getMessages() > 0 && edge.isColocated() && edge.getSender().startsWith("Chatter") )
+                found = true;
+        }
+        assertTrue(found);
+        a.$stop();
+        b.$stop();
+    }
+
+}
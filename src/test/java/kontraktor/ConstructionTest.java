@@ -1,6 +1,6 @@
 package kontraktor;
 
-import io.jaq.mpsc.MpscConcurrentQueue;
+import io.jaq.mpsc.MpscChunkedQueue;
 import junit.framework.Assert;
 import org.junit.Test;
 import org.nustaq.kontraktor.Actor;
@@ -36,7 +36,7 @@ public class ConstructionTest {
             if ( Thread.currentThread() != __currentDispatcher ) {
                 errors.incrementAndGet();
             }
-            if ( ((MpscConcurrentQueue)__mailbox).getCapacity() != qSize ) {
+            if ( ((MpscChunkedQueue)__mailbox).getCapacity() != qSize ) {
                 errors.incrementAndGet();
             }
             if ( __scheduler != sched )
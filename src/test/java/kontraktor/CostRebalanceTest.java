@@ -0,0 +1,102 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.impl.DispatcherThread;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * rebalancing by measured per actor cost
+ */
+public class CostRebalanceTest {
+
+    public static class Worker extends Actor<Worker> {
+
+        public void $work(long nanos) {
+            long start = System.nanoTime();
+            while ( System.nanoTime() - start < nanos ) {
+                // burn
+            }
+        }
+
+        public Future $sync() {
+            return new Promise<>("void");
+        }
+    }
+
+    @Test
+    public void testCostReported() throws InterruptedException {
+        Worker worker = Actors.AsActor(Worker.class, new ElasticScheduler(1), 256);
+        DispatcherThread dispatcher = (DispatcherThread) worker.__currentDispatcher;
+        int maxCost = 0;
+        for (int i = 0; i < 2000; i++) {
+            worker.$work(200 * 1000);
+            if ( i % 10 == 0 ) {
+                DispatcherThread.DispatcherReport report = (DispatcherThread.DispatcherReport) await(dispatcher.$getReport());
+                maxCost = Math.max(maxCost, report.getCostPerMille());
+            }
+            if ( maxCost > 500 )
+                break;
+        }
+        worker.$stop();
+        assertTrue("cost " + maxCost, maxCost > 500);
+    }
+
+    /**
+     * a cpu heavy actor having a short queue moves the cheap actors away
+     */
+    @Test
+    public void testMoveByCost() throws InterruptedException {
+        int prevTrigger = DispatcherThread.COST_PERMILLE_TRIGGERING_REBALANCE;
+        DispatcherThread.COST_PERMILLE_TRIGGERING_REBALANCE = 500; // test thread competes for cpu
+        try {
+            moveByCost();
+        } finally {
+            DispatcherThread.COST_PERMILLE_TRIGGERING_REBALANCE = prevTrigger;
+        }
+    }
+
+    void moveByCost() throws InterruptedException {
+        ElasticScheduler scheduler = new ElasticScheduler(2);
+        Worker heavy = Actors.AsActor(Worker.class, scheduler, 256);
+        Worker cheap[] = new Worker[4];
+        for (int i = 0; i < cheap.length; i++) {
+            cheap[i] = Actors.AsActor(Worker.class, scheduler, 256);
+        }
+        assertTrue(heavy.__currentDispatcher == cheap[0].__currentDispatcher); // low queue load => same thread
+        AtomicBoolean moved = new AtomicBoolean(false);
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( ! moved.get() && System.currentTimeMillis() < deadline ) {
+            for (int i = 0; i < 20; i++) {
+                heavy.$work(500 * 1000); // queue stays far below QUEUE_PERCENTAGE_TRIGGERING_REBALANCE
+            }
+            for (int i = 0; i < cheap.length; i++) {
+                cheap[i].$work(1000);
+            }
+            await(heavy.$sync());
+            moved.set(true);
+            for (int i = 0; i < cheap.length; i++) {
+                if ( cheap[i].__currentDispatcher == heavy.__currentDispatcher )
+                    moved.set(false);
+            }
+        }
+        heavy.$stop();
+        for (int i = 0; i < cheap.length; i++) {
+            cheap[i].$stop();
+        }
+        assertTrue(moved.get());
+    }
+
+    static Object await(Future fut) throws InterruptedException {
+        Object res[] = { null };
+        fut.then( (r,e) -> res[0] = r );
+        while ( res[0] == null )
+            Thread.sleep(1);
+        return res[0];
+    }
+
+}
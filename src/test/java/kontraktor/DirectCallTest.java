@@ -0,0 +1,153 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.impl.DispatcherThread;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * calls to actors of the same dispatcher invoked inline (ElasticScheduler.setDirectCalls)
+ */
+public class DirectCallTest {
+
+    static List<String> log = Collections.synchronizedList(new ArrayList<>());
+    static int depth, maxDepth;
+
+    public static class Stage extends Actor<Stage> {
+
+        String name;
+        Stage next;
+
+        public void $init(String name, Stage next) {
+            this.name = name;
+            this.next = next;
+        }
+
+        public void $mark(String s) {
+            log.add(name + " " + s + (Actor.sender.get() == getActor() ? "" : " wrong sender"));
+        }
+
+        public void $run() {
+            next.$mark("called");
+            log.add(name + " after" + (Actor.sender.get() == getActor() ? "" : " wrong sender"));
+        }
+
+        public void $ask() {
+            next.$square(3).then( (r, e) -> log.add(name + " result " + r + (Actor.sender.get() == getActor() ? "" : " wrong sender")) );
+            log.add(name + " after");
+        }
+
+        public Future<Integer> $square(int x) {
+            log.add(name + " square");
+            return new Promise<>(x * x);
+        }
+
+        public void $runCallBack() {
+            next.$callBack(self());
+            log.add(name + " after");
+        }
+
+        public void $callBack(Stage caller) {
+            log.add(name + " callBack");
+            caller.$mark("called back");
+        }
+
+        public void $record(int value, boolean sendSelf) {
+            log.add(name + " " + value);
+            if ( sendSelf )
+                self().$record(value * 10, false);
+        }
+
+        public void $runRecord() {
+            next.$record(1, true);
+            next.$record(2, false);
+        }
+
+        public void $hop(int remaining, CountDownLatch done) {
+            maxDepth = Math.max(maxDepth, ++depth);
+            if ( remaining > 0 )
+                next.$hop(remaining - 1, done);
+            depth--;
+            done.countDown();
+        }
+    }
+
+    Stage[] pipeline(ElasticScheduler scheduler, int len) {
+        Stage stages[] = new Stage[len];
+        for (int i = len - 1; i >= 0; i--) {
+            stages[i] = Actors.AsActor(Stage.class, scheduler);
+            stages[i].$init("s" + i, i < len - 1 ? stages[i + 1] : null);
+        }
+        return stages;
+    }
+
+    void stop(Stage stages[]) {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i].$stop();
+        }
+    }
+
+    void awaitLog(int size) throws InterruptedException {
+        long until = System.currentTimeMillis() + 10000;
+        while ( log.size() < size && System.currentTimeMillis() < until )
+            Thread.sleep(1);
+        Thread.sleep(50); // nothing more expected
+    }
+
+    List<String> run(boolean directCalls, int expectedLogSize, Consumer<Stage> action) throws InterruptedException {
+        log.clear();
+        Stage stages[] = pipeline(new ElasticScheduler(1).setDirectCalls(directCalls), 2);
+        action.accept(stages[0]);
+        awaitLog(expectedLogSize);
+        stop(stages);
+        return new ArrayList<>(log);
+    }
+
+    @Test
+    public void testInline() throws InterruptedException {
+        assertEquals(Arrays.asList("s1 called", "s0 after"), run(true, 2, s -> s.$run()));
+        assertEquals(Arrays.asList("s0 after", "s1 called"), run(false, 2, s -> s.$run()));
+    }
+
+    @Test
+    public void testFutureCompletedAsync() throws InterruptedException {
+        // the future is completed on the callback queue of the sender, not within the sender's method
+        assertEquals(Arrays.asList("s1 square", "s0 after", "s0 result 9"), run(true, 3, s -> s.$ask()));
+    }
+
+    @Test
+    public void testNoReentrance() throws InterruptedException {
+        // call back to the sender is queued, as the sender is executing
+        assertEquals(Arrays.asList("s1 callBack", "s0 after", "s0 called back"), run(true, 3, s -> s.$runCallBack()));
+    }
+
+    @Test
+    public void testPendingNotOvertaken() throws InterruptedException {
+        // s1 has a pending message after the first call, so the second one is queued behind it
+        assertEquals(Arrays.asList("s1 1", "s1 10", "s1 2"), run(true, 3, s -> s.$runRecord()));
+    }
+
+    @Test
+    public void testDepthLimit() throws InterruptedException {
+        ElasticScheduler scheduler = new ElasticScheduler(1).setDirectCalls(true);
+        Stage stages[] = pipeline(scheduler, DispatcherThread.MAX_DIRECT_CALL_DEPTH * 3);
+        depth = maxDepth = 0;
+        CountDownLatch done = new CountDownLatch(stages.length);
+        stages[0].$hop(stages.length - 1, done);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(DispatcherThread.MAX_DIRECT_CALL_DEPTH + 1, maxDepth);
+        stop(stages);
+    }
+
+}
@@ -0,0 +1,222 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.impl.ForkJoinScheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * runs the same workload with the different dispatcher modes of ElasticScheduler
+ */
+public class DispatchModeTest {
+
+    static AtomicInteger errors = new AtomicInteger(0);
+
+    public static class Session extends Actor<Session> {
+
+        volatile boolean threadIn = false;
+        int lastSequence = -1;
+        int received;
+
+        public void $msg(int sequence) {
+            if ( threadIn )
+                errors.incrementAndGet();
+            threadIn = true;
+            if ( sequence != lastSequence + 1 )
+                errors.incrementAndGet();
+            lastSequence = sequence;
+            received++;
+            threadIn = false;
+        }
+
+        public Future<Integer> $ping(Session other, int sequence) {
+            Promise<Integer> res = new Promise<>();
+            other.$getReceived().then( (r,e) -> {
+                $msg(sequence);
+                res.receive(r,e);
+            });
+            return res;
+        }
+
+        public Future<Integer> $getReceived() {
+            return new Promise<>(received);
+        }
+    }
+
+    /**
+     * many actors on few threads, messages from outside and actor to actor incl. callbacks
+     */
+    void runSessions(ElasticScheduler scheduler) throws InterruptedException {
+        errors.set(0);
+        final int numSessions = 2000;
+        final int numMsg = 50;
+        Session sessions[] = new Session[numSessions];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = Actors.AsActor(Session.class, scheduler, 256);
+        }
+        for ( int i = 0; i < numMsg; i++ ) {
+            for (int j = 0; j < sessions.length; j++) {
+                sessions[j].$msg(i);
+            }
+        }
+        CountDownLatch latch = new CountDownLatch(numSessions);
+        for (int j = 0; j < sessions.length; j++) {
+            sessions[j].$ping(sessions[(j+1)%numSessions], numMsg).then( (r,e) -> latch.countDown() );
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        CountDownLatch counted = new CountDownLatch(numSessions);
+        AtomicInteger sum = new AtomicInteger(0);
+        for (int j = 0; j < sessions.length; j++) {
+            sessions[j].$getReceived().then( (r,e) -> {
+                sum.addAndGet(r);
+                counted.countDown();
+            });
+        }
+        assertTrue(counted.await(30, TimeUnit.SECONDS));
+        for (int j = 0; j < sessions.length; j++) {
+            sessions[j].$stop();
+        }
+        assertEquals(numSessions * (numMsg + 1), sum.get());
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testRoundRobin() throws InterruptedException {
+        runSessions(new ElasticScheduler(2));
+    }
+
+    @Test
+    public void testReadyQueue() throws InterruptedException {
+        runSessions(new ElasticScheduler(2).setUseReadyQueue(true));
+    }
+
+    @Test
+    public void testBatched() throws InterruptedException {
+        runSessions(new ElasticScheduler(2).setThroughput(16));
+        runSessions(new ElasticScheduler(2).setThroughput(16).setUseReadyQueue(true));
+    }
+
+    @Test
+    public void testWakeOnEnqueue() throws InterruptedException {
+        runSessions(new ElasticScheduler(2).setWakeOnEnqueue(true));
+        runSessions(new ElasticScheduler(2).setWakeOnEnqueue(true).setUseReadyQueue(true).setThroughput(16));
+        ElasticScheduler scheduler = new ElasticScheduler(1).setWakeOnEnqueue(true);
+        scheduler.getBackoffStrategy().setNanosToParkSignaled(1000l*1000*1000*60);
+        Session session = Actors.AsActor(Session.class, scheduler);
+        for ( int i = 0; i < 10; i++ ) {
+            Thread.sleep(50); // let dispatcher fall asleep
+            CountDownLatch latch = new CountDownLatch(1);
+            session.$getReceived().then( (r,e) -> latch.countDown() );
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+        session.$stop();
+    }
+
+    @Test
+    public void testForkJoin() throws InterruptedException {
+        runSessions(new ForkJoinScheduler(4));
+        runSessions(new ForkJoinScheduler(1));
+    }
+
+    public static class Sender extends Actor<Sender> {
+
+        public void $send(Session targets[], int from, int count) {
+            for (int i = from; i < from + count; i++) {
+                for (int j = 0; j < targets.length; j++) {
+                    targets[j].$msg(i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchSends() throws InterruptedException {
+        runSessions(new ElasticScheduler(2).setBatchSends(true));
+        // receivers on another scheduler, so all sends leave the sender's thread
+        errors.set(0);
+        Sender sender = Actors.AsActor(Sender.class, new ElasticScheduler(1).setBatchSends(true));
+        ElasticScheduler receiverScheduler = new ElasticScheduler(2).setBatchSends(true).setUseReadyQueue(true);
+        Session sessions[] = new Session[20]; // more than SendBatch.MAX_RECEIVERS
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = Actors.AsActor(Session.class, receiverScheduler, 256);
+        }
+        final int perTurn = 100; // more than SendBatch.MAX_MESSAGES
+        final int turns = 50;
+        for (int i = 0; i < turns; i++) {
+            sender.$send(sessions, i * perTurn, perTurn);
+        }
+        for (int i = 0; i < sessions.length; i++) {
+            long deadline = System.currentTimeMillis() + 30000;
+            int received[] = { 0 };
+            while ( received[0] < turns * perTurn && System.currentTimeMillis() < deadline ) {
+                CountDownLatch latch = new CountDownLatch(1);
+                sessions[i].$getReceived().then( (r,e) -> { received[0] = r; latch.countDown(); });
+                assertTrue(latch.await(10, TimeUnit.SECONDS));
+                if ( received[0] < turns * perTurn )
+                    Thread.sleep(5);
+            }
+            assertEquals(turns * perTurn, received[0]);
+            sessions[i].$stop();
+        }
+        sender.$stop();
+        assertEquals(0, errors.get());
+    }
+
+    public static class Producer extends Actor<Producer> {
+
+        public Future<Integer> $produce(int count) {
+            // small queue blocks the single pool thread while sending
+            Session consumer = Actors.AsActor(Session.class, getScheduler(), 128);
+            for (int i = 0; i < count; i++) {
+                consumer.$msg(i);
+            }
+            Promise<Integer> res = new Promise<>();
+            consumer.$getReceived().then(res);
+            return res;
+        }
+    }
+
+    @Test
+    public void testForkJoinBlockedSend() throws InterruptedException {
+        errors.set(0);
+        Producer producer = Actors.AsActor(Producer.class, new ForkJoinScheduler(1));
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger(0);
+        producer.$produce(10000).then( (r,e) -> {
+            received.set(r);
+            latch.countDown();
+        });
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        assertEquals(10000, received.get());
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testStopInBatch() throws InterruptedException {
+        Session session = Actors.AsActor(Session.class, new ElasticScheduler(1).setThroughput(64));
+        Session realActor = session.getActor();
+        session.setThroughput(1000);
+        CountDownLatch latch = new CountDownLatch(1);
+        session.$getReceived().then( (r,e) -> latch.countDown() );
+        latch.await();
+        errors.set(0);
+        for ( int i = 0; i < 100; i++ ) {
+            session.$msg(i);
+        }
+        session.$stop();
+        for ( int i = 100; i < 200; i++ ) {
+            session.$msg(i);
+        }
+        Thread.sleep(500);
+        assertEquals(100, realActor.received);
+        assertEquals(0, errors.get());
+    }
+
+}
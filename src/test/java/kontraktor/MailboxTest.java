@@ -0,0 +1,224 @@
+package kontraktor;
+
+import io.jaq.mpsc.MpscChunkedQueue;
+import io.jaq.mpsc.MpscConcurrentQueue;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * growable chunked mailbox queue
+ */
+public class MailboxTest {
+
+    @Test
+    public void testLazyAllocation() {
+        MpscChunkedQueue<Integer> q = new MpscChunkedQueue<>(32768);
+        assertEquals(32768, q.getCapacity());
+        assertEquals(0, q.getAllocated());
+        assertNull(q.poll());
+        q.offer(1);
+        assertEquals(MpscChunkedQueue.INITIAL_CHUNK_SIZE, q.getAllocated());
+        assertEquals(1, (int) q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void testCapacity() {
+        MpscChunkedQueue<Integer> q = new MpscChunkedQueue<>(100);
+        assertEquals(128, q.getCapacity());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 128; i++) {
+                assertTrue(q.offer(i));
+            }
+            assertFalse(q.offer(128));
+            assertEquals(128, q.size());
+            for (int i = 0; i < 128; i++) {
+                assertEquals(i, (int) q.poll());
+            }
+            assertNull(q.poll());
+            assertEquals(0, q.size());
+        }
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        MpscChunkedQueue<Integer> q = new MpscChunkedQueue<>(32768);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(q.offer(i));
+        }
+        assertTrue(q.getAllocated() >= 10000);
+        assertTrue(q.getAllocated() < 10000 + 2 * MpscChunkedQueue.MAX_CHUNK_SIZE);
+        int count[] = { 0 };
+        assertEquals(9000, q.drain( i -> assertEquals(count[0]++, (int) i), 9000));
+        assertTrue(q.getAllocated() <= 1000 + 3 * MpscChunkedQueue.MAX_CHUNK_SIZE); // incl. spare buffer
+        assertEquals(1000, q.drain( i -> assertEquals(count[0]++, (int) i), 2000));
+        assertNull(q.poll()); // closes the large chunk
+        assertEquals(0, q.getAllocated());
+        q.offer(1);
+        assertEquals(MpscChunkedQueue.INITIAL_CHUNK_SIZE, q.getAllocated());
+        assertEquals(1, (int) q.poll());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        final MpscChunkedQueue<long[]> q = new MpscChunkedQueue<>(1024);
+        final int producers = 4;
+        final int perProducer = 200 * 1000;
+        Thread threads[] = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long msg[] = { producer, i };
+                    while ( ! q.offer(msg) )
+                        Thread.yield();
+                }
+            });
+            threads[p].start();
+        }
+        long next[] = new long[producers];
+        AtomicInteger errors = new AtomicInteger(0);
+        int received = 0;
+        while ( received < producers * perProducer ) {
+            int count = q.drain( msg -> {
+                if ( next[(int) msg[0]]++ != msg[1] )
+                    errors.incrementAndGet();
+            }, 64 );
+            if ( count == 0 )
+                Thread.yield();
+            received += count;
+        }
+        for (int p = 0; p < producers; p++) {
+            threads[p].join();
+        }
+        assertNull(q.poll());
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testBatchOffer() {
+        MpscChunkedQueue<Integer> q = new MpscChunkedQueue<>(128, 32);
+        Integer batch[] = new Integer[100];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = i;
+        }
+        assertTrue(q.offer(batch, 10, 90)); // spans several chunks
+        assertEquals(90, q.size());
+        assertFalse(q.offer(batch, 0, 50)); // all or nothing
+        assertEquals(90, q.size());
+        assertTrue(q.offer(batch, 0, 38));
+        assertFalse(q.offer(99));
+        for (int i = 10; i < 100; i++) {
+            assertEquals(i, (int) q.poll());
+        }
+        for (int i = 0; i < 38; i++) {
+            assertEquals(i, (int) q.poll());
+        }
+        assertNull(q.poll());
+
+        MpscConcurrentQueue<Integer> cq = new MpscConcurrentQueue<>(128);
+        assertTrue(cq.offer(batch, 0, 100));
+        assertFalse(cq.offer(batch, 0, 29));
+        assertTrue(cq.offer(batch, 0, 28));
+        assertFalse(cq.offer(99));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) cq.poll());
+        }
+        for (int i = 0; i < 28; i++) {
+            assertEquals(i, (int) cq.poll());
+        }
+        assertNull(cq.poll());
+    }
+
+    @Test
+    public void testConcurrentBatchProducers() throws InterruptedException {
+        final MpscChunkedQueue<long[]> q = new MpscChunkedQueue<>(1024);
+        final int producers = 4;
+        final int perProducer = 200 * 1000;
+        Thread threads[] = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                long batch[][] = new long[37][];
+                for (int i = 0; i < perProducer; ) {
+                    int len = Math.min(1 + i % batch.length, perProducer - i);
+                    for (int j = 0; j < len; j++) {
+                        batch[j] = new long[] { producer, i + j };
+                    }
+                    while ( ! q.offer(batch, 0, len) )
+                        Thread.yield();
+                    i += len;
+                }
+            });
+            threads[p].start();
+        }
+        long next[] = new long[producers];
+        AtomicInteger errors = new AtomicInteger(0);
+        int received = 0;
+        while ( received < producers * perProducer ) {
+            int count = q.drain( msg -> {
+                if ( next[(int) msg[0]]++ != msg[1] )
+                    errors.incrementAndGet();
+            }, 64 );
+            if ( count == 0 )
+                Thread.yield();
+            received += count;
+        }
+        for (int p = 0; p < producers; p++) {
+            threads[p].join();
+        }
+        assertNull(q.poll());
+        assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testConcurrentQueueWrapAround() throws InterruptedException {
+        // small capacity, producers wrap around onto slots cleared by drain in the same batch
+        final MpscConcurrentQueue<long[]> q = new MpscConcurrentQueue<>(8);
+        final int producers = 4;
+        final int perProducer = 500 * 1000;
+        Thread threads[] = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long msg[] = { producer, i };
+                    while ( ! q.offer(msg) )
+                        Thread.yield();
+                }
+            });
+            threads[p].start();
+        }
+        long next[] = new long[producers];
+        AtomicInteger errors = new AtomicInteger(0);
+        int received[] = { 0 };
+        long deadline = System.currentTimeMillis() + 60_000;
+        while ( received[0] < producers * perProducer && System.currentTimeMillis() < deadline ) {
+            int count = q.drain( msg -> {
+                if ( next[(int) msg[0]]++ != msg[1] )
+                    errors.incrementAndGet();
+                if ( (msg[1] & 127) == 0 ) { // consumer polling inside a batch
+                    long polled[] = q.poll();
+                    if ( polled != null ) {
+                        received[0]++;
+                        if ( next[(int) polled[0]]++ != polled[1] )
+                            errors.incrementAndGet();
+                    }
+                }
+            }, 16 );
+            if ( count == 0 )
+                Thread.yield();
+            received[0] += count;
+        }
+        assertEquals("messages lost", producers * perProducer, received[0]);
+        for (int p = 0; p < producers; p++) {
+            threads[p].join();
+        }
+        assertNull(q.poll());
+        assertEquals(0, errors.get());
+    }
+
+}
@@ -0,0 +1,162 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.remoting.CodedCallEntry;
+import org.nustaq.kontraktor.remoting.ObjectSocket;
+import org.nustaq.kontraktor.remoting.RemoteCallEntry;
+import org.nustaq.kontraktor.remoting.RemoteRefRegistry;
+import org.nustaq.kontraktor.remoting.SerializerType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * remote calls decoded from minbin. Peers on other platforms (e.g. javascript) transmit booleans as byte.
+ * Names are sent via the wire dictionary only to peers which offered to read it when the connection opened.
+ */
+public class MinBinCallTest {
+
+    public static class FlagActor extends Actor<FlagActor> {
+
+        String flags;
+
+        public void $flags(boolean a, Boolean b, Boolean c) {
+            flags = a + " " + b + " " + c;
+        }
+
+        public Future<String> $getFlags() {
+            return new Promise<>(flags);
+        }
+    }
+
+    @Test
+    public void testBooleanArgs() throws Exception {
+        RemoteRefRegistry sender = WireDictionaryTest.registry(SerializerType.MinBin);
+        RemoteRefRegistry receiver = WireDictionaryTest.registry(SerializerType.MinBin);
+        FlagActor actor = Actors.AsActor(FlagActor.class);
+        try {
+            int id = receiver.publishActor(actor);
+            RemoteCallEntry call = new RemoteCallEntry(0, id, "$flags", new Object[]{(byte) 1, (byte) 0, null});
+            RemoteCallEntry received = (RemoteCallEntry) receiver.getConf().asObject(sender.getConf().asByteArray(call));
+            assertTrue(received.getArgs()[1] instanceof Byte);
+            receiver.receiveObject(null, received);
+            assertEquals("true false null", NIORemotingTest.await(actor.$getFlags()));
+        } finally {
+            actor.$stop();
+        }
+    }
+
+    // collects messages written by a registry, definitions are committed like TCPSocket does
+    static class FrameSocket implements ObjectSocket {
+
+        RemoteRefRegistry reg;
+        List<byte[]> frames = new ArrayList<>();
+
+        FrameSocket(RemoteRefRegistry reg) {
+            this.reg = reg;
+        }
+
+        @Override
+        public Object readObject() throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void writeObject(Object toWrite) throws Exception {
+            frames.add(reg.getConf().asByteArray(toWrite));
+            reg.getWriteDictionary().commit();
+        }
+
+        @Override
+        public void flush() throws IOException {
+        }
+
+        @Override
+        public void setLastError(Exception ex) {
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+        byte[] take() {
+            assertEquals(1, frames.size());
+            return frames.remove(0);
+        }
+    }
+
+    @Test
+    public void testDictionaryNegotiation() throws Exception {
+        RemoteRefRegistry client = WireDictionaryTest.registry(SerializerType.MinBin);
+        RemoteRefRegistry server = WireDictionaryTest.registry(SerializerType.MinBin);
+        FrameSocket clientSocket = new FrameSocket(client);
+        FrameSocket serverSocket = new FrameSocket(server);
+        FlagActor actor = Actors.AsActor(FlagActor.class);
+        try {
+            int id = server.publishActor(actor);
+
+            // no offer received: plain calls
+            RemoteCallEntry call = client.newCallEntry(0, id, "$flags", new Object[]{true, Boolean.FALSE, null});
+            assertFalse(call instanceof CodedCallEntry);
+            clientSocket.writeObject(call);
+            byte plain[] = clientSocket.take();
+            clientSocket.writeObject(call);
+            assertArrayEquals(plain, clientSocket.take());
+            assertEquals(0, client.getWriteDictionary().getNumWritten());
+            server.receiveObject(null, server.getConf().asObject(plain));
+            assertEquals("true false null", NIORemotingTest.await(actor.$getFlags()));
+
+            // server offers the dictionary, client switches to coded calls
+            server.connectionOpened(serverSocket);
+            assertFalse(client.receiveObject(null, client.getConf().asObject(serverSocket.take())));
+            call = client.newCallEntry(0, id, "$flags", new Object[]{false, Boolean.TRUE, Boolean.TRUE});
+            assertTrue(call instanceof CodedCallEntry);
+            clientSocket.writeObject(call);
+            byte first[] = clientSocket.take();
+            clientSocket.writeObject(call);
+            byte second[] = clientSocket.take();
+            assertTrue(second.length <= first.length - "$flags".length());
+            assertTrue(second.length < plain.length);
+            for (byte msg[] : new byte[][]{first, second}) {
+                server.receiveObject(null, server.getConf().asObject(msg));
+                assertEquals("false true true", NIORemotingTest.await(actor.$getFlags()));
+            }
+
+            // actor refs inside coded calls use the dictionary
+            WireDictionaryTest.DictActor ref = Actors.AsActor(WireDictionaryTest.DictActor.class);
+            try {
+                RemoteCallEntry withRef = client.newCallEntry(0, id, "$flags", new Object[]{ref});
+                clientSocket.writeObject(withRef);
+                byte firstRef[] = clientSocket.take();
+                clientSocket.writeObject(withRef);
+                assertTrue(clientSocket.take().length < firstRef.length - WireDictionaryTest.DictActor.class.getName().length());
+                RemoteCallEntry received = (RemoteCallEntry) server.getConf().asObject(firstRef);
+                assertTrue(received.getArgs()[0] instanceof WireDictionaryTest.DictActor);
+                assertEquals(2, client.getWriteDictionary().getNumWritten());
+            } finally {
+                ref.$stop();
+            }
+
+            // client did not offer: server keeps sending plain calls
+            assertFalse(server.newCallEntry(0, 1, "$flags", new Object[0]) instanceof CodedCallEntry);
+        } finally {
+            actor.$stop();
+        }
+    }
+
+    @Test
+    public void testNoOfferWithFST() {
+        RemoteRefRegistry reg = WireDictionaryTest.registry(SerializerType.FSTSer);
+        FrameSocket socket = new FrameSocket(reg);
+        reg.connectionOpened(socket);
+        assertTrue(socket.frames.isEmpty());
+    }
+
+}
@@ -0,0 +1,172 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.remoting.tcp.NIOActorClient;
+import org.nustaq.kontraktor.remoting.RemoteCallEntry;
+import org.nustaq.kontraktor.remoting.tcp.NIOActorServer;
+import org.nustaq.kontraktor.remoting.tcp.NIOObjectSocket;
+import org.nustaq.kontraktor.remoting.tcp.TCPActorClient;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * non blocking remoting
+ */
+public class NIORemotingTest {
+
+    public static class NIOTestFacade extends Actor<NIOTestFacade> {
+
+        int count;
+        int outOfOrder;
+
+        public void $count(int value) {
+            if ( value != count )
+                outOfOrder++;
+            count = value + 1;
+        }
+
+        public Future<String> $doubleMe( String s ) {
+            return new Promise<>(s+" "+s);
+        }
+
+        public void $callback( String s, Callback<String> cb ) {
+            cb.receive(s, Callback.CONT);
+            cb.receive(s+s, null);
+        }
+
+        public Future<Integer> $getCount() {
+            return new Promise<>(outOfOrder == 0 ? count : -1);
+        }
+    }
+
+    static <T> T await(Future<T> future) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Object> res = new AtomicReference<>();
+        future.then( (r,e) -> {
+            res.set(e != null ? e : r);
+            latch.countDown();
+        });
+        assertTrue("timed out", latch.await(20, TimeUnit.SECONDS));
+        if ( res.get() instanceof Throwable )
+            throw new RuntimeException((Throwable) res.get());
+        return (T) res.get();
+    }
+
+    @Test
+    public void testNIOClient() throws Exception {
+        NIOTestFacade facade = Actors.AsActor(NIOTestFacade.class);
+        NIOActorServer server = NIOActorServer.Publish(facade, 0, 2);
+        try {
+            NIOTestFacade remote = await(NIOActorClient.Connect(NIOTestFacade.class, "localhost", server.getPort()));
+            assertEquals("X X", await(remote.$doubleMe("X")));
+
+            List<String> received = new ArrayList<>();
+            CountDownLatch latch = new CountDownLatch(1);
+            remote.$callback("A", (r, e) -> {
+                received.add(r);
+                if ( ! Callback.CONT.equals(e) )
+                    latch.countDown();
+            });
+            assertTrue(latch.await(20, TimeUnit.SECONDS));
+            assertEquals("[A, AA]", received.toString());
+
+            int num = 100_000;
+            for (int i = 0; i < num; i++) {
+                remote.$count(i);
+            }
+            assertEquals(num, (int) await(remote.$getCount()));
+            assertEquals(1, server.getNumConnections());
+        } finally {
+            server.close();
+            facade.$stop();
+        }
+    }
+
+    @Test
+    public void testBlockingClient() throws Exception {
+        NIOTestFacade facade = Actors.AsActor(NIOTestFacade.class);
+        NIOActorServer server = NIOActorServer.Publish(facade, 0, 1);
+        try {
+            NIOTestFacade remote = await(TCPActorClient.Connect(NIOTestFacade.class, "localhost", server.getPort()));
+            for (int i = 0; i < 1000; i++) {
+                remote.$count(i);
+            }
+            assertEquals(1000, (int) await(remote.$getCount()));
+            assertEquals("Y Y", await(remote.$doubleMe("Y")));
+            // idle sender is parked instead of polling remote refs
+            Thread.sleep(200);
+            Thread.getAllStackTraces().keySet().stream()
+                .filter( t -> t.getName().equals("sender") )
+                .forEach( t -> assertEquals(Thread.State.TIMED_WAITING, t.getState()) );
+        } finally {
+            server.close();
+            facade.$stop();
+        }
+    }
+
+    @Test
+    public void testManyClients() throws Exception {
+        NIOTestFacade facade = Actors.AsActor(NIOTestFacade.class);
+        NIOActorServer server = NIOActorServer.Publish(facade, 0, 2);
+        try {
+            int threadsBefore = Thread.activeCount();
+            int numClients = 200;
+            List<NIOTestFacade> clients = new ArrayList<>();
+            for (int i = 0; i < numClients; i++) {
+                clients.add(await(NIOActorClient.Connect(NIOTestFacade.class, "localhost", server.getPort())));
+            }
+            for (int i = 0; i < clients.size(); i++) {
+                assertEquals(i + " " + i, await(clients.get(i).$doubleMe("" + i)));
+            }
+            assertEquals(numClients, server.getNumConnections());
+            // no threads per connection (allow for lazily started selector and pool threads)
+            assertTrue(Thread.activeCount() - threadsBefore < 20);
+        } finally {
+            server.close();
+            facade.$stop();
+        }
+    }
+
+    @Test
+    public void testStalledPeer() throws Exception {
+        int maxBuffered = NIOObjectSocket.MAX_BUFFERED_WRITE;
+        NIOObjectSocket.MAX_BUFFERED_WRITE = 4 * 1024 * 1024;
+        try (ServerSocket server = new ServerSocket(0)) {
+            NIOActorClient<NIOTestFacade> client = new NIOActorClient<>(NIOTestFacade.class, "localhost", server.getLocalPort());
+            CountDownLatch connected = new CountDownLatch(1);
+            client.connect( (c, e) -> connected.countDown() );
+            Socket accepted = server.accept(); // never reads
+            assertTrue(connected.await(20, TimeUnit.SECONDS));
+            NIOObjectSocket socket = client.getSocket();
+            RemoteCallEntry result = new RemoteCallEntry(0, 1, null, new Object[]{new byte[64 * 1024], null});
+            result.setQueue(RemoteCallEntry.CBQ);
+            try {
+                // not called by the loop thread, like results of futures
+                for (int i = 0; i < 10_000; i++) {
+                    socket.writeObject(result);
+                }
+                fail("no limit on pending bytes");
+            } catch (IOException expected) {
+            }
+            assertTrue(socket.getWriteBuffer().getPendingBytes() < NIOObjectSocket.MAX_BUFFERED_WRITE + 128 * 1024);
+            long deadline = System.currentTimeMillis() + 20_000;
+            while ( ! socket.isClosed() && System.currentTimeMillis() < deadline )
+                Thread.sleep(10);
+            assertTrue(socket.isClosed());
+            accepted.close();
+        } finally {
+            NIOObjectSocket.MAX_BUFFERED_WRITE = maxBuffered;
+        }
+    }
+
+}
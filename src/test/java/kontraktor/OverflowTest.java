@@ -0,0 +1,253 @@
+package kontraktor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.annotations.Overflow;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.impl.ForkJoinScheduler;
+import org.nustaq.kontraktor.impl.MailboxFullException;
+import org.nustaq.kontraktor.impl.OverflowStats;
+import org.nustaq.kontraktor.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * mailbox overflow policies
+ */
+public class OverflowTest {
+
+    static final int QSIZE = 128;
+
+    List<Throwable> logged = Collections.synchronizedList(new ArrayList<>());
+    Log.LogWrapper prevLogger;
+
+    @Before
+    public void captureLog() {
+        prevLogger = Log.Lg.getLogWrapper();
+        Log.Lg.$init( (thread, severity, source, ex, msg) -> {
+            if ( ex != null )
+                logged.add(ex);
+            prevLogger.msg(thread, severity, source, ex, msg);
+        });
+    }
+
+    @After
+    public void noExceptionLogged() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Log.Lg.$sync().then( (r,e) -> latch.countDown() );
+        latch.await(10, TimeUnit.SECONDS);
+        Log.Lg.$init(prevLogger);
+        assertTrue("exceptions logged: " + logged, logged.isEmpty());
+    }
+
+    public static class Sink extends Actor<Sink> {
+
+        List<Integer> received;
+
+        public void $init(List<Integer> received) {
+            this.received = received;
+        }
+
+        public void $block(CountDownLatch latch) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        public void $msg(int i) {
+            synchronized (received) {
+                received.add(i);
+            }
+        }
+
+        @Overflow(OverflowPolicy.DROP_NEWEST)
+        public void $tick(int i) {
+            $msg(i);
+        }
+
+        @Overflow(OverflowPolicy.FAIL)
+        public Future<Integer> $call(int i) {
+            return new Promise<>(i);
+        }
+    }
+
+    @Overflow(OverflowPolicy.SPILL)
+    public static class SpillingSink extends Sink {
+    }
+
+    // returns a latch. The actor is blocked (and its mailbox empty) until the latch is released
+    static CountDownLatch block(Sink sink) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        sink.$block(latch);
+        while ( sink.getMailboxSize() > 0 )
+            Thread.sleep(1);
+        return latch;
+    }
+
+    static List<Integer> await(List<Integer> received, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( size(received) < expected && System.currentTimeMillis() < deadline )
+            Thread.sleep(1);
+        Thread.sleep(50);
+        synchronized (received) {
+            return new ArrayList<>(received);
+        }
+    }
+
+    static int size(List<Integer> received) {
+        synchronized (received) {
+            return received.size();
+        }
+    }
+
+    // the actor is blocked, so $getReport can't be used
+    static OverflowStats report(Sink sink) {
+        return OverflowStats.get(sink);
+    }
+
+    Sink create(Scheduler scheduler, OverflowPolicy policy, List<Integer> received) {
+        Sink sink = Actors.AsActor(Sink.class, scheduler, QSIZE, policy);
+        sink.$init(received);
+        return sink;
+    }
+
+    @Test
+    public void testSpill() throws InterruptedException {
+        for ( Scheduler scheduler : new Scheduler[] { new ElasticScheduler(1), new ForkJoinScheduler(1) } ) {
+            List<Integer> received = new ArrayList<>();
+            Sink sink = create(scheduler, OverflowPolicy.SPILL, received);
+            CountDownLatch latch = block(sink);
+            for (int i = 0; i < 1000; i++) {
+                sink.$msg(i);
+            }
+            assertEquals(QSIZE, sink.getMailboxSize());
+            assertEquals(1000 - QSIZE, report(sink).getSpilled());
+            latch.countDown();
+            List<Integer> res = await(received, 1000);
+            assertEquals(1000, res.size());
+            for (int i = 0; i < res.size(); i++) {
+                assertEquals(i, (int) res.get(i));
+            }
+            assertTrue(sink.__overflow.isEmpty());
+            sink.$stop();
+        }
+    }
+
+    @Test
+    public void testSpillAnnotation() throws InterruptedException {
+        List<Integer> received = new ArrayList<>();
+        Sink sink = Actors.AsActor(SpillingSink.class, new ElasticScheduler(1), QSIZE);
+        sink.$init(received);
+        assertEquals(OverflowPolicy.SPILL, sink.getOverflowPolicy());
+        CountDownLatch latch = block(sink);
+        for (int i = 0; i < 500; i++) {
+            sink.$msg(i);
+        }
+        assertEquals(500 - QSIZE, report(sink).getSpilled());
+        latch.countDown();
+        assertEquals(500, await(received, 500).size());
+        sink.$stop();
+    }
+
+    @Test
+    public void testDropNewest() throws InterruptedException {
+        List<Integer> received = new ArrayList<>();
+        Sink sink = create(new ElasticScheduler(1), OverflowPolicy.DROP_NEWEST, received);
+        CountDownLatch latch = block(sink);
+        for (int i = 0; i < 300; i++) {
+            sink.$msg(i);
+        }
+        assertEquals(300 - QSIZE, report(sink).getDropped());
+        latch.countDown();
+        List<Integer> res = await(received, QSIZE);
+        assertEquals(QSIZE, res.size());
+        for (int i = 0; i < res.size(); i++) {
+            assertEquals(i, (int) res.get(i));
+        }
+        sink.$stop();
+    }
+
+    @Test
+    public void testDropOldest() throws InterruptedException {
+        for ( Scheduler scheduler : new Scheduler[] { new ElasticScheduler(1), new ForkJoinScheduler(1) } ) {
+            List<Integer> received = new ArrayList<>();
+            Sink sink = create(scheduler, OverflowPolicy.DROP_OLDEST, received);
+            CountDownLatch latch = block(sink);
+            for (int i = 0; i < 1000; i++) {
+                sink.$msg(i);
+            }
+            assertTrue(sink.__overflow.size() <= QSIZE);
+            latch.countDown();
+            List<Integer> res = await(received, QSIZE);
+            // the newest messages survive, in order
+            assertEquals(QSIZE, res.size());
+            for (int i = 0; i < res.size(); i++) {
+                assertEquals(1000 - QSIZE + i, (int) res.get(i));
+            }
+            assertEquals(1000 - QSIZE, report(sink).getDropped());
+            sink.$stop();
+        }
+    }
+
+    @Test
+    public void testFail() throws InterruptedException {
+        List<Integer> received = new ArrayList<>();
+        Sink sink = create(new ElasticScheduler(1), null, received);
+        CountDownLatch latch = block(sink);
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger results = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            sink.$call(i).then( (r, e) -> {
+                if ( e instanceof MailboxFullException )
+                    errors.incrementAndGet();
+                else if ( r != null )
+                    results.incrementAndGet();
+            });
+        }
+        assertEquals(200 - QSIZE, errors.get()); // rejected synchronously
+        assertEquals(200 - QSIZE, report(sink).getFailed());
+        latch.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while ( results.get() < QSIZE && System.currentTimeMillis() < deadline )
+            Thread.sleep(1);
+        assertEquals(QSIZE, results.get());
+        sink.$stop();
+    }
+
+    @Test
+    public void testMethodPolicy() throws InterruptedException {
+        List<Integer> received = new ArrayList<>();
+        Sink sink = create(new ElasticScheduler(1), null, received);
+        assertEquals(OverflowPolicy.BLOCK, sink.getOverflowPolicy());
+        CountDownLatch latch = block(sink);
+        for (int i = 0; i < 300; i++) {
+            sink.$tick(i); // does not block
+        }
+        assertEquals(300 - QSIZE, report(sink).getDropped());
+        // BLOCK: sender waits for the actor
+        Thread sender = new Thread( () -> sink.$msg(-1) );
+        sender.start();
+        Thread.sleep(100);
+        assertTrue(sender.isAlive());
+        latch.countDown();
+        sender.join(10000);
+        assertFalse(sender.isAlive());
+        List<Integer> res = await(received, QSIZE + 1);
+        assertEquals(QSIZE + 1, res.size());
+        assertEquals(-1, (int) res.get(QSIZE));
+        assertEquals(1, report(sink).getBlocked());
+        sink.$stop();
+    }
+
+}
@@ -0,0 +1,196 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.Callback;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * lock free promise, multiple listeners
+ */
+public class PromiseTest {
+
+    @Test
+    public void testListenersInOrder() {
+        Promise<String> p = new Promise<>();
+        List<String> calls = new ArrayList<>();
+        p.then( (r,e) -> calls.add("1" + r) );
+        p.onResult( r -> calls.add("2" + r) );
+        p.then( (r,e) -> calls.add("3" + r) ).then( (r,e) -> calls.add("4" + r) );
+        assertTrue(calls.isEmpty());
+        p.receive("x", null);
+        p.then( (r,e) -> calls.add("5" + r) ); // completed, called immediately
+        assertEquals("[1x, 2x, 3x, 4x, 5x]", calls.toString());
+        assertTrue(p._isHadResult());
+        assertTrue(p._isHasFired());
+    }
+
+    @Test
+    public void testChainToFuture() {
+        Promise<String> p = new Promise<>();
+        Promise<String> other = new Promise<>();
+        String res[] = { null };
+        Future chained = p.then(other);
+        assertSame(other, chained);
+        chained.then( (r,e) -> res[0] = (String) r );
+        p.receive("y", null);
+        assertEquals("y", res[0]);
+        assertEquals("y", p.getNext().getResult());
+    }
+
+    @Test
+    public void testGetNext() {
+        Promise<String> p = new Promise<>();
+        List<String> calls = new ArrayList<>();
+        p.then( (r,e) -> calls.add("listener") );
+        p.getNext().finishWith( (r,e) -> calls.add("next " + r) );
+        p.receive("z", null);
+        assertEquals("[listener, next z]", calls.toString());
+    }
+
+    @Test
+    public void testDoubleResult() {
+        Promise<String> p = new Promise<>();
+        p.receive("a", null);
+        try {
+            p.receive("b", null);
+            fail();
+        } catch (RuntimeException ex) {
+            // expected
+        }
+        assertEquals("a", p.getResult());
+    }
+
+    @Test
+    public void testLateResultAfterTimeout() throws InterruptedException {
+        Promise<String> p = new Promise<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        Object err[] = { null };
+        p.timeoutIn(10).then( (r,e) -> {
+            err[0] = e;
+            latch.countDown();
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertSame(Timeout.INSTANCE, err[0]);
+        p.receive("late", null); // ignored
+        assertSame(Timeout.INSTANCE, p.getError());
+        assertNull(p.getResult());
+    }
+
+    @Test
+    public void testTimeoutReplaced() throws InterruptedException {
+        Promise<String> p = new Promise<>();
+        p.timeoutIn(10);
+        p.timeoutIn(60_000);
+        Thread.sleep(200);
+        assertFalse(p._isHadResult());
+        p.receive("in time", null);
+        assertEquals("in time", p.getResult());
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws InterruptedException {
+        final int threads = 4;
+        final int listeners = 1000;
+        for (int round = 0; round < 200; round++) {
+            final Promise<Integer> p = new Promise<>();
+            final AtomicInteger called = new AtomicInteger(0);
+            final Callback<Integer> cb = (r,e) -> {
+                if ( r != 42 )
+                    throw new RuntimeException("bad result");
+                called.incrementAndGet();
+            };
+            CountDownLatch start = new CountDownLatch(1);
+            Thread regs[] = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                regs[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                    for (int i = 0; i < listeners; i++) {
+                        p.then(cb);
+                    }
+                });
+                regs[t].start();
+            }
+            start.countDown();
+            p.receive(42, null);
+            for (int t = 0; t < threads; t++) {
+                regs[t].join();
+            }
+            assertEquals(threads * listeners, called.get());
+        }
+    }
+
+    @Test
+    public void testAllSettledManyCompleted() {
+        Future futures[] = new Future[50 * 1000];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = new Promise<>(i);
+        }
+        Object res[] = { null };
+        Actors.yield(futures).then( (r,e) -> res[0] = r ); // no deep recursion
+        assertSame(futures, res[0]);
+        Object results[] = new Object[futures.length];
+        Actors.allResults(results, futures);
+        assertEquals(49999, results[49999]);
+    }
+
+    @Test
+    public void testAll() {
+        Promise<Integer> a = new Promise<>();
+        Promise<Integer> b = new Promise<>();
+        Promise<Integer> c = new Promise<>();
+        Future<Object[]> all = Actors.all(a, b, c);
+        b.receive(2, null);
+        a.receive(1, null);
+        assertFalse(((Promise) all)._isHadResult());
+        c.receive(3, null);
+        assertArrayEquals(new Object[] {1, 2, 3}, all.getResult());
+
+        Promise<Integer> d = new Promise<>();
+        Promise<Integer> f = new Promise<>();
+        all = Actors.all(d, f);
+        f.receive(null, "failed"); // completes without waiting for d
+        assertEquals("failed", all.getError());
+        d.receive(4, null);
+        assertEquals("failed", all.getError());
+
+        Integer results[] = new Integer[2];
+        Promise<Integer> g = new Promise<>();
+        Future<Integer[]> settled = Actors.allResults(results, g, new Promise<>(null, "error"));
+        g.receive(5, null);
+        assertSame(results, settled.getResult());
+        assertArrayEquals(new Integer[] {5, null}, results);
+    }
+
+    @Test
+    public void testAnyRace() {
+        Promise<String> a = new Promise<>();
+        Promise<String> b = new Promise<>();
+        Future<String> any = Actors.any(a, b);
+        Future<String> race = Actors.race(a, b);
+        a.receive(null, "failed");
+        assertEquals("failed", race.getError());
+        assertFalse(((Promise) any)._isHadResult());
+        b.receive("b", null);
+        assertEquals("b", any.getResult());
+        assertNull(any.getError());
+
+        Future<String> allFailed = Actors.any(new Promise<>(null, "e1"), new Promise<>(null, "e2"));
+        assertEquals("e2", allFailed.getError());
+    }
+
+}
@@ -0,0 +1,134 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.impl.DispatcherThread;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * idle dispatchers take over actors of busy ones (ElasticScheduler.setStealing)
+ */
+public class StealingTest {
+
+    static AtomicInteger errors = new AtomicInteger(0);
+
+    public static class Worker extends Actor<Worker> {
+
+        int expected;
+        AtomicInteger inside = new AtomicInteger(0);
+
+        public void $block(CountDownLatch latch) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        public void $noop() {
+        }
+
+        public void $work(int seq, int spin, CountDownLatch done) {
+            if ( inside.incrementAndGet() != 1 ) // executed concurrently
+                errors.incrementAndGet();
+            if ( seq != expected++ ) // out of order
+                errors.incrementAndGet();
+            long sum = 0;
+            for (int i = 0; i < spin; i++) {
+                sum += i * seq;
+            }
+            if ( sum == 42 )
+                System.out.println("");
+            inside.decrementAndGet();
+            done.countDown();
+        }
+    }
+
+    @Test
+    public void testStealFromBlocked() throws InterruptedException {
+        stealFromBlocked(new ElasticScheduler(2).setStealing(true));
+    }
+
+    @Test
+    public void testStealFromBlockedReadyQueue() throws InterruptedException {
+        stealFromBlocked(new ElasticScheduler(2).setStealing(true).setUseReadyQueue(true));
+    }
+
+    void stealFromBlocked(ElasticScheduler scheduler) throws InterruptedException {
+        errors.set(0);
+        Worker busy = Actors.AsActor(Worker.class, scheduler, 1024);
+        Worker workers[] = new Worker[3];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Actors.AsActor(Worker.class, scheduler, 1024);
+            assertSame(busy.__currentDispatcher, workers[i].__currentDispatcher);
+        }
+        DispatcherThread dispatcher = (DispatcherThread) busy.__currentDispatcher;
+        while ( dispatcher.getActors().length < workers.length + 1 ) // added lazily
+            Thread.sleep(1);
+        // keep the thread of busy executing a message, fill its queue so a second thread is created
+        CountDownLatch latch = new CountDownLatch(1);
+        busy.$block(latch);
+        while ( busy.getMailboxSize() > 0 )
+            Thread.sleep(1);
+        for (int i = 0; i < 1000; i++) {
+            busy.$noop();
+        }
+        Worker idle = Actors.AsActor(Worker.class, scheduler, 1024);
+        assertNotSame(busy.__currentDispatcher, idle.__currentDispatcher);
+
+        // workers get processed by the idle thread although their thread is blocked
+        CountDownLatch done = new CountDownLatch(workers.length * 100);
+        for (int n = 0; n < 100; n++) {
+            for (int i = 0; i < workers.length; i++) {
+                workers[i].$work(n, 100, done);
+            }
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < workers.length; i++) {
+            assertSame(idle.__currentDispatcher, workers[i].__currentDispatcher);
+        }
+        assertEquals(0, errors.get());
+        ElasticScheduler.SchedulingReport report[] = { null };
+        scheduler.$getReport().then( (r, e) -> report[0] = (ElasticScheduler.SchedulingReport) r );
+        assertTrue(report[0].getSteals() >= workers.length);
+
+        latch.countDown();
+        busy.$stop();
+        idle.$stop();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].$stop();
+        }
+    }
+
+    @Test
+    public void testOrderUnderStealing() throws InterruptedException {
+        errors.set(0);
+        ElasticScheduler scheduler = new ElasticScheduler(4).setStealing(true).setThroughput(8);
+        Worker workers[] = new Worker[16];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Actors.AsActor(Worker.class, scheduler, 1024);
+        }
+        final int messages = 20000;
+        CountDownLatch done = new CountDownLatch(workers.length * messages);
+        for (int n = 0; n < messages; n++) {
+            for (int i = 0; i < workers.length; i++) {
+                workers[i].$work(n, (n & 63) * 50, done);
+            }
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(0, errors.get());
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].$stop();
+        }
+    }
+
+}
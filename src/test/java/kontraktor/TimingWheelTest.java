@@ -0,0 +1,129 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.*;
+import org.nustaq.kontraktor.impl.TimingWheel;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testExpire() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test timer", 1, 64); // delays span several rounds
+        final int count = 2000;
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicInteger early = new AtomicInteger(0);
+        for (int i = 0; i < count; i++) {
+            final long delay = (i * 7) % 300;
+            final long deadline = System.nanoTime() + delay * 1000 * 1000;
+            wheel.schedule(delay, () -> {
+                if ( System.nanoTime() < deadline )
+                    early.incrementAndGet();
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, early.get());
+        // idle wheel wakes up on schedule
+        Thread.sleep(200);
+        CountDownLatch single = new CountDownLatch(1);
+        wheel.schedule(10, () -> single.countDown());
+        assertTrue(single.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test timer", 1, 64);
+        final int count = 2000;
+        AtomicInteger fired = new AtomicInteger(0);
+        TimingWheel.Entry entries[] = new TimingWheel.Entry[count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = wheel.schedule(100 + i % 100, () -> fired.incrementAndGet());
+        }
+        for (int i = 0; i < count; i += 2) {
+            assertTrue(entries[i].cancel());
+            assertFalse(entries[i].cancel());
+        }
+        Thread.sleep(500);
+        assertEquals(count / 2, fired.get());
+        assertEquals(0, wheel.getPending());
+        for (int i = 0; i < count; i++) {
+            assertTrue(i % 2 == 0 ? entries[i].isCancelled() : entries[i].isExpired());
+        }
+    }
+
+    public static class Delayer extends Actor<Delayer> {
+
+        int count;
+        boolean wrongThread;
+
+        public void $delayed(int millis) {
+            delayed(millis, () -> {
+                if ( Thread.currentThread() != __currentDispatcher )
+                    wrongThread = true;
+                count++;
+            });
+        }
+
+        public Future $neverAnswering() {
+            return new Promise();
+        }
+
+        public Future<String> $answer() {
+            return new Promise<>("answer");
+        }
+
+        public Future<Object> $awaitTimeout() {
+            Promise res = new Promise();
+            self().$neverAnswering().timeoutIn(50).then( (r,e) -> {
+                if ( Thread.currentThread() != __currentDispatcher )
+                    wrongThread = true;
+                res.receive(e, null);
+            });
+            return res;
+        }
+
+        public Future<Object[]> $getState() {
+            return new Promise<>(new Object[] { count, wrongThread });
+        }
+    }
+
+    Object await(Future f) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Object res[] = { null };
+        f.then( (r,e) -> {
+            res[0] = e != null ? e : r;
+            latch.countDown();
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return res[0];
+    }
+
+    @Test
+    public void testActorDelivery() throws InterruptedException {
+        Delayer delayer = Actors.AsActor(Delayer.class);
+        for (int i = 0; i < 100; i++) {
+            delayer.$delayed(i % 20);
+        }
+        Thread.sleep(300);
+        assertSame(Timeout.INSTANCE, await(delayer.$awaitTimeout()));
+        Object state[] = (Object[]) await(delayer.$getState());
+        assertEquals(100, state[0]);
+        assertEquals(false, state[1]);
+        // result in time: timeout is cancelled, no timeout delivered later on
+        AtomicInteger timeouts = new AtomicInteger(0);
+        for (int i = 0; i < 100; i++) {
+            delayer.$answer().timeoutIn(100).onTimeout( to -> timeouts.incrementAndGet() );
+        }
+        assertSame(Timeout.INSTANCE, await(delayer.$neverAnswering().timeoutIn(50)));
+        Thread.sleep(200);
+        assertEquals(0, timeouts.get());
+        delayer.$stop();
+    }
+
+}
@@ -0,0 +1,162 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.remoting.Coding;
+import org.nustaq.kontraktor.remoting.RemoteCallEntry;
+import org.nustaq.kontraktor.remoting.RemoteRefRegistry;
+import org.nustaq.kontraktor.remoting.SerializerType;
+import org.nustaq.kontraktor.remoting.WireDictionary;
+import org.nustaq.kontraktor.remoting.tcp.TCPSocket;
+import org.nustaq.serialization.FSTConfiguration;
+import org.nustaq.serialization.FSTObjectOutput;
+
+import java.io.IOException;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+/**
+ * method and actor class names are sent once per connection
+ */
+public class WireDictionaryTest {
+
+    public static class DictActor extends Actor<DictActor> {
+        public void $hello(String s) {}
+    }
+
+    public static class NotSerializable {
+        int x;
+    }
+
+    static RemoteRefRegistry registry(SerializerType type) {
+        return new RemoteRefRegistry(new Coding(type)) {
+            @Override
+            public Actor getFacadeProxy() {
+                return null;
+            }
+        };
+    }
+
+    // serialize a message as a connection does, definitions are committed once the message is written
+    static byte[] write(RemoteRefRegistry sender, Object message) {
+        byte res[] = sender.getConf().asByteArray(message);
+        sender.getWriteDictionary().commit();
+        return res;
+    }
+
+    @Test
+    public void testFST() {
+        RemoteRefRegistry sender = registry(SerializerType.FSTSer);
+        RemoteRefRegistry receiver = registry(SerializerType.FSTSer);
+
+        RemoteCallEntry call = new RemoteCallEntry(3, 1, "$someRatherLongMethodName", new Object[]{"x", 13});
+        call.setQueue(RemoteCallEntry.CBQ);
+        byte first[] = write(sender, call);
+        byte second[] = write(sender, call);
+        assertTrue(second.length < first.length - "$someRatherLongMethodName".length() + 4);
+        for (byte msg[] : new byte[][]{first, second}) {
+            RemoteCallEntry received = (RemoteCallEntry) receiver.getConf().asObject(msg);
+            assertEquals("$someRatherLongMethodName", received.getMethod());
+            assertEquals(1, received.getReceiverKey());
+            assertEquals(3, received.getFutureKey());
+            assertEquals(RemoteCallEntry.CBQ, received.getQueue());
+            assertEquals("x", received.getArgs()[0]);
+            assertEquals(13, ((Number) received.getArgs()[1]).intValue());
+        }
+
+        RemoteCallEntry cbResult = new RemoteCallEntry(0, 2, null, new Object[]{"r", null});
+        assertNull(((RemoteCallEntry) receiver.getConf().asObject(write(sender, cbResult))).getMethod());
+
+        DictActor actor = Actors.AsActor(DictActor.class);
+        try {
+            RemoteCallEntry withRef = new RemoteCallEntry(0, 1, "$someRatherLongMethodName", new Object[]{actor});
+            byte firstRef[] = write(sender, withRef);
+            byte secondRef[] = write(sender, withRef);
+            assertTrue(secondRef.length < firstRef.length - DictActor.class.getName().length());
+            for (byte msg[] : new byte[][]{firstRef, secondRef}) {
+                Object ref = ((RemoteCallEntry) receiver.getConf().asObject(msg)).getArgs()[0];
+                assertTrue(ref instanceof DictActor);
+            }
+            assertEquals(2, sender.getWriteDictionary().getNumWritten());
+        } finally {
+            actor.$stop();
+        }
+    }
+
+    @Test
+    public void testMinBin() {
+        // cross platform protocol: names are written with each message
+        RemoteRefRegistry sender = registry(SerializerType.MinBin);
+        RemoteRefRegistry receiver = registry(SerializerType.MinBin);
+        DictActor actor = Actors.AsActor(DictActor.class);
+        try {
+            RemoteCallEntry call = new RemoteCallEntry(0, 1, "$someRatherLongMethodName", new Object[]{"x", actor});
+            byte first[] = write(sender, call);
+            assertArrayEquals(first, write(sender, call));
+            RemoteCallEntry received = (RemoteCallEntry) receiver.getConf().asObject(first);
+            assertEquals("$someRatherLongMethodName", received.getMethod());
+            assertTrue(received.getArgs()[1] instanceof DictActor);
+            assertEquals(0, sender.getWriteDictionary().getNumWritten());
+        } finally {
+            actor.$stop();
+        }
+    }
+
+    @Test
+    public void testFailedWrite() throws Exception {
+        RemoteRefRegistry sender = registry(SerializerType.FSTSer);
+        RemoteRefRegistry receiver = registry(SerializerType.FSTSer);
+        try (ServerSocket server = new ServerSocket(0)) {
+            TCPSocket out = new TCPSocket("localhost", server.getLocalPort(), sender.getConf(), sender.getWriteDictionary());
+            Socket accepted = server.accept();
+            TCPSocket in = new TCPSocket(accepted, receiver.getConf());
+            try {
+                // method name is defined by a message which is never written
+                try {
+                    out.writeObject(new RemoteCallEntry(0, 1, "$someRatherLongMethodName", new Object[]{new NotSerializable()}));
+                    fail("argument is not serializable");
+                } catch (Exception expected) {
+                }
+                assertEquals(0, sender.getWriteDictionary().getNumWritten());
+                out.writeObject(new RemoteCallEntry(0, 1, "$someRatherLongMethodName", new Object[]{"x"}));
+                out.flush();
+                RemoteCallEntry received = (RemoteCallEntry) in.readObject();
+                assertEquals("$someRatherLongMethodName", received.getMethod());
+                assertEquals("x", received.getArgs()[0]);
+                assertEquals(1, sender.getWriteDictionary().getNumWritten());
+            } finally {
+                out.close();
+                in.close();
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidIds() throws Exception {
+        FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+        WireDictionary dictionary = new WireDictionary();
+        assertEquals("a", dictionary.readString(conf.getObjectInput(definition(conf, -1, "a"))));
+        assertEquals("a", dictionary.readString(conf.getObjectInput(definition(conf, 1, null))));
+        for (int id : new int[]{Integer.MIN_VALUE, -3, -1, 2, Integer.MAX_VALUE}) {
+            try {
+                dictionary.readString(conf.getObjectInput(definition(conf, id, "b")));
+                fail("accepted id " + id);
+            } catch (IOException expected) {
+            }
+        }
+        assertEquals("b", dictionary.readString(conf.getObjectInput(definition(conf, -2, "b"))));
+    }
+
+    static byte[] definition(FSTConfiguration conf, int id, String s) throws IOException {
+        FSTObjectOutput out = conf.getObjectOutput();
+        out.writeInt(id);
+        if ( s != null )
+            out.writeStringUTF(s);
+        return out.getCopyOfWrittenBuffer();
+    }
+
+}
@@ -0,0 +1,109 @@
+package kontraktor;
+
+import org.junit.Test;
+import org.nustaq.kontraktor.remoting.WriteBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.Assert.*;
+
+/**
+ * coalescing of outgoing frames
+ */
+public class WriteBufferTest {
+
+    static byte[] bytes(int len) {
+        byte res[] = new byte[len];
+        for (int i = 0; i < len; i++) {
+            res[i] = (byte) i;
+        }
+        return res;
+    }
+
+    @Test
+    public void testCoalesce() throws IOException {
+        WriteBuffer buffer = new WriteBuffer().setMaxFlushDelayNanos(Long.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            buffer.append(bytes(10), 10);
+        }
+        assertFalse(buffer.isFlushDue());
+        assertEquals(1400, buffer.getPendingBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        assertEquals(1400, out.size());
+        assertEquals(0, buffer.getPendingBytes());
+        assertEquals(1, buffer.getWrites());
+        assertEquals(100, buffer.getFramesWritten());
+        assertEquals(100.0, buffer.getFramesPerWrite(), 0.0);
+        assertEquals(1400.0, buffer.getBytesPerWrite(), 0.0);
+
+        ByteBuffer frames = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(10, frames.getInt());
+        assertEquals(9, frames.get(4 + 9));
+    }
+
+    @Test
+    public void testFlushDue() throws Exception {
+        WriteBuffer buffer = new WriteBuffer().setMaxFlushDelayNanos(Long.MAX_VALUE).setFlushBytes(100);
+        assertFalse(buffer.isFlushDue()); // empty
+        buffer.append(bytes(50), 50);
+        assertFalse(buffer.isFlushDue());
+        buffer.append(bytes(50), 50);
+        assertTrue(buffer.isFlushDue()); // size
+
+        buffer = new WriteBuffer().setMaxFlushDelayNanos(1_000_000);
+        buffer.append(bytes(10), 10);
+        assertFalse(buffer.isFlushDue());
+        Thread.sleep(5);
+        assertTrue(buffer.isFlushDue()); // age of oldest frame
+        buffer.writeTo(new ByteArrayOutputStream());
+        assertFalse(buffer.isFlushDue());
+    }
+
+    @Test
+    public void testPartialWrite() throws IOException {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.append(bytes(100_000), 100_000); // grows
+        buffer.append(bytes(10), 10);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        WritableByteChannel slowChannel = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                int len = Math.min(src.remaining(), 30_000);
+                for (int i = 0; i < len; i++) {
+                    received.write(src.get());
+                }
+                return len;
+            }
+            @Override
+            public boolean isOpen() { return true; }
+            @Override
+            public void close() {}
+        };
+        int pending = 100_018;
+        while ( pending > 0 ) {
+            int before = pending;
+            pending = buffer.writeTo(slowChannel);
+            assertEquals(Math.max(0, before - 30_000), pending);
+            assertEquals(pending > 0 ? 0 : 2, buffer.getFramesWritten());
+        }
+        assertEquals(100_018, received.size());
+        assertEquals(4, buffer.getWrites());
+    }
+
+    @Test
+    public void testShrink() throws IOException {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.append(bytes(WriteBuffer.INITIAL_SIZE * 4), WriteBuffer.INITIAL_SIZE * 4);
+        assertTrue(buffer.getCapacity() > WriteBuffer.INITIAL_SIZE);
+        buffer.writeTo(new ByteArrayOutputStream());
+        assertEquals(WriteBuffer.INITIAL_SIZE, buffer.getCapacity());
+        buffer.append(bytes(10), 10);
+        assertEquals(14, buffer.getPendingBytes());
+    }
+
+}
@@ -0,0 +1,97 @@
+package kontraktor.remoting;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.remoting.*;
+import org.nustaq.kontraktor.util.Log;
+import org.nustaq.serialization.FSTConfiguration;
+
+import java.io.Serializable;
+
+/**
+ * compares encoding/decoding of remote calls using generated argument codecs (RemoteArgCodec) against
+ * FST serialization of the argument array. Several methods, so call sites are not monomorphic.
+ * 1. encode only (sender side)
+ * 2. encode + decode
+ */
+public class ArgCodecBench {
+
+    public static class Quote implements Serializable {
+        String symbol;
+        double bid, ask;
+        int bidQty, askQty;
+        long time;
+
+        public Quote(String symbol, double bid, double ask, int bidQty, int askQty, long time) {
+            this.symbol = symbol;
+            this.bid = bid;
+            this.ask = ask;
+            this.bidQty = bidQty;
+            this.askQty = askQty;
+            this.time = time;
+        }
+    }
+
+    public static class BenchService extends Actor<BenchService> {
+        public void $call(int a, String b, boolean c) {}
+        public void $quote(Quote q) {}
+        public void $series(String name, double values[]) {}
+    }
+
+    static RemoteRefRegistry registry() {
+        return new RemoteRefRegistry(new Coding(SerializerType.FSTSer)) {
+            @Override
+            public Actor getFacadeProxy() {
+                return null;
+            }
+        };
+    }
+
+    static long bytesPerCall;
+
+    static long run(boolean codecs, boolean decode, int iterations) {
+        RemoteCallEntrySerializer.USE_ARG_CODECS = codecs;
+        RemoteRefRegistry sender = registry();
+        RemoteRefRegistry receiver = registry();
+        BenchService service = Actors.AsActor(BenchService.class);
+        int id = receiver.publishActor(service);
+        sender.registerRemoteActorRef(BenchService.class, id, null);
+        FSTConfiguration senderConf = sender.getConf();
+        FSTConfiguration receiverConf = receiver.getConf();
+        RemoteCallEntry calls[] = {
+            new RemoteCallEntry(0, id, "$call", new Object[] { 13, "hello", true }),
+            new RemoteCallEntry(0, id, "$quote", new Object[] { new Quote("EUR/USD", 1.0815, 1.0817, 1_000_000, 2_000_000, 1234567890l) }),
+            new RemoteCallEntry(0, id, "$series", new Object[] { "temp", new double[] { 1, 2, 3, 4, 5, 6, 7, 8 } }),
+        };
+        long bytes = 0;
+        long tim = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte msg[] = senderConf.asByteArray(calls[i % calls.length]);
+            sender.getWriteDictionary().commit();
+            bytes += msg.length;
+            if ( decode )
+                receiverConf.asObject(msg);
+        }
+        long dur = System.nanoTime() - tim;
+        service.$stop();
+        bytesPerCall = bytes / iterations;
+        return dur;
+    }
+
+    public static void main(String arg[]) {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int iterations = 1000 * 1000;
+        for ( int i = 0; i < 10; i++ ) {
+            long ser = run(false, false, iterations);
+            long serBytes = bytesPerCall;
+            long gen = run(true, false, iterations);
+            System.out.println("encode ns/call serialized: " + (double) ser / iterations + " (" + serBytes + " bytes)" +
+                               " generated: " + (double) gen / iterations + " (" + bytesPerCall + " bytes)");
+            ser = run(false, true, iterations);
+            gen = run(true, true, iterations);
+            System.out.println("encode+decode ns/call serialized: " + (double) ser / iterations + " generated: " + (double) gen / iterations);
+        }
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,79 @@
+package kontraktor.scheduling;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * several busy actors with some state share one dispatcher. compares message throughput for different
+ * scheduler throughput settings (max messages processed per actor turn), round robin and ready queue mode.
+ */
+public class BatchDrainBench {
+
+    public static class Worker extends Actor<Worker> {
+        long state[] = new long[32 * 1024];
+        int pos;
+
+        public void $work(int i) {
+            for (int j = 0; j < 8; j++) {
+                state[pos] += i;
+                pos = (pos + 8) & (state.length - 1);
+            }
+        }
+
+        public Future<Long> $sum() {
+            long res = 0;
+            for (int i = 0; i < state.length; i++) {
+                res += state[i];
+            }
+            return new Promise<>(res);
+        }
+    }
+
+    static long run(int throughput, boolean readyQueue, int numWorkers, int messages) throws InterruptedException {
+        ElasticScheduler scheduler = new ElasticScheduler(1).setThroughput(throughput).setUseReadyQueue(readyQueue);
+        Worker workers[] = new Worker[numWorkers];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Actors.AsActor(Worker.class, scheduler);
+        }
+        sync(workers);
+        long tim = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            workers[i % numWorkers].$work(i);
+        }
+        sync(workers);
+        long dur = System.nanoTime() - tim;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].$stop();
+        }
+        return dur;
+    }
+
+    static void sync(Worker workers[]) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].$sum().then( (r,e) -> latch.countDown() );
+        }
+        latch.await();
+    }
+
+    public static void main(String arg[]) throws InterruptedException {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int messages = 4 * 1000 * 1000;
+        final int numWorkers = 8;
+        for ( int i = 0; i < 3; i++ ) {
+            for ( int throughput : new int[] { 1, 4, 16, 64, 256 } ) {
+                long rr = run(throughput, false, numWorkers, messages);
+                long ready = run(throughput, true, numWorkers, messages);
+                System.out.println("throughput " + throughput + " msg/s round robin: " + messages * 1000l * 1000 * 1000 / rr + " ready queue: " + messages * 1000l * 1000 * 1000 / ready);
+            }
+        }
+        System.exit(0);
+    }
+
+}
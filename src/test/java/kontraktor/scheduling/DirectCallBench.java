@@ -0,0 +1,82 @@
+package kontraktor.scheduling;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * a pipeline of actors sharing one dispatcher, each stage forwards to the next one. compares message throughput
+ * with calls queued and invoked inline (ElasticScheduler.setDirectCalls).
+ */
+public class DirectCallBench {
+
+    public static final int CHUNK = 1000;
+
+    public static class Stage extends Actor<Stage> {
+        Stage next;
+        long sum;
+        int count;
+        int expected;
+        CountDownLatch done;
+
+        public void $init(Stage next, int expected, CountDownLatch done) {
+            this.next = next;
+            this.expected = expected;
+            this.done = done;
+        }
+
+        public void $process(int i) {
+            sum += i;
+            if ( next != null )
+                next.$process(i + 1);
+            else if ( ++count == expected )
+                done.countDown();
+        }
+
+        // source only
+        public void $pump(int from) {
+            for (int i = from; i < from + CHUNK; i++) {
+                next.$process(i);
+            }
+        }
+    }
+
+    static long run(boolean directCalls, int numStages, int messages) throws InterruptedException {
+        ElasticScheduler scheduler = new ElasticScheduler(1).setDirectCalls(directCalls);
+        CountDownLatch done = new CountDownLatch(1);
+        Stage next = null;
+        Stage stages[] = new Stage[numStages + 1];
+        for (int i = numStages; i >= 0; i--) { // stages[0] is the source
+            stages[i] = Actors.AsActor(Stage.class, scheduler);
+            stages[i].$init(next, messages, done);
+            next = stages[i];
+        }
+        long tim = System.nanoTime();
+        for (int i = 0; i < messages; i += CHUNK) {
+            stages[0].$pump(i);
+        }
+        done.await();
+        long dur = System.nanoTime() - tim;
+        for (int i = 0; i < stages.length; i++) {
+            stages[i].$stop();
+        }
+        return dur;
+    }
+
+    public static void main(String arg[]) throws InterruptedException {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int messages = 2 * 1000 * 1000;
+        for ( int i = 0; i < 3; i++ ) {
+            for ( int numStages : new int[] { 1, 4, 8 } ) {
+                long queued = run(false, numStages, messages);
+                long direct = run(true, numStages, messages);
+                System.out.println("stages " + numStages + " msg/s queued: " + messages * 1000l * 1000 * 1000 / queued + " direct: " + messages * 1000l * 1000 * 1000 / direct);
+            }
+        }
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,70 @@
+package kontraktor.scheduling;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * message throughput of one busy actor sharing its dispatcher with many idle (session) actors.
+ * compares round robin polling against ready queue scheduling.
+ */
+public class IdleActorsBench {
+
+    public static class Session extends Actor<Session> {
+        int count;
+
+        public void $msg(int a) {
+            count++;
+        }
+
+        public Future<Integer> $getCount() {
+            return new Promise<>(count);
+        }
+    }
+
+    static long run(boolean readyQueue, int idleActors, int messages) throws InterruptedException {
+        ElasticScheduler scheduler = new ElasticScheduler(1).setUseReadyQueue(readyQueue);
+        Session idle[] = new Session[idleActors];
+        for (int i = 0; i < idle.length; i++) {
+            idle[i] = Actors.AsActor(Session.class, scheduler, 128);
+        }
+        Session busy = Actors.AsActor(Session.class, scheduler);
+        sync(busy);
+        long tim = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            busy.$msg(i);
+        }
+        sync(busy);
+        long dur = System.nanoTime() - tim;
+        busy.$stop();
+        for (int i = 0; i < idle.length; i++) {
+            idle[i].$stop();
+        }
+        return dur;
+    }
+
+    static void sync(Session act) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        act.$getCount().then( (r,e) -> latch.countDown() );
+        latch.await();
+    }
+
+    public static void main(String arg[]) throws InterruptedException {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int messages = 100 * 1000;
+        for ( int idle : new int[] { 0, 100, 1000, 5000 } ) {
+            for ( int i = 0; i < 3; i++ ) {
+                long rr = run(false, idle, messages);
+                long ready = run(true, idle, messages);
+                System.out.println("idle actors " + idle + " msg/s round robin: " + messages * 1000l * 1000 * 1000 / rr + " ready queue: " + messages * 1000l * 1000 * 1000 / ready);
+            }
+        }
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,112 @@
+package kontraktor.scheduling;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.impl.ActorInvoker;
+import org.nustaq.kontraktor.impl.ActorProxyFactory;
+import org.nustaq.kontraktor.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * compares message dispatch using the generated ActorInvoker against Method.invoke.
+ * 1. raw dispatch cost (no queuing), several methods so call sites are not monomorphic
+ * 2. message throughput of a single actor (enqueue + dispatch)
+ */
+public class InvokerBench {
+
+    public static class BenchActor extends Actor<BenchActor> {
+        int count;
+
+        public void $call(int a, String b, boolean c) {
+            count++;
+        }
+
+        public void $other(long a, Object b) {
+            count+=2;
+        }
+
+        public void $third(String a) {
+            count+=3;
+        }
+
+        public Future<Integer> $getCount() {
+            return new Promise<>(count);
+        }
+    }
+
+    static long rawDispatch(BenchActor target, boolean generated, int iterations) throws Throwable {
+        ActorInvoker invoker = target.__invoker;
+        int index[] = { invoker.getIndex("$call"), invoker.getIndex("$other"), invoker.getIndex("$third") };
+        Method method[] = { invoker.getMethod(index[0]), invoker.getMethod(index[1]), invoker.getMethod(index[2]) };
+        Object args[][] = { { 1, "B", true }, { 1l, "B" }, { "C" } };
+        long tim = System.nanoTime();
+        if ( generated ) {
+            for (int i = 0; i < iterations; i++) {
+                int m = i % 3;
+                invoker.invoke(target, index[m], args[m]);
+            }
+        } else {
+            for (int i = 0; i < iterations; i++) {
+                int m = i % 3;
+                method[m].invoke(target, args[m]);
+            }
+        }
+        return System.nanoTime() - tim;
+    }
+
+    static void sync(BenchActor act) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        act.$getCount().then( (r,e) -> latch.countDown() );
+        latch.await();
+    }
+
+    static long throughput(int messages) throws InterruptedException {
+        BenchActor act = Actors.AsActor(BenchActor.class);
+        sync(act);
+        long tim = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            switch (i%3) {
+                case 0: act.$call(i, "B", true); break;
+                case 1: act.$other(i, "B"); break;
+                case 2: act.$third("C"); break;
+            }
+        }
+        sync(act);
+        long dur = System.nanoTime() - tim;
+        act.$stop();
+        return dur;
+    }
+
+    public static void main(String arg[]) throws Throwable {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int iterations = 10 * 1000 * 1000;
+        BenchActor target = Actors.AsActor(BenchActor.class);
+        BenchActor realActor = target.getActor();
+        for ( int i = 0; i < 10; i++ ) {
+            long refl = rawDispatch(realActor, false, iterations);
+            long gen = rawDispatch(realActor, true, iterations);
+            System.out.println("dispatch ns/call reflective: " + (double) refl / iterations + " generated: " + (double) gen / iterations);
+        }
+        target.$stop();
+
+        final int messages = 5 * 1000 * 1000;
+        for ( int i = 0; i < 5; i++ ) {
+            ActorProxyFactory.USE_GENERATED_INVOKERS = false;
+            Actors.instance = new BenchActors();
+            long refl = throughput(messages);
+            ActorProxyFactory.USE_GENERATED_INVOKERS = true;
+            Actors.instance = new BenchActors();
+            long gen = throughput(messages);
+            System.out.println("msg/s reflective: " + messages * 1000l * 1000 * 1000 / refl + " generated: " + messages * 1000l * 1000 * 1000 / gen);
+        }
+    }
+
+    // fresh factory, so invoker generation can be toggled
+    static class BenchActors extends Actors {
+    }
+
+}
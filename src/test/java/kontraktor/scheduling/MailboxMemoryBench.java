@@ -0,0 +1,62 @@
+package kontraktor.scheduling;
+
+import io.jaq.mpsc.MpscConcurrentQueue;
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.util.Log;
+
+/**
+ * heap per idle actor (e.g. one actor per session). Compares with the size of the preallocated
+ * array queues used before.
+ */
+public class MailboxMemoryBench {
+
+    public static class Session extends Actor<Session> {
+        int count;
+
+        public void $msg() {
+            count++;
+        }
+    }
+
+    static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    public static void main(String arg[]) throws InterruptedException {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int numActors = 100 * 1000;
+        ElasticScheduler scheduler = new ElasticScheduler(1).setUseReadyQueue(true);
+        Actors.AsActor(Session.class, scheduler).$stop(); // init proxy classes
+
+        long before = usedHeap();
+        Session sessions[] = new Session[numActors];
+        for (int i = 0; i < numActors; i++) {
+            sessions[i] = Actors.AsActor(Session.class, scheduler);
+        }
+        long created = usedHeap();
+        for (int i = 0; i < numActors; i++) {
+            sessions[i].$msg();
+        }
+        Thread.sleep(2000);
+        long used = usedHeap();
+        System.out.println("chunked mailboxes, bytes per actor: idle " + (created - before) / numActors +
+                               ", after first message " + (used - before) / numActors);
+
+        final int numQueues = 1000;
+        Object queues[] = new Object[numQueues];
+        before = usedHeap();
+        for (int i = 0; i < numQueues; i++) {
+            queues[i] = new Object[] { new MpscConcurrentQueue(ElasticScheduler.DEFQSIZE), new MpscConcurrentQueue(ElasticScheduler.DEFQSIZE) };
+        }
+        System.out.println("preallocated array queues (mailbox + callback queue), bytes per actor: " + (usedHeap() - before) / numQueues);
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,72 @@
+package kontraktor.scheduling;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.impl.ForkJoinScheduler;
+import org.nustaq.kontraktor.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * tokens hopping along a ring of many actors. compares ElasticScheduler (ready queue mode)
+ * with ForkJoinScheduler on the same number of threads.
+ */
+public class ManyActorsBench {
+
+    static CountDownLatch done;
+
+    public static class Node extends Actor<Node> {
+        Node next;
+
+        public void $init(Node next) {
+            this.next = next;
+        }
+
+        public void $hop(int remaining) {
+            if ( remaining == 0 )
+                done.countDown();
+            else
+                next.$hop(remaining - 1);
+        }
+    }
+
+    static long run(ElasticScheduler scheduler, int numActors, int tokens, int hops) throws InterruptedException {
+        Node nodes[] = new Node[numActors];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = Actors.AsActor(Node.class, scheduler, 128);
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].$init(nodes[(i + 1) % nodes.length]);
+        }
+        done = new CountDownLatch(tokens);
+        long tim = System.nanoTime();
+        for (int i = 0; i < tokens; i++) {
+            nodes[(i * 7919) % numActors].$hop(hops);
+        }
+        done.await();
+        long dur = System.nanoTime() - tim;
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i].$stop();
+        }
+        return dur;
+    }
+
+    public static void main(String arg[]) throws InterruptedException {
+        Log.Lg.$setSeverity(Log.ERROR);
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final int numActors = 20 * 1000;
+        final int tokens = 1000;
+        final int hops = 1000;
+        final long messages = (long) tokens * hops;
+        for (int i = 0; i < 5; i++) {
+            long elastic = run(new ElasticScheduler(threads).setUseReadyQueue(true).setWakeOnEnqueue(true).setThroughput(32), numActors, tokens, hops);
+            long fj = run(new ForkJoinScheduler(threads), numActors, tokens, hops);
+            System.out.println("actors " + numActors + " threads " + threads +
+                                   " msg/s elastic: " + messages * 1000 * 1000 * 1000 / elastic +
+                                   " forkjoin: " + messages * 1000 * 1000 * 1000 / fj);
+        }
+        System.exit(0);
+    }
+
+}
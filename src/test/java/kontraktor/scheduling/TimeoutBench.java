@@ -0,0 +1,70 @@
+package kontraktor.scheduling;
+
+import org.nustaq.kontraktor.impl.TimingWheel;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * schedule + cancel of request timeouts (the common case: the answer arrives in time) with
+ * java.util.Timer (as used before for delayed calls) compared to TimingWheel. Several timeouts are
+ * pending at any time.
+ */
+public class TimeoutBench {
+
+    static final int PENDING = 100 * 1000;
+
+    static long runTimer(Timer timer, int count) {
+        TimerTask pending[] = new TimerTask[PENDING];
+        long tim = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            int idx = i % PENDING;
+            if ( pending[idx] != null )
+                pending[idx].cancel();
+            pending[idx] = new TimerTask() {
+                @Override
+                public void run() {
+                }
+            };
+            timer.schedule(pending[idx], 30 * 1000);
+            if ( (i & 0xffff) == 0 )
+                timer.purge(); // else cancelled tasks pile up
+        }
+        long dur = System.nanoTime() - tim;
+        for (int i = 0; i < pending.length; i++) {
+            pending[i].cancel();
+        }
+        timer.purge();
+        return dur;
+    }
+
+    static long runWheel(TimingWheel wheel, int count) {
+        Runnable noop = () -> {};
+        TimingWheel.Entry pending[] = new TimingWheel.Entry[PENDING];
+        long tim = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            int idx = i % PENDING;
+            if ( pending[idx] != null )
+                pending[idx].cancel();
+            pending[idx] = wheel.schedule(30 * 1000, noop);
+        }
+        long dur = System.nanoTime() - tim;
+        for (int i = 0; i < pending.length; i++) {
+            pending[i].cancel();
+        }
+        return dur;
+    }
+
+    public static void main(String arg[]) {
+        Timer timer = new Timer(true);
+        final int count = 2 * 1000 * 1000;
+        for (int i = 0; i < 5; i++) {
+            long timerDur = runTimer(timer, count);
+            long wheelDur = runWheel(TimingWheel.Default, count);
+            System.out.println("timeouts scheduled+cancelled per second, Timer: " + count * 1000l * 1000 * 1000 / timerDur +
+                                   " TimingWheel: " + count * 1000l * 1000 * 1000 / wheelDur);
+        }
+        System.exit(0);
+    }
+
+}
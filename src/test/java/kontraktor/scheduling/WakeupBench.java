@@ -0,0 +1,68 @@
+package kontraktor.scheduling;
+
+import org.nustaq.kontraktor.Actor;
+import org.nustaq.kontraktor.Actors;
+import org.nustaq.kontraktor.Future;
+import org.nustaq.kontraktor.Promise;
+import org.nustaq.kontraktor.impl.ElasticScheduler;
+import org.nustaq.kontraktor.util.Log;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * idle cpu of a dispatcher thread and latency of the first message after a pause,
+ * polling backoff compared to wake on enqueue.
+ */
+public class WakeupBench {
+
+    public static class Pong extends Actor<Pong> {
+        public Future<Long> $ping(long sent) {
+            return new Promise<>(sent);
+        }
+    }
+
+    static void run(boolean wakeOnEnqueue) throws InterruptedException {
+        ElasticScheduler scheduler = new ElasticScheduler(1).setWakeOnEnqueue(wakeOnEnqueue);
+        Pong pong = Actors.AsActor(Pong.class, scheduler);
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long dispatcherId = ((Thread) pong.__currentDispatcher).getId();
+
+        Thread.sleep(100);
+        long cpu = mx.getThreadCpuTime(dispatcherId);
+        Thread.sleep(1000);
+        long idleCpu = mx.getThreadCpuTime(dispatcherId) - cpu;
+
+        final int pauses = 200;
+        long latencySum = 0;
+        long maxLatency = 0;
+        for (int i = 0; i < pauses; i++) {
+            LockSupport.parkNanos(5 * 1000 * 1000); // let dispatcher idle
+            CountDownLatch latch = new CountDownLatch(1);
+            long received[] = { 0 };
+            pong.$ping(System.nanoTime()).then( (r,e) -> {
+                received[0] = System.nanoTime() - r;
+                latch.countDown();
+            });
+            latch.await();
+            latencySum += received[0];
+            maxLatency = Math.max(maxLatency, received[0]);
+        }
+        pong.$stop();
+        System.out.println((wakeOnEnqueue ? "wake on enqueue" : "polling        ") +
+                               " idle cpu: " + idleCpu / 1000 / 1000 + " ms/s" +
+                               " wakeup latency avg: " + latencySum / pauses / 1000 + " micros, max: " + maxLatency / 1000 + " micros");
+    }
+
+    public static void main(String arg[]) throws InterruptedException {
+        Log.Lg.$setSeverity(Log.ERROR);
+        for (int i = 0; i < 3; i++) {
+            run(false);
+            run(true);
+        }
+        System.exit(0);
+    }
+
+}